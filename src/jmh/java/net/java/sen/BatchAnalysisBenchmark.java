@@ -0,0 +1,95 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.dictionary.Token;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link SenFactory#analyzeAll(List, java.util.concurrent.Executor)}
+ * over the sample text, by the parallelism of the pool it runs on. Compare
+ * the scores across <code>parallelism</code> to see how the batch scales
+ * with cores
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchAnalysisBenchmark {
+  
+  @Param({ "ipadic", "naist-chasen" })
+  public String dictionary;
+  
+  @Param({ "1", "2", "4", "8" })
+  public int parallelism;
+  
+  private SenFactory factory;
+  
+  private List<String> documents;
+  
+  private ForkJoinPool pool;
+  
+  @Setup
+  public void setUp() throws IOException {
+    factory = SenFactory.getInstance(BenchmarkCorpus.dictionaryDir(dictionary));
+    // repeat the sample text so that each batch has work for every worker
+    String[] corpus = BenchmarkCorpus.documents();
+    String[] batch = new String[corpus.length * 16];
+    for (int i = 0; i < batch.length; i++) {
+      batch[i] = corpus[i % corpus.length];
+    }
+    documents = Arrays.asList(batch);
+    pool = new ForkJoinPool(parallelism);
+  }
+  
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+  
+  /**
+   * Analyses the batch of documents
+   */
+  @Benchmark
+  public int analyzeAll() throws IOException {
+    int count = 0;
+    for (List<Token> tokens : factory.analyzeAll(documents, pool)) {
+      count += tokens.size();
+    }
+    return count;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.PackedDictionary;
+
+/**
+ * The fixed inputs shared by the benchmarks: the Japanese sample text checked
+ * in as <code>corpus.txt</code>, and the location of the compiled dictionaries
+ * 
+ * <p>The dictionaries are found below the directory given by the system
+ * property <code>gosen.dictionaryRoot</code> (by default
+ * <code>./dictionary</code>), as
+ * <code>&lt;dictionary type&gt;/compiled-dictionaries/net/java/sen</code>
+ */
+public final class BenchmarkCorpus {
+  
+  /**
+   * Fragments from which long sentences without punctuation are built
+   */
+  private static final String[] FRAGMENTS = {
+    "ワイヤレスイヤホン", "高音質", "防水", "自動ペアリング", "最大連続再生時間", "送料無料",
+    "接続エラー", "サーバー", "再起動しました", "ユーザー", "ログイン", "失敗回数", "東京都港区",
+    "おすすめ", "新品未使用", "限定モデル", "国内正規品", "ブラック", "メモリ使用量", "警告"
+  };
+  
+  private BenchmarkCorpus() {
+  }
+  
+  /**
+   * Returns the documents of the sample text, one per line
+   *
+   * @return The documents
+   * @throws IOException
+   */
+  public static String[] documents() throws IOException {
+    InputStream in = BenchmarkCorpus.class.getResourceAsStream("corpus.txt");
+    if (in == null) {
+      throw new IllegalStateException("Not found resource[corpus.txt]");
+    }
+    
+    List<String> documents = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.length() > 0 && !line.startsWith("#")) {
+          documents.add(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    
+    return documents.toArray(new String[documents.size()]);
+  }
+  
+  /**
+   * Builds a sentence of the given length without any punctuation, such as
+   * a log line or concatenated product titles
+   *
+   * @param length The length of the sentence
+   * @return The sentence
+   */
+  public static String unpunctuated(int length) {
+    StringBuilder builder = new StringBuilder(length + 16);
+    for (int i = 0; builder.length() < length; i++) {
+      builder.append(FRAGMENTS[(i * 7) % FRAGMENTS.length]);
+    }
+    builder.setLength(length);
+    return builder.toString();
+  }
+  
+  /**
+   * Returns the directory of a compiled dictionary
+   *
+   * @param dictionaryType The dictionary type, <code>ipadic</code> or
+   *        <code>naist-chasen</code>
+   * @return The dictionary directory
+   */
+  public static String dictionaryDir(String dictionaryType) {
+    File root = new File(System.getProperty("gosen.dictionaryRoot", "dictionary"));
+    File dir = new File(root, dictionaryType + File.separator + "compiled-dictionaries"
+        + File.separator + "net" + File.separator + "java" + File.separator + "sen");
+    if (!dir.isDirectory()) {
+      throw new IllegalStateException("Not found compiled dictionary. dictionaryDir=[" + dir.getAbsolutePath() + "]");
+    }
+    return dir.getAbsolutePath();
+  }
+  
+  /**
+   * Indicates whether a compiled dictionary has a section, in its packed
+   * dictionary file if there is one, otherwise as its own file
+   *
+   * @param dictionaryType The dictionary type
+   * @param name The section's file name
+   * @return <code>true</code> if the section exists
+   * @throws IOException
+   */
+  public static boolean hasSection(String dictionaryType, String name) throws IOException {
+    File dir = new File(dictionaryDir(dictionaryType));
+    File packed = new File(dir, PackedDictionary.FILENAME);
+    if (packed.exists()) {
+      return PackedDictionary.map(packed).containsKey(name);
+    }
+    return new File(dir, name).exists();
+  }
+  
+  /**
+   * Maps one section of a compiled dictionary, from the packed dictionary
+   * file if there is one, otherwise from its own file
+   *
+   * @param dictionaryType The dictionary type
+   * @param name The section's file name, for example <code>trie.sen</code>
+   * @return The section
+   * @throws IOException
+   */
+  public static ByteBuffer section(String dictionaryType, String name) throws IOException {
+    File dir = new File(dictionaryDir(dictionaryType));
+    File packed = new File(dir, PackedDictionary.FILENAME);
+    if (packed.exists()) {
+      ByteBuffer section = PackedDictionary.map(packed).get(name);
+      if (section == null) {
+        throw new IllegalStateException("Not found section[" + name + "]. dictionaryDir=[" + dir + "]");
+      }
+      return section;
+    }
+    
+    RandomAccessFile file = new RandomAccessFile(new File(dir, name), "r");
+    try {
+      return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+    } finally {
+      file.close();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Token;
+import net.java.sen.tokenizers.ja.JapaneseTokenizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link StringTagger#analyze(String, List)} followed by reading
+ * the part-of-speech, basic form and readings of every token, with and
+ * without a {@link net.java.sen.dictionary.MorphemeCache}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MorphemeCacheBenchmark {
+  
+  @Param({ "ipadic", "naist-chasen" })
+  public String dictionary;
+  
+  @Param({ "0", "8192" })
+  public int morphemeCacheSize;
+  
+  private StringTagger tagger;
+  
+  private String[] documents;
+  
+  private final List<Token> tokens = new ArrayList<Token>();
+  
+  @Setup
+  public void setUp() throws IOException {
+    Dictionary dic = new SenFactory(BenchmarkCorpus.dictionaryDir(dictionary), morphemeCacheSize).getDictionary();
+    tagger = new StringTagger(new JapaneseTokenizer(dic, SenFactory.unknownPOS, false));
+    documents = BenchmarkCorpus.documents();
+  }
+  
+  /**
+   * Analyses every document of the sample text and reads each token's
+   * morpheme
+   */
+  @Benchmark
+  public int analyzeCorpusMorphemes() throws IOException {
+    int count = 0;
+    for (String document : documents) {
+      for (Token token : tagger.analyze(document, tokens)) {
+        Morpheme morpheme = token.getMorpheme();
+        count += morpheme.getPartOfSpeech().length() + morpheme.getBasicForm().length() + morpheme.getReadings().size();
+      }
+    }
+    return count;
+  }
+}
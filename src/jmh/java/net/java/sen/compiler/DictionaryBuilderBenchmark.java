@@ -0,0 +1,80 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.BenchmarkCorpus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time taken to compile a dictionary from its preprocessed
+ * CSV files. As {@link DictionaryBuilder} works in the current directory,
+ * the CSV files are copied into it first; the benchmark must therefore not
+ * be run from the dictionary directory itself
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class DictionaryBuilderBenchmark {
+  
+  private static final String[] CSV_FILENAMES = { "dictionary.csv", "connection.csv" };
+  
+  @Param({ "ipadic", "naist-chasen" })
+  public String dictionary;
+  
+  @Setup
+  public void setUp() throws IOException {
+    File sourceDir = new File(BenchmarkCorpus.dictionaryDir(dictionary));
+    File workingDir = new File(".").getCanonicalFile();
+    if (workingDir.equals(sourceDir.getCanonicalFile())) {
+      throw new IllegalStateException("Must not be run in the dictionary directory. dictionaryDir=[" + sourceDir + "]");
+    }
+    
+    for (String filename : CSV_FILENAMES) {
+      File source = new File(sourceDir, filename);
+      if (!source.exists()) {
+        throw new IllegalStateException("Not found preprocessed dictionary[" + filename + "]. dictionaryDir=[" + sourceDir + "]");
+      }
+      Files.copy(source.toPath(), new File(workingDir, filename).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+  
+  @Benchmark
+  public long compile() throws IOException {
+    new DictionaryBuilder(new String[0]);
+    return new File("trie.sen").length();
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.trie;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.BenchmarkCorpus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the dictionary trie alone, by searching for the common prefixes
+ * at every position of the sample text, or of only its hiragana, which
+ * starts the most keys. Searches are made through a {@link CharIterator}, and
+ * of the characters directly with the {@link Trie} data in its buffer and
+ * copied onto the heap. A dictionary compiled with an {@link FSTIndex} in
+ * place of the trie is searched with the FST throughout, so the two indexes
+ * can be compared by compiling the dictionary both ways
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrieSearcherBenchmark {
+  
+  /**
+   * A CharIterator over a character array from a given position
+   */
+  private static final class ArrayCharIterator implements CharIterator {
+    
+    private char[] characters;
+    
+    private int index;
+    
+    void reset(char[] characters, int index) {
+      this.characters = characters;
+      this.index = index;
+    }
+    
+    public boolean hasNext() {
+      return index < characters.length;
+    }
+    
+    public char next() throws NoSuchElementException {
+      if (index >= characters.length) {
+        throw new NoSuchElementException();
+      }
+      return characters[index++];
+    }
+  }
+  
+  @Param({ "ipadic", "naist-chasen" })
+  public String dictionary;
+  
+  @Param({ "corpus", "hiragana" })
+  public String text;
+  
+  private PrefixIndex bufferTrie;
+  
+  private PrefixIndex heapTrie;
+  
+  private char[][] documents;
+  
+  private final int[] results = new int[256];
+  
+  private final ArrayCharIterator iterator = new ArrayCharIterator();
+  
+  @Setup
+  public void setUp() throws IOException {
+    if (BenchmarkCorpus.hasSection(dictionary, FSTIndex.FILENAME)) {
+      bufferTrie = new FSTIndex(BenchmarkCorpus.section(dictionary, FSTIndex.FILENAME));
+      heapTrie = bufferTrie;
+    } else {
+      IntBuffer trie = BenchmarkCorpus.section(dictionary, "trie.sen").asIntBuffer();
+      Alphabet alphabet = null;
+      if (BenchmarkCorpus.hasSection(dictionary, Alphabet.FILENAME)) {
+        alphabet = Alphabet.read(BenchmarkCorpus.section(dictionary, Alphabet.FILENAME));
+      }
+      bufferTrie = new Trie(trie, alphabet, false);
+      heapTrie = new Trie(trie, alphabet, true);
+    }
+    String[] strings = BenchmarkCorpus.documents();
+    documents = new char[strings.length][];
+    for (int i = 0; i < strings.length; i++) {
+      documents[i] = "hiragana".equals(text) ? hiragana(strings[i]) : strings[i].toCharArray();
+    }
+  }
+  
+  /**
+   * Returns the hiragana characters of a string
+   * 
+   * @param string The string
+   * @return The hiragana
+   */
+  private static char[] hiragana(String string) {
+    StringBuilder builder = new StringBuilder(string.length());
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (c >= '\u3041' && c <= '\u309f') {
+        builder.append(c);
+      }
+    }
+    return builder.toString().toCharArray();
+  }
+  
+  @Benchmark
+  public int commonPrefixSearch() {
+    int count = 0;
+    for (char[] document : documents) {
+      for (int i = 0; i < document.length; i++) {
+        iterator.reset(document, i);
+        count += bufferTrie.commonPrefixSearch(iterator, results);
+      }
+    }
+    return count;
+  }
+  
+  @Benchmark
+  public int commonPrefixSearchArray() {
+    int count = 0;
+    for (char[] document : documents) {
+      for (int i = 0; i < document.length; i++) {
+        count += bufferTrie.commonPrefixSearch(document, i, document.length, results);
+      }
+    }
+    return count;
+  }
+  
+  @Benchmark
+  public int commonPrefixSearchHeap() {
+    int count = 0;
+    for (char[] document : documents) {
+      for (int i = 0; i < document.length; i++) {
+        count += heapTrie.commonPrefixSearch(document, i, document.length, results);
+      }
+    }
+    return count;
+  }
+}
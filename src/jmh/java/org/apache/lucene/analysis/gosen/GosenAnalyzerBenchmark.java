@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.analysis.gosen;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.BenchmarkCorpus;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link GosenAnalyzer} with its full default filter chain over
+ * the documents of the sample text
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GosenAnalyzerBenchmark {
+  
+  @Param({ "ipadic", "naist-chasen" })
+  public String dictionary;
+  
+  private Analyzer analyzer;
+  
+  private String[] documents;
+  
+  @Setup
+  public void setUp() throws IOException {
+    analyzer = new GosenAnalyzer(BenchmarkCorpus.dictionaryDir(dictionary));
+    documents = BenchmarkCorpus.documents();
+  }
+  
+  @TearDown
+  public void tearDown() {
+    analyzer.close();
+  }
+  
+  @Benchmark
+  public int analyze() throws IOException {
+    int count = 0;
+    for (String document : documents) {
+      TokenStream stream = analyzer.tokenStream("field", document);
+      try {
+        stream.reset();
+        while (stream.incrementToken()) {
+          count++;
+        }
+        stream.end();
+      } finally {
+        stream.close();
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.analysis.gosen;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.BenchmarkCorpus;
+import net.java.sen.SentenceCache;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link GosenTokenizer} end to end, including sentence breaking
+ * and the token attributes, over the documents of the sample text (also with
+ * a sentence cache, which after warmup holds every sentence), and over a
+ * single 1M character field analysed in turn and in parallel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GosenTokenizerBenchmark {
+  
+  @Param({ "ipadic", "naist-chasen" })
+  public String dictionary;
+  
+  private Tokenizer tokenizer;
+  
+  private String[] documents;
+  
+  private GosenTokenizer cachedTokenizer;
+  
+  private Tokenizer parallelTokenizer;
+  
+  private String largeField;
+  
+  @Setup
+  public void setUp() throws IOException {
+    tokenizer = new GosenTokenizer(null, BenchmarkCorpus.dictionaryDir(dictionary), false);
+    documents = BenchmarkCorpus.documents();
+    cachedTokenizer = new GosenTokenizer(null, BenchmarkCorpus.dictionaryDir(dictionary), false);
+    cachedTokenizer.setSentenceCache(new SentenceCache(100000, 64L << 20, 256));
+    parallelTokenizer = new GosenTokenizer(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY, null,
+        BenchmarkCorpus.dictionaryDir(dictionary), false, 16384, null);
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; builder.length() < 1000000; i++) {
+      builder.append(documents[i % documents.length]).append('\n');
+    }
+    largeField = builder.toString();
+  }
+  
+  @Benchmark
+  public int tokenize() throws IOException {
+    int count = 0;
+    for (String document : documents) {
+      tokenizer.setReader(new StringReader(document));
+      tokenizer.reset();
+      while (tokenizer.incrementToken()) {
+        count++;
+      }
+      tokenizer.end();
+      tokenizer.close();
+    }
+    return count;
+  }
+  
+  @Benchmark
+  public int tokenizeCached() throws IOException {
+    int count = 0;
+    for (String document : documents) {
+      count += tokenize(cachedTokenizer, document);
+    }
+    return count;
+  }
+  
+  @Benchmark
+  public int tokenizeLargeField() throws IOException {
+    return tokenize(tokenizer, largeField);
+  }
+  
+  /**
+   * Tokenizes the large field with its sentences analysed in parallel on the
+   * common ForkJoinPool
+   */
+  @Benchmark
+  public int tokenizeLargeFieldParallel() throws IOException {
+    return tokenize(parallelTokenizer, largeField);
+  }
+  
+  private static int tokenize(Tokenizer tokenizer, String text) throws IOException {
+    int count = 0;
+    tokenizer.setReader(new StringReader(text));
+    tokenizer.reset();
+    while (tokenizer.incrementToken()) {
+      count++;
+    }
+    tokenizer.end();
+    tokenizer.close();
+    return count;
+  }
+}
@@ -20,21 +20,48 @@
 
 package net.java.sen;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.java.sen.util.IOUtils;
 
+import net.java.sen.dictionary.CharacterDefinition;
 import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.MorphemeCache;
+import net.java.sen.dictionary.PackedDictionary;
+import net.java.sen.dictionary.Token;
 import net.java.sen.dictionary.Tokenizer;
 import net.java.sen.dictionary.Viterbi;
 import net.java.sen.tokenizers.ja.JapaneseTokenizer;
+import net.java.sen.trie.Alphabet;
+import net.java.sen.trie.FSTIndex;
+import net.java.sen.trie.PrefixIndex;
+import net.java.sen.trie.Trie;
 
 /**
  * A factory to manage creation of {@link Viterbi}, {@link StringTagger}, and
@@ -42,7 +69,9 @@ import net.java.sen.tokenizers.ja.JapaneseTokenizer;
  * 
  * <b>Thread Safety:</b> This class and all its public methods are thread safe.
  * The objects constructed by the factory are <b>NOT</b> thread safe and should
- * not be accessed simultaneously by multiple threads
+ * not be accessed simultaneously by multiple threads. To analyse many texts
+ * from one thread, see {@link #analyzeAll(List, boolean, Executor)}; to share
+ * a few StringTaggers among many threads, see {@link TaggerPool}
  */
 public class SenFactory {
   
@@ -51,22 +80,61 @@ public class SenFactory {
 
   public static final String unknownPOS = "未知語";
 
-  private final String[] posIndex, conjTypeIndex, conjFormIndex;
-  private final ByteBuffer costs, pos, tokens, trie;
+  /**
+   * The system property which, when set to <code>true</code>, copies the
+   * Trie data of each dictionary onto the heap (around 8MB for ipadic), which
+   * makes searching it cheaper
+   */
+  public static final String HEAP_TRIE_PROPERTY = "gosen.heapTrie";
 
   /**
-   * Get the singleton factory instance
+   * The system property giving the number of decoded morphemes to cache for
+   * each dictionary, shared by all threads, unless given to
+   * {@link #getInstance(String, int)}. Unset or 0 means no cache, and each
+   * Morpheme decodes its own data. See {@link MorphemeCache}
+   */
+  public static final String MORPHEME_CACHE_SIZE_PROPERTY = "gosen.morphemeCacheSize";
+
+  /**
+   * The dictionary, shared by every Tokenizer created for the dictionaryDir
+   */
+  private final Dictionary dictionary;
+
+  /**
+   * The sentence caches of the dictionary, by their bounds
+   */
+  private final ConcurrentHashMap<String, SentenceCache> sentenceCaches = new ConcurrentHashMap<String, SentenceCache>();
+
+  /**
+   * Get the singleton factory instance, with a morpheme cache of the size
+   * given by {@link #MORPHEME_CACHE_SIZE_PROPERTY}
    *
    * @param dictionaryDir a directory of dictionaries
    * @return the factory instance
      */
-  public synchronized static SenFactory getInstance(String dictionaryDir) {
+  public static SenFactory getInstance(String dictionaryDir) {
+    return getInstance(dictionaryDir, Integer.getInteger(MORPHEME_CACHE_SIZE_PROPERTY, 0));
+  }
+
+  /**
+   * Get the singleton factory instance for a dictionaryDir and morpheme
+   * cache size
+   *
+   * @param dictionaryDir a directory of dictionaries
+   * @param morphemeCacheSize the number of decoded morphemes to cache, or 0
+   *        for no cache. See {@link MorphemeCache}
+   * @return the factory instance
+   */
+  public synchronized static SenFactory getInstance(String dictionaryDir, int morphemeCacheSize) {
     
     String key = (dictionaryDir == null || dictionaryDir.trim().length() == 0) ? EMPTY_DICTIONARYDIR_KEY : dictionaryDir; 
+    if (morphemeCacheSize > 0) {
+      key += "#morphemeCacheSize=" + morphemeCacheSize;
+    }
     SenFactory instance = map.get(key);
     if (instance == null) {
       try {
-        instance = new SenFactory(dictionaryDir);
+        instance = new SenFactory(dictionaryDir, morphemeCacheSize);
         map.put(key, instance);
       } catch (IOException ex) {
         throw new RuntimeException(ex);
@@ -77,47 +145,233 @@ public class SenFactory {
   }
 
   /**
-   * Constructor for Sen, which is an Japanese Morphological Analyzer
+   * Constructor for Sen, which is an Japanese Morphological Analyzer. Use
+   * {@link #getInstance(String)} to share the instance for a dictionaryDir;
+   * this is package-private only so that startup can be measured
    *
    * @param dictionaryDir
    * @throws IOException
    */
-  private SenFactory(String dictionaryDir) throws IOException {
-    InputStream in = null;
-    DataInputStream din = null;
+  SenFactory(String dictionaryDir) throws IOException {
+    this(dictionaryDir, Integer.getInteger(MORPHEME_CACHE_SIZE_PROPERTY, 0));
+  }
+
+  /**
+   * Constructor with a morpheme cache size. Use
+   * {@link #getInstance(String, int)} to share the instance
+   *
+   * @param dictionaryDir
+   * @param morphemeCacheSize the number of decoded morphemes to cache, or 0
+   *        for no cache
+   * @throws IOException
+   */
+  SenFactory(String dictionaryDir, int morphemeCacheSize) throws IOException {
+    Map<String, ByteBuffer> sections;
+    if (hasResource(PackedDictionary.FILENAME, dictionaryDir)) {
+      sections = loadPacked(dictionaryDir);
+    } else {
+      sections = loadFiles(dictionaryDir);
+    }
+
+    ShortBuffer costs = getSection(sections, "connectionCost.sen", dictionaryDir).asReadOnlyBuffer().asShortBuffer();
+    ByteBuffer pos = getSection(sections, "partOfSpeech.sen", dictionaryDir).asReadOnlyBuffer();
+    ByteBuffer tokens = getSection(sections, "token.sen", dictionaryDir).asReadOnlyBuffer();
+    // dictionaries are indexed by either an FST or a trie. Dictionaries
+    // compiled before trie alphabets code each character as its value plus one
+    ByteBuffer fstBuffer = sections.get(FSTIndex.FILENAME);
+    PrefixIndex index;
+    if (fstBuffer != null) {
+      index = new FSTIndex(fstBuffer.asReadOnlyBuffer());
+    } else {
+      Alphabet alphabet = readAlphabet(sections, dictionaryDir);
+      index = new Trie(getSection(sections, "trie.sen", dictionaryDir).asReadOnlyBuffer().asIntBuffer(), alphabet, Boolean.getBoolean(HEAP_TRIE_PROPERTY));
+    }
+
+    // read index data
+    ByteBuffer indexBuffer = getSection(sections, "posIndex.sen", dictionaryDir).duplicate();
+    byte[] indexData = new byte[indexBuffer.remaining()];
+    indexBuffer.get(indexData);
+    DataInputStream din = new DataInputStream(new ByteArrayInputStream(indexData));
+    String[] posIndex = new String[din.readChar()];
+    for (int i = 0; i < posIndex.length; i++) {
+      posIndex[i] = din.readUTF();
+    }
+
+    String[] conjTypeIndex = new String[din.readChar()];
+    for (int i = 0; i < conjTypeIndex.length; i++) {
+      conjTypeIndex[i] = din.readUTF();
+    }
+
+    String[] conjFormIndex = new String[din.readChar()];
+    for (int i = 0; i < conjFormIndex.length; i++) {
+      conjFormIndex[i] = din.readUTF();
+    }
+
+    // dictionaries compiled before character definitions use the built in
+    // character classes
+    ByteBuffer charClassBuffer = sections.get(CharacterDefinition.FILENAME);
+    CharacterDefinition characterDefinition;
+    if (charClassBuffer != null) {
+      characterDefinition = CharacterDefinition.read(charClassBuffer);
+    } else {
+      characterDefinition = CharacterDefinition.getDefault();
+    }
+
+    MorphemeCache morphemeCache = (morphemeCacheSize > 0) ? new MorphemeCache(morphemeCacheSize) : null;
+
+    dictionary = new Dictionary(costs, pos, tokens, index, posIndex, conjTypeIndex, conjFormIndex, characterDefinition, morphemeCache);
+  }
+
+  /**
+   * Reads the trie alphabet. The header of a dictionary compiled with an
+   * alphabet gives its size, and a Trie coded through an alphabet returns
+   * wrong results without it, so a missing alphabet is an error; the header
+   * of an older dictionary ends before the size, and its alphabet, if any,
+   * is optional
+   *
+   * @param sections
+   * @param dictionaryDir
+   * @return The alphabet, or <code>null</code> if the Trie is not coded
+   *         through one
+   */
+  private static Alphabet readAlphabet(Map<String, ByteBuffer> sections, String dictionaryDir) {
+    ByteBuffer header = sections.get("header.sen");
+    if (header == null || header.remaining() < 5 * 4) {
+      ByteBuffer alphabetBuffer = sections.get(Alphabet.FILENAME);
+      return (alphabetBuffer != null) ? Alphabet.read(alphabetBuffer) : null;
+    }
+
+    int alphabetSize = header.getInt(header.position() + 4 * 4);
+    if (alphabetSize == 0) {
+      return null;
+    }
+    Alphabet alphabet = Alphabet.read(getSection(sections, Alphabet.FILENAME, dictionaryDir));
+    if (alphabet.size() != alphabetSize) {
+      throw new RuntimeException("Expected dictionary section[" + Alphabet.FILENAME + "] to have " + alphabetSize
+          + " characters, but was " + alphabet.size() + ". dictionaryDir=[" + dictionaryDir + "]");
+    }
+    return alphabet;
+  }
+
+  /**
+   * Loads the sections of a packed dictionary. A packed dictionary in a
+   * dictionary directory is mapped once and sliced; one on the classpath is
+   * read as a single sequential stream
+   *
+   * @param dictionaryDir
+   * @return The sections, by loose file name
+   * @throws IOException
+   */
+  private static Map<String, ByteBuffer> loadPacked(String dictionaryDir) throws IOException {
+    if (dictionaryDir == null || dictionaryDir.trim().length() == 0) {
+      InputStream in = null;
+      try {
+        in = getInputStream(PackedDictionary.FILENAME, dictionaryDir);
+        return PackedDictionary.read(new BufferedInputStream(in));
+      } finally {
+        IOUtils.closeWhileHandlingException(in);
+      }
+    } else {
+      return PackedDictionary.map(new File(dictionaryDir, PackedDictionary.FILENAME));
+    }
+  }
+
+  /**
+   * Loads the loose dictionary files, with sizes taken from header.sen
+   *
+   * @param dictionaryDir
+   * @return The files' contents, by file name
+   * @throws IOException
+   */
+  private static Map<String, ByteBuffer> loadFiles(String dictionaryDir) throws IOException {
+    Map<String, ByteBuffer> files = new HashMap<String, ByteBuffer>();
 
     // read main data files
-    try {
-      in = getInputStream("header.sen", dictionaryDir);
-      din = new DataInputStream(in);
-      costs = loadBuffer("connectionCost.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-      pos = loadBuffer("partOfSpeech.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-      tokens = loadBuffer("token.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-      trie = loadBuffer("trie.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-    } finally {
-      IOUtils.closeWhileHandlingException(din, in);
+    ByteBuffer header = readFully("header.sen", dictionaryDir);
+    files.put("header.sen", header);
+    header = header.duplicate();
+    files.put("connectionCost.sen", loadBuffer("connectionCost.sen", header.getInt(), dictionaryDir));
+    files.put("partOfSpeech.sen", loadBuffer("partOfSpeech.sen", header.getInt(), dictionaryDir));
+    files.put("token.sen", loadBuffer("token.sen", header.getInt(), dictionaryDir));
+    // dictionaries indexed by an FST have no trie
+    int trieSize = header.getInt();
+    if (trieSize > 0) {
+      files.put("trie.sen", loadBuffer("trie.sen", trieSize, dictionaryDir));
     }
 
     // read index files
-    try {
-      in = getInputStream("posIndex.sen", dictionaryDir);
-      din = new DataInputStream(in);
-      posIndex = new String[din.readChar()];
-      for (int i = 0; i < posIndex.length; i++) {
-        posIndex[i] = din.readUTF();
-      }
-    
-      conjTypeIndex = new String[din.readChar()];
-      for (int i = 0; i < conjTypeIndex.length; i++) {
-        conjTypeIndex[i] = din.readUTF();
+    files.put("posIndex.sen", readFully("posIndex.sen", dictionaryDir));
+
+    // read the optional character definition
+    if (hasResource(CharacterDefinition.FILENAME, dictionaryDir)) {
+      files.put(CharacterDefinition.FILENAME, readFully(CharacterDefinition.FILENAME, dictionaryDir));
+    }
+
+    // read the optional trie alphabet
+    if (hasResource(Alphabet.FILENAME, dictionaryDir)) {
+      files.put(Alphabet.FILENAME, readFully(Alphabet.FILENAME, dictionaryDir));
+    }
+
+    // read the FST index, in place of the trie
+    if (hasResource(FSTIndex.FILENAME, dictionaryDir)) {
+      if (dictionaryDir == null || dictionaryDir.trim().length() == 0) {
+        files.put(FSTIndex.FILENAME, readFully(FSTIndex.FILENAME, dictionaryDir));
+      } else {
+        int size = (int) new File(dictionaryDir, FSTIndex.FILENAME).length();
+        files.put(FSTIndex.FILENAME, mapBuffer(FSTIndex.FILENAME, size, dictionaryDir));
       }
-    
-      conjFormIndex = new String[din.readChar()];
-      for (int i = 0; i < conjFormIndex.length; i++) {
-        conjFormIndex[i] = din.readUTF();
+    }
+
+    return files;
+  }
+
+  /**
+   * Reads the whole of a dictionary file
+   *
+   * @param name
+   * @param dictionaryDir
+   * @return The file's contents
+   * @throws IOException
+   */
+  private static ByteBuffer readFully(String name, String dictionaryDir) throws IOException {
+    InputStream in = null;
+    try {
+      in = getInputStream(name, dictionaryDir);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[1024];
+      for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+        out.write(buf, 0, n);
       }
+      return ByteBuffer.wrap(out.toByteArray());
     } finally {
-      IOUtils.closeWhileHandlingException(din, in);
+      IOUtils.closeWhileHandlingException(in);
+    }
+  }
+
+  /**
+   * @param sections
+   * @param name
+   * @param dictionaryDir
+   * @return
+   */
+  private static ByteBuffer getSection(Map<String, ByteBuffer> sections, String name, String dictionaryDir) {
+    ByteBuffer section = sections.get(name);
+    if (section == null) {
+      throw new RuntimeException("Not found dictionary section[" + name + "]. dictionaryDir=[" + dictionaryDir + "]");
+    }
+    return section;
+  }
+
+  /**
+   * @param name
+   * @param dictionaryDir
+   * @return <code>true</code> if the named resource exists
+   */
+  private static boolean hasResource(String name, String dictionaryDir) {
+    if (dictionaryDir == null || dictionaryDir.trim().length() == 0) {
+      return SenFactory.class.getResource(name) != null;
+    } else {
+      return new File(dictionaryDir, name).isFile();
     }
   }
 
@@ -141,7 +395,9 @@ public class SenFactory {
   }
 
   /**
-   * Load specified dictionary data into ByteBuffer
+   * Load specified dictionary data into ByteBuffer. Dictionaries in a
+   * dictionary directory are memory mapped, dictionaries loaded from the
+   * classpath are copied into a direct buffer
    *
    * @param resource
    * @param size
@@ -150,6 +406,52 @@ public class SenFactory {
    * @throws IOException
    */
   private static ByteBuffer loadBuffer(String resource, int size, String dictionaryDir) throws IOException {
+    if (dictionaryDir == null || dictionaryDir.trim().length() == 0) {
+      return copyBuffer(resource, size, dictionaryDir);
+    } else {
+      return mapBuffer(resource, size, dictionaryDir);
+    }
+  }
+
+  /**
+   * Map specified dictionary file read-only. The mapped pages are shared
+   * through the operating system's page cache with every other
+   * SenFactory or process that maps the same file, and are only read from
+   * disk when first accessed
+   *
+   * @param resource
+   * @param size
+   * @param dictionaryDir
+   * @return
+   * @throws IOException
+   */
+  private static ByteBuffer mapBuffer(String resource, int size, String dictionaryDir) throws IOException {
+    RandomAccessFile file = null;
+    FileChannel channel = null;
+    try {
+      file = new RandomAccessFile(new File(dictionaryDir, resource), "r");
+      channel = file.getChannel();
+      if (channel.size() != size) {
+        throw new RuntimeException("Expected resource[" + resource + "] to be " + size + " bytes, but was " + channel.size()
+            + ". dictionaryDir=[" + dictionaryDir + "]");
+      }
+      // the mapping stays valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } finally {
+      IOUtils.closeWhileHandlingException(channel, file);
+    }
+  }
+
+  /**
+   * Copy specified dictionary data into a direct ByteBuffer
+   *
+   * @param resource
+   * @param size
+   * @param dictionaryDir
+   * @return
+   * @throws IOException
+   */
+  private static ByteBuffer copyBuffer(String resource, int size, String dictionaryDir) throws IOException {
     InputStream in = null;
     try {
       in = getInputStream(resource, dictionaryDir);
@@ -174,27 +476,50 @@ public class SenFactory {
   }
   
   /**
-   * Builds a Tokenizer for the given dictionary configuration
+   * Returns the dictionary shared by the Tokenizers of this factory
+   *
+   * @return The dictionary
+   */
+  public Dictionary getDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * Returns the cache of analysed sentences with the given bounds for this
+   * factory's dictionary, creating it on first use. Every caller asking for
+   * the same bounds shares the same cache, and so the analysis of sentences
+   * they have in common
+   *
+   * @param maxEntries The maximum number of sentences
+   * @param maxBytes The maximum estimated size of the cached data
+   * @param maxSentenceLength The length of the longest sentence to cache
+   * @return The cache
+   */
+  public SentenceCache getSentenceCache(int maxEntries, long maxBytes, int maxSentenceLength) {
+    String key = maxEntries + "/" + maxBytes + "/" + maxSentenceLength;
+    SentenceCache cache = sentenceCaches.get(key);
+    if (cache == null) {
+      SentenceCache newCache = new SentenceCache(maxEntries, maxBytes, maxSentenceLength);
+      cache = sentenceCaches.putIfAbsent(key, newCache);
+      if (cache == null) {
+        cache = newCache;
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Builds a Tokenizer for the given dictionary configuration. Every
+   * Tokenizer for a dictionary shares the same {@link Dictionary}
    *
    * @param dictionaryDir The dictionary configuration filename
    * @param tokenizeUnknownKatakana
    * @return The constructed Tokenizer
    */
-  private static Tokenizer getTokenizer(String dictionaryDir, boolean tokenizeUnknownKatakana) {
+  static Tokenizer getTokenizer(String dictionaryDir, boolean tokenizeUnknownKatakana) {
     SenFactory localInstance = SenFactory.getInstance(dictionaryDir);
     
-    return new JapaneseTokenizer(
-            new Dictionary(
-                    localInstance.costs.asShortBuffer(),
-                    localInstance.pos.duplicate(),
-                    localInstance.tokens.duplicate(),
-                    localInstance.trie.asIntBuffer(),
-                    localInstance.posIndex,
-                    localInstance.conjTypeIndex,
-                    localInstance.conjFormIndex
-            ),
-            unknownPOS,
-            tokenizeUnknownKatakana);
+    return new JapaneseTokenizer(localInstance.dictionary, unknownPOS, tokenizeUnknownKatakana);
   }
   
   /**
@@ -220,6 +545,170 @@ public class SenFactory {
     return new StringTagger(getTokenizer(dictionaryDir, tokenizeUnknownKatakana));
   }
   
+  /**
+   * Creates a StringTagger from the given configuration, with a morpheme
+   * cache of the given size
+   *
+   * @param dictionaryDir a directory of dictionary
+   * @param tokenizeUnknownKatakana
+   * @param morphemeCacheSize the number of decoded morphemes to cache, or 0
+   *        for no cache. See {@link #getInstance(String, int)}
+   * @return A StringTagger
+   */
+  public static StringTagger getStringTagger(String dictionaryDir, boolean tokenizeUnknownKatakana, int morphemeCacheSize) {
+    return getInstance(dictionaryDir, morphemeCacheSize).newStringTagger(tokenizeUnknownKatakana);
+  }
+  
+  /**
+   * Creates a StringTagger for this factory's dictionary
+   *
+   * @param tokenizeUnknownKatakana
+   * @return A StringTagger
+   */
+  StringTagger newStringTagger(boolean tokenizeUnknownKatakana) {
+    return new StringTagger(new JapaneseTokenizer(dictionary, unknownPOS, tokenizeUnknownKatakana));
+  }
+
+  /**
+   * Analyses a batch of texts in parallel, as
+   * {@link StringTagger#analyze(String, List)} without any filters. Each
+   * worker owns its own {@link StringTagger}, and all of them share this
+   * factory's {@link Dictionary}. The calling thread works on the batch too,
+   * so that the batch completes even if the executor has no free threads
+   *
+   * @param texts The texts to analyse
+   * @param tokenizeUnknownKatakana
+   * @param executor The executor to run the workers on, for example a
+   *        {@link ForkJoinPool}; if <code>null</code>, the common pool is used
+   * @return The {@link Token}s of each text, in the order of the texts
+   * @throws IOException
+   */
+  public List<List<Token>> analyzeAll(List<? extends CharSequence> texts, boolean tokenizeUnknownKatakana,
+      Executor executor) throws IOException {
+    if (executor == null) {
+      executor = ForkJoinPool.commonPool();
+    }
+    int parallelism;
+    if (executor instanceof ForkJoinPool) {
+      parallelism = ((ForkJoinPool) executor).getParallelism();
+    } else if (executor instanceof ThreadPoolExecutor) {
+      parallelism = ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+    } else {
+      parallelism = Runtime.getRuntime().availableProcessors();
+    }
+    return analyzeAll(texts, tokenizeUnknownKatakana, executor, parallelism);
+  }
+
+  /**
+   * Analyses a batch of texts with up to the given number of workers, one
+   * of which is the calling thread
+   *
+   * @param texts The texts to analyse
+   * @param tokenizeUnknownKatakana
+   * @param executor The executor to run the other workers on
+   * @param parallelism The maximum number of workers
+   * @return The {@link Token}s of each text, in the order of the texts
+   * @throws IOException
+   */
+  List<List<Token>> analyzeAll(final List<? extends CharSequence> texts, final boolean tokenizeUnknownKatakana,
+      Executor executor, int parallelism) throws IOException {
+    int workers = Math.min(parallelism, texts.size());
+
+    final List<List<Token>> results = new ArrayList<List<Token>>(Collections.<List<Token>>nCopies(texts.size(), null));
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    // counts the texts not yet finished, rather than the workers, so that the
+    // caller need not wait for workers which were never scheduled
+    final CountDownLatch unfinished = new CountDownLatch(texts.size());
+
+    // workers take texts one at a time, so that long texts do not hold up a
+    // fixed share of the batch. After a failure the remaining texts are
+    // still taken, but not analysed
+    Runnable worker = new Runnable() {
+      public void run() {
+        StringTagger tagger = null;
+        for (int i = next.getAndIncrement(); i < results.size(); i = next.getAndIncrement()) {
+          try {
+            if (failure.get() == null) {
+              if (tagger == null) {
+                tagger = newStringTagger(tokenizeUnknownKatakana);
+              }
+              results.set(i, tagger.analyze(texts.get(i).toString(), new ArrayList<Token>()));
+            }
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          } finally {
+            unfinished.countDown();
+          }
+        }
+      }
+    };
+    for (int i = 1; i < workers; i++) {
+      try {
+        executor.execute(worker);
+      } catch (RejectedExecutionException e) {
+        break;
+      }
+    }
+    worker.run();
+    try {
+      await(unfinished);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while analysing a batch");
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof IOException) {
+      throw (IOException) t;
+    } else if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    } else if (t != null) {
+      throw new RuntimeException(t);
+    }
+    return results;
+  }
+
+  /**
+   * Waits for a latch, as a managed block when called from a ForkJoinPool,
+   * so that the pool may make up for the blocked thread
+   *
+   * @param latch The latch
+   * @throws InterruptedException
+   */
+  private static void await(final CountDownLatch latch) throws InterruptedException {
+    if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+      ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+        public boolean block() throws InterruptedException {
+          latch.await();
+          return true;
+        }
+
+        public boolean isReleasable() {
+          return latch.getCount() == 0;
+        }
+      });
+    } else {
+      latch.await();
+    }
+  }
+
+  /**
+   * Analyses a batch of texts in parallel, without tokenizing unknown
+   * katakana
+   *
+   * @param texts The texts to analyse
+   * @param executor The executor to run the workers on
+   * @return The {@link Token}s of each text, in the order of the texts
+   * @throws IOException
+   * @see #analyzeAll(List, boolean, Executor)
+   */
+  public List<List<Token>> analyzeAll(List<? extends CharSequence> texts, Executor executor) throws IOException {
+    return analyzeAll(texts, false, executor);
+  }
+
   /**
    * Creates a ReadingProcessor from the given configuration
    *
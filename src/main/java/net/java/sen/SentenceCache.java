@@ -0,0 +1,375 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Token;
+
+/**
+ * A bounded cache of the analysis of whole sentences, so that sentences which
+ * recur often, such as boilerplate, are only analysed once. Entries are keyed
+ * by a configuration, which must identify everything else that affects the
+ * result (the dictionary, unknown katakana tokenization, the filters), and
+ * the sentence's characters.
+ * <p>
+ * An entry holds the tokens of a sentence immutably, with starts relative to
+ * the sentence, and private, fully loaded copies of their {@link Morpheme}s.
+ * Each hit returns new Tokens with copies of those Morphemes, which the
+ * caller may alter freely. The cache is split
+ * into up to 16 segments, each holding its entries in least recently used
+ * order and evicting the oldest when over its share of the maximum entries or
+ * bytes, so that the cache as a whole never exceeds either; the size in bytes
+ * is an estimate. There are fewer segments when the bounds are too small to
+ * share among 16 while leaving each segment room for a sentence of the
+ * maximum length. Sentences longer than the maximum sentence length, or whose
+ * tokens are estimated to be larger than a segment's share of the maximum
+ * bytes, are not cached.
+ * 
+ * <p><b>Thread Safety</b>: This class is thread safe
+ */
+public final class SentenceCache {
+  
+  /** The largest number of segments */
+  private static final int MAX_SEGMENTS = 16;
+  
+  /** The estimated size in bytes of an entry, besides its characters and tokens */
+  private static final int ENTRY_BYTES = 96;
+  
+  /** The estimated size in bytes of a cached token, besides its surface */
+  private static final int TOKEN_BYTES = 64;
+  
+  /**
+   * The key of an entry: a configuration and a range of characters. Stored
+   * keys own their characters; lookup keys refer to the caller's buffer
+   */
+  private static final class Key {
+    final Object configuration;
+    final char[] buffer;
+    final int offset;
+    final int length;
+    final int hash;
+    
+    Key(Object configuration, char[] buffer, int offset, int length, int hash) {
+      this.configuration = configuration;
+      this.buffer = buffer;
+      this.offset = offset;
+      this.length = length;
+      this.hash = hash;
+    }
+    
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+    
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) object;
+      if (hash != other.hash || length != other.length || !configuration.equals(other.configuration)) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (buffer[offset + i] != other.buffer[other.offset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+  
+  /**
+   * The tokens of a sentence
+   */
+  private static final class Entry {
+    final String[] surfaces;
+    final int[] costs;
+    final int[] starts;
+    final int[] lengths;
+    final Morpheme[] morphemes;
+    final int bytes;
+    
+    Entry(List<Token> tokens, int keyLength) {
+      int n = tokens.size();
+      surfaces = new String[n];
+      costs = new int[n];
+      starts = new int[n];
+      lengths = new int[n];
+      morphemes = new Morpheme[n];
+      int size = ENTRY_BYTES + 2 * keyLength;
+      for (int i = 0; i < n; i++) {
+        Token token = tokens.get(i);
+        surfaces[i] = token.getSurface();
+        costs[i] = token.getCost();
+        starts[i] = token.getStart();
+        lengths[i] = token.getLength();
+        if (token.getMorpheme() != null) {
+          morphemes[i] = new Morpheme(token.getMorpheme());
+          morphemes[i].loadAll();
+        }
+        size += TOKEN_BYTES + 2 * surfaces[i].length();
+      }
+      bytes = size;
+    }
+  }
+  
+  /**
+   * A part of the cache, with its own lock and share of the bounds
+   */
+  private static final class Segment {
+    final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    long bytes = 0;
+  }
+  
+  /** The segments, chosen by a key's hash; a power of two of them */
+  private final Segment[] segments;
+  
+  /** The maximum number of entries of each segment */
+  private final int maxSegmentEntries;
+  
+  /** The maximum estimated size of each segment */
+  private final long maxSegmentBytes;
+  
+  /** The maximum length of a cached sentence */
+  private final int maxSentenceLength;
+  
+  /** The number of lookups found in the cache */
+  private final LongAdder hits = new LongAdder();
+  
+  /** The number of lookups of cacheable sentences not found in the cache */
+  private final LongAdder misses = new LongAdder();
+  
+  /** The number of entries evicted */
+  private final LongAdder evictions = new LongAdder();
+  
+  /**
+   * Creates a cache
+   *
+   * @param maxEntries The maximum number of sentences
+   * @param maxBytes The maximum estimated size of the cached data
+   * @param maxSentenceLength The length of the longest sentence to cache
+   */
+  public SentenceCache(int maxEntries, long maxBytes, int maxSentenceLength) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+    }
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("maxBytes must be at least 1: " + maxBytes);
+    }
+    // halve the segments until each has at least one entry and room for a
+    // sentence of the maximum length, as far as a single segment can
+    long largestEntryBytes = ENTRY_BYTES + (4L + TOKEN_BYTES) * Math.max(0, maxSentenceLength);
+    int segmentCount = MAX_SEGMENTS;
+    while (segmentCount > 1 && (maxEntries / segmentCount < 1 || maxBytes / segmentCount < largestEntryBytes)) {
+      segmentCount >>= 1;
+    }
+    this.segments = new Segment[segmentCount];
+    this.maxSegmentEntries = maxEntries / segmentCount;
+    this.maxSegmentBytes = maxBytes / segmentCount;
+    this.maxSentenceLength = maxSentenceLength;
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+  
+  /**
+   * Indicates whether a sentence of the given length can be cached
+   *
+   * @param length The length of the sentence
+   * @return <code>true</code> if the sentence is not too long to cache
+   */
+  public boolean accepts(int length) {
+    return length <= maxSentenceLength;
+  }
+  
+  /**
+   * Looks up the tokens of a sentence. On a hit, new {@link Token}s are added
+   * to <code>tokens</code>, with their starts relative to the sentence, their
+   * surfaces detached from the buffer and new {@link Morpheme}s
+   *
+   * @param configuration The configuration the sentence was analysed with
+   * @param buffer The array holding the sentence
+   * @param offset The index of the sentence's first character
+   * @param length The length of the sentence
+   * @param tokens The list to fill, which is cleared on a hit
+   * @return <code>true</code> if the sentence was found
+   */
+  public boolean get(Object configuration, char[] buffer, int offset, int length, List<Token> tokens) {
+    if (!accepts(length)) {
+      return false;
+    }
+    Key key = new Key(configuration, buffer, offset, length, hash(configuration, buffer, offset, length));
+    Segment segment = segments[key.hash & (segments.length - 1)];
+    Entry entry;
+    synchronized (segment) {
+      entry = segment.entries.get(key);
+    }
+    if (entry == null) {
+      misses.increment();
+      return false;
+    }
+    
+    hits.increment();
+    tokens.clear();
+    for (int i = 0; i < entry.surfaces.length; i++) {
+      Morpheme morpheme = (entry.morphemes[i] == null) ? null : new Morpheme(entry.morphemes[i]);
+      tokens.add(new Token(entry.surfaces[i], entry.costs[i], entry.starts[i], entry.lengths[i], morpheme));
+    }
+    return true;
+  }
+  
+  /**
+   * Caches the tokens of a sentence, as just returned by analysis, with their
+   * starts relative to the sentence. Sentences longer than the maximum
+   * sentence length are ignored
+   *
+   * @param configuration The configuration the sentence was analysed with
+   * @param buffer The array holding the sentence
+   * @param offset The index of the sentence's first character
+   * @param length The length of the sentence
+   * @param tokens The tokens of the sentence
+   */
+  public void put(Object configuration, char[] buffer, int offset, int length, List<Token> tokens) {
+    if (!accepts(length)) {
+      return;
+    }
+    char[] characters = new char[length];
+    System.arraycopy(buffer, offset, characters, 0, length);
+    Key key = new Key(configuration, characters, 0, length, hash(configuration, buffer, offset, length));
+    Entry entry = new Entry(tokens, length);
+    if (entry.bytes > maxSegmentBytes) {
+      return;
+    }
+    
+    Segment segment = segments[key.hash & (segments.length - 1)];
+    synchronized (segment) {
+      Entry previous = segment.entries.put(key, entry);
+      if (previous != null) {
+        segment.bytes -= previous.bytes;
+      }
+      segment.bytes += entry.bytes;
+      Iterator<Map.Entry<Key, Entry>> i = segment.entries.entrySet().iterator();
+      while (segment.entries.size() > maxSegmentEntries || segment.bytes > maxSegmentBytes) {
+        segment.bytes -= i.next().getValue().bytes;
+        i.remove();
+        evictions.increment();
+      }
+    }
+  }
+  
+  /**
+   * Hashes a key, mixing the characters two at a time
+   */
+  private static int hash(Object configuration, char[] buffer, int offset, int length) {
+    int hash = configuration.hashCode() * 31 + length;
+    int end = offset + length;
+    int i = offset;
+    for (; i + 1 < end; i += 2) {
+      hash = hash * 961 + (buffer[i] << 16 | buffer[i + 1]);
+    }
+    if (i < end) {
+      hash = hash * 31 + buffer[i];
+    }
+    return hash ^ (hash >>> 16);
+  }
+  
+  /**
+   * Returns the length of the longest sentence cached
+   *
+   * @return The maximum sentence length
+   */
+  public int getMaxSentenceLength() {
+    return maxSentenceLength;
+  }
+  
+  /**
+   * Returns the number of sentences cached
+   *
+   * @return The number of entries
+   */
+  public int getEntryCount() {
+    int count = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        count += segment.entries.size();
+      }
+    }
+    return count;
+  }
+  
+  /**
+   * Returns the estimated size of the cached data
+   *
+   * @return The size in bytes
+   */
+  public long getSizeInBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        bytes += segment.bytes;
+      }
+    }
+    return bytes;
+  }
+  
+  /**
+   * Returns the number of lookups found in the cache
+   *
+   * @return The number of hits
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+  
+  /**
+   * Returns the number of lookups of sentences short enough to cache that
+   * were not found in the cache
+   *
+   * @return The number of misses
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+  
+  /**
+   * Returns the fraction of lookups found in the cache
+   *
+   * @return The hit rate, from 0 to 1
+   */
+  public double getHitRate() {
+    long hitCount = hits.sum();
+    long total = hitCount + misses.sum();
+    return (total == 0) ? 0 : (double) hitCount / total;
+  }
+  
+  /**
+   * Returns the number of entries evicted to keep within the bounds
+   *
+   * @return The number of evictions
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+}
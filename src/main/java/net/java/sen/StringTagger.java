@@ -106,7 +106,7 @@ public class StringTagger {
    * @throws IOException 
    */
   public List<Token> analyze(String surface, List<Token> reuse) throws IOException {
-    Sentence sentence = new Sentence(surface.toCharArray());
+    Sentence sentence = new Sentence(surface);
     filterPreProcess(sentence);
     
     List<Token> tokens = viterbi.getBestTokens(sentence, reuse);
@@ -125,7 +125,9 @@ public class StringTagger {
   }
   
   /**
-   * Decompose a string into its most likely constituent morphemes
+   * Decompose a string into its most likely constituent morphemes. The
+   * {@link Token}s copy their surfaces, so the array may be reused
+   * afterwards
    * 
    * @param surface The string to analyse
    * @return An array of {@link Token}s representing the most likely morphemes
@@ -142,6 +144,30 @@ public class StringTagger {
     return tokens;
   }
   
+  /**
+   * Decompose a range of a character array into its most likely constituent
+   * morphemes, without copying the characters. The start of each
+   * {@link Token} is relative to <code>offset</code>, and its surface is
+   * read from the array when first requested, so the array must not change
+   * until then
+   * 
+   * @param buffer The array holding the characters to analyse
+   * @param offset The index of the first character to analyse
+   * @param length The number of characters to analyse
+   * @return An array of {@link Token}s representing the most likely morphemes
+   * @throws IOException 
+   */
+  public List<Token> analyze(char[] buffer, int offset, int length, List<Token> reuse) throws IOException {
+    Sentence sentence = new Sentence(buffer, offset, length);
+    filterPreProcess(sentence);
+    
+    List<Token> tokens = viterbi.getBestTokens(sentence, reuse);
+    
+    tokens = filterPostProcess(tokens);
+    
+    return tokens;
+  }
+  
   /**
    * @deprecated use {@link #analyze(char[], List)} instead.
    */
@@ -150,6 +176,48 @@ public class StringTagger {
     return analyze(surface, new ArrayList<Token>());
   }
   
+  /**
+   * Decompose a string into its <code>n</code> most likely sequences of
+   * constituent morphemes. Each sequence is post-processed by the attached
+   * {@link StreamFilter}s independently
+   * 
+   * @param surface The string to analyse
+   * @param n The maximum number of sequences to return
+   * @return Up to <code>n</code> lists of {@link Token}s, most likely first
+   * @throws IOException 
+   * @see Viterbi#getNBestTokens(Sentence, int)
+   */
+  public List<List<Token>> analyzeNBest(String surface, int n) throws IOException {
+    char[] characters = surface.toCharArray();
+    return analyzeNBest(characters, 0, characters.length, n);
+  }
+  
+  /**
+   * Decompose a range of a character array into its <code>n</code> most
+   * likely sequences of constituent morphemes, without copying the
+   * characters, as {@link #analyzeNBest(String, int)}
+   * 
+   * @param buffer The array holding the characters to analyse
+   * @param offset The index of the first character to analyse
+   * @param length The number of characters to analyse
+   * @param n The maximum number of sequences to return
+   * @return Up to <code>n</code> lists of {@link Token}s, most likely first
+   * @throws IOException 
+   * @see #analyze(char[], int, int, List)
+   */
+  public List<List<Token>> analyzeNBest(char[] buffer, int offset, int length, int n) throws IOException {
+    Sentence sentence = new Sentence(buffer, offset, length);
+    filterPreProcess(sentence);
+    
+    List<List<Token>> paths = viterbi.getNBestTokens(sentence, n);
+    
+    for (int i = 0; i < paths.size(); i++) {
+      paths.set(i, filterPostProcess(paths.get(i)));
+    }
+    
+    return paths;
+  }
+  
   /**
    * @param tokenizer The Tokenizer to use for analysis 
    */
@@ -0,0 +1,455 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of {@link StringTagger}s for one dictionary configuration,
+ * leased to one thread at a time, so that many threads can share a few warm
+ * taggers instead of each building its own:
+ * 
+ * <pre>
+ * TaggerPool.Lease lease = pool.acquire();
+ * try {
+ *   tokens = lease.getTagger().analyze(text, tokens);
+ * } finally {
+ *   lease.close();
+ * }</pre>
+ * 
+ * <p>A lease is {@link AutoCloseable}, and may equally be released with
+ * try-with-resources. Taggers are created as needed, up to the maximum size;
+ * when they are all leased, {@link #acquire()} waits for one to be released.
+ * A tagger left idle for longer than the idle timeout is dropped from the
+ * pool when the pool is next used. {@link net.java.sen.filter.StreamFilter}s
+ * added to a leased tagger are removed when it is released.
+ * 
+ * <p>Waiting threads wait on a {@link ReentrantLock}'s condition rather than
+ * a monitor, and no lock is held while a tagger is created, so waiting does
+ * not pin the carrier thread of a virtual thread.
+ * 
+ * <p><b>Thread Safety</b>: This class is thread safe; a leased tagger must
+ * only be used by the thread holding the lease
+ */
+public final class TaggerPool {
+  
+  /**
+   * A lease of a tagger from the pool, which returns it when closed
+   */
+  public final class Lease implements AutoCloseable {
+    
+    /** The leased tagger, or <code>null</code> once released */
+    private StringTagger tagger;
+    
+    /**
+     * @param tagger The leased tagger
+     */
+    private Lease(StringTagger tagger) {
+      this.tagger = tagger;
+    }
+    
+    /**
+     * Returns the leased tagger
+     *
+     * @return The tagger
+     * @throws IllegalStateException if the lease has been closed
+     */
+    public StringTagger getTagger() {
+      if (tagger == null) {
+        throw new IllegalStateException("Lease has been closed");
+      }
+      return tagger;
+    }
+    
+    /**
+     * Returns the tagger to the pool. Closing a lease more than once has no
+     * further effect
+     */
+    public void close() {
+      if (tagger != null) {
+        StringTagger released = tagger;
+        tagger = null;
+        release(released);
+      }
+    }
+  }
+  
+  /**
+   * An idle tagger, with the time it was released
+   */
+  private static final class IdleTagger {
+    final StringTagger tagger;
+    final long releasedAt;
+    
+    IdleTagger(StringTagger tagger, long releasedAt) {
+      this.tagger = tagger;
+      this.releasedAt = releasedAt;
+    }
+  }
+  
+  /** The factory of the pool's dictionary */
+  private final SenFactory factory;
+  
+  /** Whether the pool's taggers tokenize unknown katakana */
+  private final boolean tokenizeUnknownKatakana;
+  
+  /** The maximum number of taggers */
+  private final int maxSize;
+  
+  /** The time in nanoseconds after which an idle tagger is dropped, or 0 to keep it */
+  private final long idleTimeoutNanos;
+  
+  /** Guards all the fields below */
+  private final ReentrantLock lock = new ReentrantLock();
+  
+  /** Signalled when a tagger is released, or a slot for a new tagger freed */
+  private final Condition available = lock.newCondition();
+  
+  /** The idle taggers, most recently released first */
+  private final ArrayDeque<IdleTagger> idle = new ArrayDeque<IdleTagger>();
+  
+  /** The number of taggers, idle, leased or being created */
+  private int size = 0;
+  
+  /** The number of leased taggers */
+  private int leased = 0;
+  
+  /** The total number of leases */
+  private long leases = 0;
+  
+  /** The number of acquisitions which had to wait for a tagger */
+  private long waits = 0;
+  
+  /** The total time in nanoseconds spent waiting for a tagger */
+  private long waitNanos = 0;
+  
+  /** The number of taggers dropped after being idle */
+  private long evictions = 0;
+  
+  /** The time the pool was created */
+  private final long createdAt = System.nanoTime();
+  
+  /** The time the number of leased taggers last changed */
+  private long lastChange = createdAt;
+  
+  /** The sum over time of the number of leased taggers, in tagger nanoseconds */
+  private long leasedNanos = 0;
+  
+  /**
+   * Creates a pool of taggers for a dictionary configuration, loading the
+   * dictionary if it is not already loaded
+   *
+   * @param dictionaryDir a directory of dictionary
+   * @param tokenizeUnknownKatakana
+   * @param maxSize The maximum number of taggers
+   * @param idleTimeout The time after which an idle tagger is dropped, or 0
+   *        to keep idle taggers
+   * @param unit The unit of <code>idleTimeout</code>
+   */
+  public TaggerPool(String dictionaryDir, boolean tokenizeUnknownKatakana, int maxSize, long idleTimeout, TimeUnit unit) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+    }
+    if (idleTimeout < 0) {
+      throw new IllegalArgumentException("idleTimeout must not be negative: " + idleTimeout);
+    }
+    this.factory = SenFactory.getInstance(dictionaryDir);
+    this.tokenizeUnknownKatakana = tokenizeUnknownKatakana;
+    this.maxSize = maxSize;
+    this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+  }
+  
+  /**
+   * Leases a tagger, waiting for one to be released if the pool is at its
+   * maximum size and all are leased
+   *
+   * @return The lease
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public Lease acquire() throws InterruptedException {
+    return acquire(-1);
+  }
+  
+  /**
+   * Leases a tagger, waiting up to the given time for one to be released if
+   * the pool is at its maximum size and all are leased
+   *
+   * @param timeout The maximum time to wait
+   * @param unit The unit of <code>timeout</code>
+   * @return The lease, or <code>null</code> if no tagger became available
+   *         in time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public Lease acquire(long timeout, TimeUnit unit) throws InterruptedException {
+    return acquire(Math.max(0, unit.toNanos(timeout)));
+  }
+  
+  /**
+   * @param timeoutNanos The maximum time to wait, or -1 to wait indefinitely
+   * @return The lease, or <code>null</code> on timeout
+   * @throws InterruptedException
+   */
+  private Lease acquire(long timeoutNanos) throws InterruptedException {
+    long start = System.nanoTime();
+    boolean waited = false;
+    lock.lockInterruptibly();
+    try {
+      evictIdle(start);
+      while (idle.isEmpty() && size >= maxSize) {
+        if (timeoutNanos < 0) {
+          waited = true;
+          available.await();
+        } else {
+          long remaining = timeoutNanos - (System.nanoTime() - start);
+          if (remaining <= 0) {
+            waits++;
+            waitNanos += System.nanoTime() - start;
+            return null;
+          }
+          waited = true;
+          available.awaitNanos(remaining);
+        }
+      }
+      
+      long now = System.nanoTime();
+      changeLeased(now, 1);
+      leases++;
+      if (waited) {
+        waits++;
+        waitNanos += now - start;
+      }
+      IdleTagger idleTagger = idle.pollFirst();
+      if (idleTagger != null) {
+        return new Lease(idleTagger.tagger);
+      }
+      size++;
+    } finally {
+      lock.unlock();
+    }
+    
+    // a new tagger is created without holding the lock
+    try {
+      return new Lease(factory.newStringTagger(tokenizeUnknownKatakana));
+    } catch (RuntimeException e) {
+      lock.lock();
+      try {
+        size--;
+        changeLeased(System.nanoTime(), -1);
+        available.signal();
+      } finally {
+        lock.unlock();
+      }
+      throw e;
+    }
+  }
+  
+  /**
+   * Returns a tagger to the pool
+   *
+   * @param tagger The released tagger
+   */
+  private void release(StringTagger tagger) {
+    tagger.removeFilters();
+    lock.lock();
+    try {
+      long now = System.nanoTime();
+      changeLeased(now, -1);
+      idle.addFirst(new IdleTagger(tagger, now));
+      evictIdle(now);
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Drops the taggers idle for longer than the idle timeout. Must be called
+   * with the lock held
+   *
+   * @param now The current time
+   */
+  private void evictIdle(long now) {
+    if (idleTimeoutNanos == 0) {
+      return;
+    }
+    int evicted = 0;
+    // the least recently released taggers are last
+    for (Iterator<IdleTagger> i = idle.descendingIterator(); i.hasNext(); ) {
+      if (now - i.next().releasedAt <= idleTimeoutNanos) {
+        break;
+      }
+      i.remove();
+      evicted++;
+    }
+    if (evicted > 0) {
+      size -= evicted;
+      evictions += evicted;
+      // freed slots may be used by waiting threads
+      available.signalAll();
+    }
+  }
+  
+  /**
+   * Changes the number of leased taggers, accumulating the time weighted
+   * number of leased taggers. Must be called with the lock held
+   *
+   * @param now The current time
+   * @param delta The change in the number of leased taggers
+   */
+  private void changeLeased(long now, int delta) {
+    leasedNanos += leased * (now - lastChange);
+    lastChange = now;
+    leased += delta;
+  }
+  
+  /**
+   * Returns the maximum number of taggers
+   *
+   * @return The maximum size of the pool
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+  
+  /**
+   * Returns the number of taggers, leased or idle
+   *
+   * @return The size of the pool
+   */
+  public int getSize() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Returns the number of taggers currently leased
+   *
+   * @return The number of leased taggers
+   */
+  public int getLeasedCount() {
+    lock.lock();
+    try {
+      return leased;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Returns the number of taggers currently idle, without dropping those idle
+   * for longer than the idle timeout
+   *
+   * @return The number of idle taggers
+   */
+  public int getIdleCount() {
+    lock.lock();
+    try {
+      return idle.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Returns the total number of leases made
+   *
+   * @return The number of leases
+   */
+  public long getLeaseCount() {
+    lock.lock();
+    try {
+      return leases;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Returns the number of acquisitions which had to wait for a tagger to be
+   * released, including those which timed out
+   *
+   * @return The number of waiting acquisitions
+   */
+  public long getWaitCount() {
+    lock.lock();
+    try {
+      return waits;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Returns the total time acquisitions have spent waiting for a tagger to
+   * be released, including those which timed out
+   *
+   * @param unit The unit of the result
+   * @return The total waiting time
+   */
+  public long getWaitTime(TimeUnit unit) {
+    lock.lock();
+    try {
+      return unit.convert(waitNanos, TimeUnit.NANOSECONDS);
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Returns the number of idle taggers dropped after the idle timeout
+   *
+   * @return The number of evictions
+   */
+  public long getEvictionCount() {
+    lock.lock();
+    try {
+      return evictions;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Returns the average number of leased taggers since the pool was created,
+   * as a fraction of its maximum size. A utilization near 1 with a growing
+   * wait time suggests a larger pool
+   *
+   * @return The utilization, from 0 to 1
+   */
+  public double getUtilization() {
+    lock.lock();
+    try {
+      long now = System.nanoTime();
+      long elapsed = now - createdAt;
+      if (elapsed <= 0) {
+        return 0;
+      }
+      long total = leasedNanos + leased * (now - lastChange);
+      return (double) total / ((double) elapsed * maxSize);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
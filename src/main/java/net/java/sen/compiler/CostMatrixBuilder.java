@@ -78,6 +78,13 @@ class CostMatrixBuilder {
    */
   private Set<String> lexicalized = new HashSet<String>();
   
+  /**
+   * Maps the IDs of the built matrix axis to those of the matrix written,
+   * where IDs with identical costs have been merged, or <code>null</code> if
+   * no IDs have been merged
+   */
+  private int[] idMap;
+  
   /**
    * Converts a list of part-of-speech / conjugation identifier strings to
    * a vector of IDs unique to each string 
@@ -199,13 +206,36 @@ class CostMatrixBuilder {
     return ruleList.size();
   }
   
+  /**
+   * Sets the mapping from the IDs of the built matrix axis to those of the
+   * matrix written, after IDs with identical costs have been merged.
+   * {@link #getDicId(String)} returns merged IDs afterwards
+   *
+   * @param idMap The merged ID of each ID of the built matrix axis
+   */
+  public void setIdMap(int[] idMap) {
+    this.idMap = idMap;
+  }
+  
+  /**
+   * Returns the ID of a rule, merged through the mapping given to
+   * {@link #setIdMap(int[])} if any
+   *
+   * @param rule The rule
+   * @return The ID of the rule in the matrix written
+   */
+  public int getDicId(String rule) throws IOException {
+    int id = getUnmergedDicId(rule);
+    return (idMap == null) ? id : idMap[id];
+  }
+  
   /**
    * TODO This is magic. How does this work?
    *
    * @param rule The rule
    * @return TODO how is this ID defined?
    */
-  public int getDicId(String rule) throws IOException{
+  private int getUnmergedDicId(String rule) throws IOException{
     CSVParser parser = null;
     
     try {
@@ -27,24 +27,33 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.nio.MappedByteBuffer;
 import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import net.java.sen.util.IOUtils;
 
 import net.java.sen.dictionary.CToken;
+import net.java.sen.dictionary.CharacterDefinition;
 import net.java.sen.dictionary.DictionaryUtil;
+import net.java.sen.dictionary.PackedDictionary;
+import net.java.sen.trie.Alphabet;
+import net.java.sen.trie.FSTIndex;
 import net.java.sen.trie.TrieBuilder;
 import net.java.sen.util.CSVData;
 import net.java.sen.util.CSVParser;
 
+import org.apache.lucene.store.OutputStreamDataOutput;
+
 /**
  * Compiles CSV source data into the data files used for analysis
  */
@@ -64,6 +73,11 @@ public class DictionaryBuilder {
    * Compiled connection cost data filename
    */
   private static final String CONNECTION_COST_DATA_FILENAME = "connectionCost.sen";
+
+  /**
+   * Compiled connection cost ID map filename
+   */
+  private static final String CONNECTION_ID_MAP_DATA_FILENAME = "connectionIdMap.sen";
   
   /**
    * Compiled part of speech data filename
@@ -90,6 +104,38 @@ public class DictionaryBuilder {
    */
   private static final String HEADER_DATA_FILENAME = "header.sen";
   
+  /**
+   * Compiled character definition filename
+   */
+  private static final String CHARACTER_DEFINITION_DATA_FILENAME = CharacterDefinition.FILENAME;
+  
+  /**
+   * Compiled trie alphabet filename
+   */
+  private static final String ALPHABET_DATA_FILENAME = Alphabet.FILENAME;
+  
+  /**
+   * Compiled FST index filename
+   */
+  private static final String FST_DATA_FILENAME = FSTIndex.FILENAME;
+  
+  /**
+   * The files packed into a packed dictionary, of which the index files
+   * written are packed
+   */
+  private static final String[] PACKED_FILENAMES = {
+    CONNECTION_COST_DATA_FILENAME,
+    CONNECTION_ID_MAP_DATA_FILENAME,
+    PART_OF_SPEECH_DATA_FILENAME,
+    PART_OF_SPEECH_INDEX_FILENAME,
+    TOKEN_DATA_FILENAME,
+    TRIE_DATA_FILENAME,
+    HEADER_DATA_FILENAME,
+    CHARACTER_DEFINITION_DATA_FILENAME,
+    ALPHABET_DATA_FILENAME,
+    FST_DATA_FILENAME
+  };
+  
   /**
    * Default connection cost
    */
@@ -436,6 +482,8 @@ public class DictionaryBuilder {
    *          The filename of the connection CSV data
    * @param connectionCostDataFilename
    *          The filename for the connection cost matrix
+   * @param connectionIdMapDataFilename
+   *          The filename for the map of the matrix's IDs to merged IDs
    * @param defaultCost
    *          The default connection cost
    * @param charset
@@ -445,6 +493,7 @@ public class DictionaryBuilder {
    */
   private CostMatrixBuilder[] createConnectionCostFile(String connectionCSVFilename,
                                                        String connectionCostDataFilename,
+                                                       String connectionIdMapDataFilename,
                                                        short defaultCost,
                                                        String charset) throws IOException {
 
@@ -505,23 +554,9 @@ public class DictionaryBuilder {
       int size3 = matrixBuilders[2].size();
       int ruleSize = rule1.size();
       
-      // Write connection cost data
-      int matrixSizeBytes = (size1 * size2 * size3 * 2);
-      int headerSizeBytes = (3 * 2);
-
-      file = new RandomAccessFile(connectionCostDataFilename, "rw");
-      file.setLength(0);
-      file.writeShort(size1);
-      file.writeShort(size2);
-      file.writeShort(size3);
-      file.setLength(headerSizeBytes + matrixSizeBytes);
-      indexChannel = file.getChannel();
-      MappedByteBuffer buffer = indexChannel.map(FileChannel.MapMode.READ_WRITE, headerSizeBytes, matrixSizeBytes);
-      ShortBuffer shortBuffer = buffer.asShortBuffer();
-
-      for (int i = 0; i < (size1 * size2 * size3); i++) {
-        shortBuffer.put(i, defaultCost);
-      }
+      // Fill the connection cost matrix
+      short[] matrix = new short[size1 * size2 * size3];
+      Arrays.fill(matrix, defaultCost);
 
       for (int i = 0; i < ruleSize; i++) {
         Vector<Integer> r1 = matrixBuilders[0].getRuleIdList(rule1.get(i));
@@ -535,12 +570,47 @@ public class DictionaryBuilder {
             for (Iterator<Integer> i3 = r3.iterator(); i3.hasNext();) {
               int ii3 = i3.next();
               int position = size3 * (size2 * ii1 + ii2) + ii3;
-              shortBuffer.put(position, scores[i]);
+              matrix[position] = scores[i];
             }
           }
         }
       }
       
+      // Merge the IDs of each extent that have identical costs, and assign
+      // the merged IDs to tokens through the CostMatrixBuilders. Every ID in
+      // the compiled dictionary is a merged ID; the mapping is written next
+      // to the matrix for tools that relate them to the connection rules
+      int[] sizes = { size1, size2, size3 };
+      int[][] idMaps = new int[3][];
+      for (int axis = 0; axis < 3; axis++) {
+        idMaps[axis] = mergeEquivalentIds(matrix, sizes, axis);
+        matrixBuilders[axis].setIdMap(idMaps[axis]);
+      }
+      writeIdMaps(connectionIdMapDataFilename, idMaps);
+      matrix = compactMatrix(matrix, sizes, idMaps);
+      size1 = sizes[0];
+      size2 = sizes[1];
+      size3 = sizes[2];
+      
+      // If every rule applies alike whatever the first POS, the matrix is a
+      // bigram matrix: write its first extent with size 1
+      int writtenSize1 = isBigram(matrix, size1, size2 * size3) ? 1 : size1;
+      
+      // Write connection cost data
+      int matrixSizeBytes = (writtenSize1 * size2 * size3 * 2);
+      int headerSizeBytes = (3 * 2);
+
+      file = new RandomAccessFile(connectionCostDataFilename, "rw");
+      file.setLength(0);
+      file.writeShort(writtenSize1);
+      file.writeShort(size2);
+      file.writeShort(size3);
+      file.setLength(headerSizeBytes + matrixSizeBytes);
+      indexChannel = file.getChannel();
+      MappedByteBuffer buffer = indexChannel.map(FileChannel.MapMode.READ_WRITE, headerSizeBytes, matrixSizeBytes);
+      ShortBuffer shortBuffer = buffer.asShortBuffer();
+      shortBuffer.put(matrix, 0, writtenSize1 * size2 * size3);
+      
       buffer.force();
       
       return matrixBuilders;
@@ -549,6 +619,139 @@ public class DictionaryBuilder {
     }
   }
   
+  /**
+   * Writes the map of the IDs of each extent of the connection cost matrix
+   * to their merged IDs. For each extent in turn, the file holds the number
+   * of IDs as an int, followed by the merged ID of each as a short
+   * 
+   * @param idMapFilename The filename for the ID map
+   * @param idMaps The merged ID of each ID, for each extent
+   * @throws IOException
+   */
+  static void writeIdMaps(String idMapFilename, int[][] idMaps) throws IOException {
+    FileOutputStream fos = null;
+    DataOutputStream os = null;
+    try {
+      fos = new FileOutputStream(idMapFilename);
+      os = new DataOutputStream(new BufferedOutputStream(fos));
+      for (int[] idMap : idMaps) {
+        os.writeInt(idMap.length);
+        for (int id : idMap) {
+          os.writeShort(id);
+        }
+      }
+      os.flush();
+    } finally {
+      IOUtils.closeWhileHandlingException(os, fos);
+    }
+  }
+  
+  /**
+   * Numbers the IDs of one extent of a connection cost matrix so that IDs
+   * with identical costs for every index of the other two extents share a
+   * number. IDs are numbered in order of first appearance, so ID 0 keeps its
+   * number. ID 0 of the first extent, which marks tokens without a second
+   * right context attribute, is never merged
+   * 
+   * @param matrix The connection cost matrix
+   * @param sizes The sizes of the matrix's three extents
+   * @param axis The extent to merge, from 0 to 2
+   * @return The merged ID of each ID of the extent
+   */
+  static int[] mergeEquivalentIds(short[] matrix, int[] sizes, int axis) {
+    int size = sizes[axis];
+    int stride = 1;
+    for (int i = axis + 1; i < 3; i++) {
+      stride *= sizes[i];
+    }
+    int blocks = matrix.length / (size * stride);
+    
+    int[] idMap = new int[size];
+    Map<ShortBuffer, Integer> mergedIds = new HashMap<ShortBuffer, Integer>();
+    int merged = 0;
+    for (int id = 0; id < size; id++) {
+      if (axis == 0 && id == 0) {
+        idMap[id] = merged++;
+        continue;
+      }
+      short[] costs = new short[blocks * stride];
+      for (int block = 0; block < blocks; block++) {
+        System.arraycopy(matrix, (block * size + id) * stride, costs, block * stride, stride);
+      }
+      ShortBuffer key = ShortBuffer.wrap(costs);
+      Integer mergedId = mergedIds.get(key);
+      if (mergedId == null) {
+        mergedId = merged++;
+        mergedIds.put(key, mergedId);
+      }
+      idMap[id] = mergedId;
+    }
+    
+    return idMap;
+  }
+  
+  /**
+   * Creates the connection cost matrix indexed by merged IDs
+   * 
+   * @param matrix The connection cost matrix
+   * @param sizes The sizes of the matrix's three extents. Updated by this
+   *        method to the sizes of the merged matrix
+   * @param idMaps The merged ID of each ID of each extent
+   * @return The merged connection cost matrix
+   */
+  static short[] compactMatrix(short[] matrix, int[] sizes, int[][] idMaps) {
+    int[][] representatives = new int[3][];
+    for (int axis = 0; axis < 3; axis++) {
+      int[] idMap = idMaps[axis];
+      int merged = 0;
+      for (int id = 0; id < idMap.length; id++) {
+        merged = Math.max(merged, idMap[id] + 1);
+      }
+      representatives[axis] = new int[merged];
+      for (int id = idMap.length - 1; id >= 0; id--) {
+        representatives[axis][idMap[id]] = id;
+      }
+    }
+    
+    int size2 = sizes[1];
+    int size3 = sizes[2];
+    short[] compacted = new short[representatives[0].length * representatives[1].length * representatives[2].length];
+    int position = 0;
+    for (int i1 : representatives[0]) {
+      for (int i2 : representatives[1]) {
+        for (int i3 : representatives[2]) {
+          compacted[position++] = matrix[size3 * (size2 * i1 + i2) + i3];
+        }
+      }
+    }
+    
+    for (int axis = 0; axis < 3; axis++) {
+      sizes[axis] = representatives[axis].length;
+    }
+    
+    return compacted;
+  }
+  
+  /**
+   * Determines whether a connection cost matrix is the same for every index
+   * of its first extent
+   * 
+   * @param matrix The connection cost matrix
+   * @param size1 The size of the first extent
+   * @param sliceSize The number of costs for each index of the first extent
+   * @return <code>true</code> if every slice equals the first
+   */
+  private static boolean isBigram(short[] matrix, int size1, int sliceSize) {
+    for (int i = 1; i < size1; i++) {
+      for (int j = 0; j < sliceSize; j++) {
+        if (matrix[i * sliceSize + j] != matrix[j]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+  
   /**
    * Create the token data file
    * 
@@ -616,21 +819,66 @@ public class DictionaryBuilder {
   }
   
   /**
-   * Create Trie file
+   * Create Trie file, with its transitions coded through the alphabet of its
+   * keys, and the alphabet file
    * 
    * @param trieDataFilename The filename for the Trie file 
+   * @param alphabetDataFilename The filename for the alphabet file 
    * @param trieData The Trie precursor data
+   * @return The number of characters in the alphabet
    * @throws IOException 
    */
-  private void createTrieFile(String trieDataFilename, TrieData trieData) throws IOException {
-    TrieBuilder builder = new TrieBuilder(trieData.keys, trieData.values, trieData.size);
+  private int createTrieFile(String trieDataFilename, String alphabetDataFilename, TrieData trieData) throws IOException {
+    Alphabet alphabet = Alphabet.build(trieData.keys, trieData.size);
+    
+    FileOutputStream fos = null;
+    DataOutputStream os = null;
+    try {
+      fos = new FileOutputStream(alphabetDataFilename);
+      os = new DataOutputStream(new BufferedOutputStream(fos));
+      alphabet.write(os);
+      os.flush();
+    } finally {
+      IOUtils.closeWhileHandlingException(os, fos);
+    }
+    
+    TrieBuilder builder = new TrieBuilder(trieData.keys, trieData.values, trieData.size, alphabet);
     builder.build(trieDataFilename);
+    
+    return alphabet.size();
   }
   
   /**
-   * Creates the header file containing resource lengths
+   * Create FST index file
+   * 
+   * @param fstDataFilename The filename for the FST index file 
+   * @param trieData The Trie precursor data
+   * @throws IOException 
    */
-  private void createHeaderFile(String headerFilename) throws IOException {
+  private void createFSTFile(String fstDataFilename, TrieData trieData) throws IOException {
+    FileOutputStream fos = null;
+    BufferedOutputStream os = null;
+    try {
+      fos = new FileOutputStream(fstDataFilename);
+      os = new BufferedOutputStream(fos);
+      FSTIndex.build(trieData.keys, trieData.values, trieData.size, new OutputStreamDataOutput(os));
+      os.flush();
+    } finally {
+      IOUtils.closeWhileHandlingException(os, fos);
+    }
+  }
+  
+  /**
+   * Creates the header file containing resource lengths, followed by the
+   * number of characters in the trie alphabet, so that a Trie coded through
+   * an alphabet is never read without it
+   * 
+   * @param headerFilename The filename for the header file
+   * @param alphabetSize The number of characters in the trie alphabet, or 0
+   *        if there is no trie
+   * @throws IOException
+   */
+  private void createHeaderFile(String headerFilename, int alphabetSize) throws IOException {
 
     FileOutputStream fos = null;
     DataOutputStream os = null;
@@ -641,11 +889,69 @@ public class DictionaryBuilder {
       os.writeInt((int) new File(PART_OF_SPEECH_DATA_FILENAME).length());
       os.writeInt((int) new File(TOKEN_DATA_FILENAME).length());
       os.writeInt((int) new File(TRIE_DATA_FILENAME).length());
+      os.writeInt(alphabetSize);
+    } finally {
+      IOUtils.closeWhileHandlingException(os, fos);
+    }
+  }
+  
+  /**
+   * Creates the character definition file, from a MeCab format
+   * <code>char.def</code> or from the built in character classes
+   * 
+   * @param characterDefinitionFilename The filename of the
+   *        <code>char.def</code>, or <code>null</code>
+   * @param characterDefinitionDataFilename The filename for the compiled
+   *        character definition
+   * @param charset The charset of the <code>char.def</code>
+   * @throws IOException
+   */
+  private void createCharacterDefinitionFile(String characterDefinitionFilename, String characterDefinitionDataFilename, String charset) throws IOException {
+    CharacterDefinition characterDefinition;
+    if (characterDefinitionFilename == null) {
+      characterDefinition = CharacterDefinition.getDefault();
+    } else {
+      InputStreamReader reader = null;
+      try {
+        reader = new InputStreamReader(new FileInputStream(characterDefinitionFilename), charset);
+        characterDefinition = CharacterDefinition.parse(reader);
+      } finally {
+        IOUtils.closeWhileHandlingException(reader);
+      }
+    }
+    
+    FileOutputStream fos = null;
+    DataOutputStream os = null;
+    try {
+      fos = new FileOutputStream(characterDefinitionDataFilename);
+      os = new DataOutputStream(new BufferedOutputStream(fos));
+      characterDefinition.write(os);
+      os.flush();
     } finally {
       IOUtils.closeWhileHandlingException(os, fos);
     }
   }
   
+  /**
+   * Packs the compiled data files into a single packed dictionary, and
+   * removes the loose files
+   * 
+   * @throws IOException
+   */
+  private void createPackedFile() throws IOException {
+    List<String> filenames = new ArrayList<String>();
+    for (String filename : PACKED_FILENAMES) {
+      if (new File(filename).exists()) {
+        filenames.add(filename);
+      }
+    }
+    PackedDictionary.write(new File(PackedDictionary.FILENAME), new File("."), filenames);
+    
+    for (String filename : filenames) {
+      new File(filename).delete();
+    }
+  }
+  
   /**
    * Compiles CSV source data into the data files used for analysis
    * 
@@ -653,6 +959,52 @@ public class DictionaryBuilder {
    * @throws IOException 
    */
   public DictionaryBuilder(String[] customDictionaryCSVFilenames) throws IOException {
+    this(customDictionaryCSVFilenames, false);
+  }
+  
+  /**
+   * Compiles CSV source data into the data files used for analysis
+   * 
+   * @param customDictionaryCSVFilenames The filenames of custom dictionaries, or <code>null</code>
+   * @param packed If <code>true</code>, write a single packed dictionary
+   *               (dictionary.sen) instead of the loose data files
+   * @throws IOException 
+   */
+  public DictionaryBuilder(String[] customDictionaryCSVFilenames, boolean packed) throws IOException {
+    this(customDictionaryCSVFilenames, packed, null);
+  }
+  
+  /**
+   * Compiles CSV source data into the data files used for analysis
+   * 
+   * @param customDictionaryCSVFilenames The filenames of custom dictionaries, or <code>null</code>
+   * @param packed If <code>true</code>, write a single packed dictionary
+   *               (dictionary.sen) instead of the loose data files
+   * @param characterDefinitionFilename The filename of a MeCab format
+   *        <code>char.def</code> defining the character classes used to
+   *        find unknown morphemes, or <code>null</code> to use the built in
+   *        classes
+   * @throws IOException 
+   */
+  public DictionaryBuilder(String[] customDictionaryCSVFilenames, boolean packed, String characterDefinitionFilename) throws IOException {
+    this(customDictionaryCSVFilenames, packed, characterDefinitionFilename, false);
+  }
+  
+  /**
+   * Compiles CSV source data into the data files used for analysis
+   * 
+   * @param customDictionaryCSVFilenames The filenames of custom dictionaries, or <code>null</code>
+   * @param packed If <code>true</code>, write a single packed dictionary
+   *               (dictionary.sen) instead of the loose data files
+   * @param characterDefinitionFilename The filename of a MeCab format
+   *        <code>char.def</code> defining the character classes used to
+   *        find unknown morphemes, or <code>null</code> to use the built in
+   *        classes
+   * @param fstIndex If <code>true</code>, index the dictionary's keys with
+   *        an FST (fst.sen) instead of a double array trie (trie.sen)
+   * @throws IOException 
+   */
+  public DictionaryBuilder(String[] customDictionaryCSVFilenames, boolean packed, String characterDefinitionFilename, boolean fstIndex) throws IOException {
     
     List<String> dictionaryCSVFilenames = new ArrayList<String>();
     dictionaryCSVFilenames.add(DICTIONARY_CSV_FILENAME);
@@ -664,6 +1016,7 @@ public class DictionaryBuilder {
     CostMatrixBuilder[] matrixBuilders = createConnectionCostFile(
         CONNECTION_CSV_FILENAME,
         CONNECTION_COST_DATA_FILENAME,
+        CONNECTION_ID_MAP_DATA_FILENAME,
         DEFAULT_CONNECTION_COST,
         charset
     );
@@ -697,9 +1050,30 @@ public class DictionaryBuilder {
           dictionaryList
       );
 
-      // Create Trie file (da.sen)
-      createTrieFile(TRIE_DATA_FILENAME, trieData);
-      createHeaderFile(HEADER_DATA_FILENAME);
+      // Create Trie file (trie.sen) and alphabet file (alphabet.sen), or FST
+      // index file (fst.sen), removing those of the other kind of index left
+      // by an earlier build
+      int alphabetSize = 0;
+      if (fstIndex) {
+        new File(TRIE_DATA_FILENAME).delete();
+        new File(ALPHABET_DATA_FILENAME).delete();
+        createFSTFile(FST_DATA_FILENAME, trieData);
+      } else {
+        new File(FST_DATA_FILENAME).delete();
+        alphabetSize = createTrieFile(TRIE_DATA_FILENAME, ALPHABET_DATA_FILENAME, trieData);
+      }
+      createHeaderFile(HEADER_DATA_FILENAME, alphabetSize);
+      
+      // Create character definition file (charClass.sen)
+      createCharacterDefinitionFile(characterDefinitionFilename, CHARACTER_DEFINITION_DATA_FILENAME, charset);
+      
+      if (packed) {
+        createPackedFile();
+      } else {
+        // A packed dictionary left by an earlier build would be loaded in
+        // preference to the loose files
+        new File(PackedDictionary.FILENAME).delete();
+      }
     } finally {
       IOUtils.closeWhileHandlingException(dictionaryList);
     }
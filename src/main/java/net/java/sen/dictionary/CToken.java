@@ -74,6 +74,23 @@ final public class CToken implements Cloneable {
     terminator = false;
   }
   
+  /**
+   * Read a CToken from a given position of a ByteBuffer, without moving the
+   * buffer's position
+   *
+   * @param buffer The ByteBuffer to read from
+   * @param position The position of the CToken within the buffer
+   */
+  public void read(ByteBuffer buffer, int position) {
+    rcAttr2 = buffer.getShort(position);
+    rcAttr1 = buffer.getShort(position + 2);
+    lcAttr = buffer.getShort(position + 4);
+    length = buffer.getShort(position + 6);
+    cost = buffer.getShort(position + 8);
+    partOfSpeechIndex = buffer.getInt(position + 10);
+    terminator = false;
+  }
+  
   /**
    * Write a CToken to a DataOutput
    *
@@ -0,0 +1,138 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+/**
+ * The character class of each position of a {@link Sentence}, and the end of
+ * the run of characters compatible with that class starting at each
+ * position, and the end of the characters readable from each position,
+ * computed once per sentence by
+ * {@link Sentence#computeCharacterClasses(CharacterDefinition, CharacterClasses)}.
+ * The arrays are reused from sentence to sentence, and only grow when a
+ * sentence is longer than any before it, so an instance should be owned by
+ * the tagger that analyses the sentences
+ */
+public class CharacterClasses {
+  
+  /** The character definition the classes were computed with */
+  CharacterDefinition definition;
+  
+  /** The sentence the classes were computed for */
+  Sentence sentence;
+  
+  /** The class of each position */
+  byte[] classes;
+  
+  /**
+   * The position following the end of the run of characters compatible with
+   * the class of each position, that an iterator starting from the position
+   * would return
+   */
+  int[] runEnds;
+  
+  /**
+   * The position following the last character that an iterator starting
+   * from each position would return, whatever its class
+   */
+  int[] readEnds;
+  
+  /**
+   * Returns the character definition the classes were computed with
+   *
+   * @return The character definition
+   */
+  public CharacterDefinition getDefinition() {
+    return definition;
+  }
+  
+  /**
+   * Returns the character class at a position
+   *
+   * @param position The position
+   * @return The character class
+   */
+  public int getCharClass(int position) {
+    return classes[position];
+  }
+  
+  /**
+   * Returns the position following the end of the run of characters
+   * compatible with the class at a position. The run stops at ignored and
+   * space characters and at reading constraints, in the same way as
+   * {@link Sentence#iterator()}
+   *
+   * @param position The position
+   * @return The end of the run
+   */
+  public int getRunEnd(int position) {
+    return runEnds[position];
+  }
+  
+  /**
+   * Returns the position following the last character that an iterator
+   * starting from a position would return, which is as far as a dictionary
+   * search from the position may read
+   *
+   * @param position The position
+   * @return The end of the characters readable from the position
+   */
+  public int getReadEnd(int position) {
+    return readEnds[position];
+  }
+  
+  /**
+   * Returns the array holding the characters of the sentence
+   *
+   * @return The characters of the sentence
+   * @see Sentence#getBuffer()
+   */
+  public char[] getBuffer() {
+    return sentence.getBuffer();
+  }
+  
+  /**
+   * Returns the offset of the sentence within {@link #getBuffer()}
+   *
+   * @return The offset of the sentence
+   */
+  public int getOffset() {
+    return sentence.getOffset();
+  }
+  
+  /**
+   * Ensures the arrays can hold a sentence of the given length
+   *
+   * @param length The length of the sentence
+   */
+  void ensureCapacity(int length) {
+    if (classes.length < length) {
+      int capacity = Math.max(length, classes.length << 1);
+      classes = new byte[capacity];
+      runEnds = new int[capacity];
+      readEnds = new int[capacity];
+    }
+  }
+  
+  /**
+   * Creates empty buffers
+   */
+  public CharacterClasses() {
+    this.classes = new byte[256];
+    this.runEnds = new int[256];
+    this.readEnds = new int[256];
+  }
+}
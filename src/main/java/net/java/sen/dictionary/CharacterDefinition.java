@@ -0,0 +1,511 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.Character.UnicodeBlock.CYRILLIC;
+import static java.lang.Character.UnicodeBlock.CYRILLIC_EXTENDED_A;
+import static java.lang.Character.UnicodeBlock.CYRILLIC_EXTENDED_B;
+import static java.lang.Character.UnicodeBlock.CYRILLIC_SUPPLEMENTARY;
+import static java.lang.Character.UnicodeBlock.GREEK;
+import static java.lang.Character.UnicodeBlock.GREEK_EXTENDED;
+import static java.lang.Character.UnicodeBlock.LATIN_1_SUPPLEMENT;
+import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_A;
+import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_ADDITIONAL;
+import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_B;
+import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_C;
+import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_D;
+
+/**
+ * The character classes used to find unknown morphemes, with a rule for
+ * each class, in the manner of MeCab's <code>char.def</code>. The class of
+ * every character is precomputed into a table, so that finding it takes
+ * constant time.
+ * 
+ * <p>Each class has three rules:
+ * <ul>
+ * <li><b>invoke</b>: if <code>true</code>, unknown morphemes are proposed at a
+ *     position starting with the class even when the dictionary has
+ *     morphemes there
+ * <li><b>group</b>: if <code>true</code>, an unknown morpheme is proposed
+ *     covering the whole run of characters compatible with the class
+ * <li><b>length</b>: unknown morphemes of every length from 1 to this length
+ *     are also proposed, within the run
+ * </ul>
+ * 
+ * <p>A character may belong to further classes besides its own, which it is
+ * then compatible with: a run continues for as long as the characters are
+ * compatible with the class of its first character.
+ * 
+ * <p>The compiled form (charClass.sen) is:
+ * <pre>
+ *   char   number of classes (at most 64)
+ *   for each class:
+ *     UTF    name
+ *     byte   invoke (0 or 1)
+ *     byte   group (0 or 1)
+ *     short  length
+ *   char   number of character types (at most 256)
+ *   for each type:
+ *     byte   class
+ *     long   bitmask of the compatible classes
+ *   byte[65536]  the type of each character
+ * </pre>
+ */
+public final class CharacterDefinition {
+  
+  /** The filename of a compiled character definition */
+  public static final String FILENAME = "charClass.sen";
+  
+  /** The maximum number of classes */
+  private static final int MAX_CLASSES = 64;
+  
+  /** The maximum number of distinct character types */
+  private static final int MAX_TYPES = 256;
+  
+  /** The number of characters */
+  private static final int CHARACTERS = 0x10000;
+  
+  /** The name of the class of characters not otherwise mapped */
+  public static final String DEFAULT_CLASS = "DEFAULT";
+  
+  /** The names of the classes */
+  private final String[] names;
+  
+  /** The invoke rule of each class */
+  private final boolean[] invoke;
+  
+  /** The group rule of each class */
+  private final boolean[] group;
+  
+  /** The length rule of each class */
+  private final int[] length;
+  
+  /** The class of each character type */
+  private final byte[] typeClasses;
+  
+  /** The compatible classes of each character type */
+  private final long[] typeMasks;
+  
+  /** The type of each character */
+  private final byte[] types;
+  
+  /** The definition equivalent to the built in character classes */
+  private static CharacterDefinition defaultDefinition;
+  
+  /**
+   * Returns the number of classes
+   *
+   * @return The number of classes
+   */
+  public int getClassCount() {
+    return names.length;
+  }
+  
+  /**
+   * Returns the name of a class
+   *
+   * @param charClass The class
+   * @return The name of the class
+   */
+  public String getClassName(int charClass) {
+    return names[charClass];
+  }
+  
+  /**
+   * Returns the class with the given name
+   *
+   * @param name The name of the class
+   * @return The class, or -1 if there is no such class
+   */
+  public int getCharClass(String name) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+  
+  /**
+   * Returns the class of a character
+   *
+   * @param c The character
+   * @return The class
+   */
+  public int getCharClass(char c) {
+    return typeClasses[types[c] & 0xFF];
+  }
+  
+  /**
+   * Determines whether a character belongs to, or is compatible with, a
+   * class
+   *
+   * @param charClass The class
+   * @param c The character
+   * @return <code>true</code> if the character is compatible with the class
+   */
+  public boolean isCompatible(int charClass, char c) {
+    return (typeMasks[types[c] & 0xFF] & (1L << charClass)) != 0;
+  }
+  
+  /**
+   * @param charClass The class
+   * @return The invoke rule of the class
+   */
+  public boolean isInvoke(int charClass) {
+    return invoke[charClass];
+  }
+  
+  /**
+   * @param charClass The class
+   * @return The group rule of the class
+   */
+  public boolean isGroup(int charClass) {
+    return group[charClass];
+  }
+  
+  /**
+   * @param charClass The class
+   * @return The length rule of the class
+   */
+  public int getLength(int charClass) {
+    return length[charClass];
+  }
+  
+  /**
+   * Writes the compiled form of this definition
+   *
+   * @param out The stream to write to
+   * @throws IOException
+   */
+  public void write(DataOutputStream out) throws IOException {
+    out.writeChar(names.length);
+    for (int i = 0; i < names.length; i++) {
+      out.writeUTF(names[i]);
+      out.writeByte(invoke[i] ? 1 : 0);
+      out.writeByte(group[i] ? 1 : 0);
+      out.writeShort(length[i]);
+    }
+    
+    out.writeChar(typeClasses.length);
+    for (int i = 0; i < typeClasses.length; i++) {
+      out.writeByte(typeClasses[i]);
+      out.writeLong(typeMasks[i]);
+    }
+    
+    out.write(types);
+  }
+  
+  /**
+   * Reads the compiled form of a definition
+   *
+   * @param buffer The compiled definition
+   * @return The definition
+   * @throws IOException
+   */
+  public static CharacterDefinition read(ByteBuffer buffer) throws IOException {
+    byte[] data = new byte[buffer.remaining()];
+    buffer.duplicate().get(data);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    
+    int classCount = in.readChar();
+    String[] names = new String[classCount];
+    boolean[] invoke = new boolean[classCount];
+    boolean[] group = new boolean[classCount];
+    int[] length = new int[classCount];
+    for (int i = 0; i < classCount; i++) {
+      names[i] = in.readUTF();
+      invoke[i] = in.readByte() != 0;
+      group[i] = in.readByte() != 0;
+      length[i] = in.readShort();
+    }
+    
+    int typeCount = in.readChar();
+    byte[] typeClasses = new byte[typeCount];
+    long[] typeMasks = new long[typeCount];
+    for (int i = 0; i < typeCount; i++) {
+      typeClasses[i] = in.readByte();
+      typeMasks[i] = in.readLong();
+    }
+    
+    byte[] types = new byte[CHARACTERS];
+    in.readFully(types);
+    
+    return new CharacterDefinition(names, invoke, group, length, typeClasses, typeMasks, types);
+  }
+  
+  /**
+   * Parses a definition in the format of MeCab's <code>char.def</code>.
+   * Class lines have the form <code>NAME INVOKE GROUP LENGTH</code>, and
+   * mapping lines the form <code>0xXXXX[..0xYYYY] CLASS [CLASS...]</code>,
+   * where the first class given is the characters' own class and the
+   * others are classes they are also compatible with. Later mappings
+   * override earlier ones. Characters not mapped belong to the
+   * <code>DEFAULT</code> class, which must be defined. Text following a
+   * <code>#</code> is a comment, and characters beyond the Basic
+   * Multilingual Plane are ignored
+   *
+   * @param reader The reader to parse from
+   * @return The definition
+   * @throws IOException
+   */
+  public static CharacterDefinition parse(Reader reader) throws IOException {
+    BufferedReader in = new BufferedReader(reader);
+    
+    List<String> names = new ArrayList<String>();
+    List<int[]> rules = new ArrayList<int[]>();
+    List<String[]> mappings = new ArrayList<String[]>();
+    
+    String line;
+    for (int lineNumber = 1; (line = in.readLine()) != null; lineNumber++) {
+      int comment = line.indexOf('#');
+      if (comment >= 0) {
+        line = line.substring(0, comment);
+      }
+      line = line.trim();
+      if (line.length() == 0) {
+        continue;
+      }
+      
+      String[] fields = line.split("\\s+");
+      if (fields[0].startsWith("0x")) {
+        if (fields.length < 2) {
+          throw new IOException("char.def format error at line " + lineNumber + ": " + line);
+        }
+        mappings.add(fields);
+      } else {
+        if (fields.length != 4) {
+          throw new IOException("char.def format error at line " + lineNumber + ": " + line);
+        }
+        if (names.contains(fields[0])) {
+          throw new IOException("char.def duplicate class at line " + lineNumber + ": " + fields[0]);
+        }
+        try {
+          rules.add(new int[] { Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]) });
+        } catch (NumberFormatException e) {
+          throw new IOException("char.def format error at line " + lineNumber + ": " + line);
+        }
+        names.add(fields[0]);
+      }
+    }
+    
+    int defaultClass = names.indexOf(DEFAULT_CLASS);
+    if (defaultClass < 0) {
+      throw new IOException("char.def does not define the " + DEFAULT_CLASS + " class");
+    }
+    if (names.size() > MAX_CLASSES) {
+      throw new IOException("char.def defines more than " + MAX_CLASSES + " classes");
+    }
+    
+    // Each character's class in the low byte, and its compatible classes
+    int[] classes = new int[CHARACTERS];
+    long[] masks = new long[CHARACTERS];
+    Arrays.fill(classes, defaultClass);
+    Arrays.fill(masks, 1L << defaultClass);
+    for (String[] fields : mappings) {
+      String[] range = fields[0].split("\\.\\.");
+      int start, end;
+      try {
+        start = Integer.decode(range[0]);
+        end = (range.length > 1) ? Integer.decode(range[1]) : start;
+      } catch (NumberFormatException e) {
+        throw new IOException("char.def invalid code point: " + fields[0]);
+      }
+      
+      int charClass = -1;
+      long mask = 0;
+      for (int i = 1; i < fields.length; i++) {
+        int compatibleClass = names.indexOf(fields[i]);
+        if (compatibleClass < 0) {
+          throw new IOException("char.def undefined class: " + fields[i]);
+        }
+        if (charClass < 0) {
+          charClass = compatibleClass;
+        }
+        mask |= 1L << compatibleClass;
+      }
+      
+      for (int c = start; c <= end && c < CHARACTERS; c++) {
+        classes[c] = charClass;
+        masks[c] = mask;
+      }
+    }
+    
+    int[][] classRules = rules.toArray(new int[rules.size()][]);
+    boolean[] invoke = new boolean[classRules.length];
+    boolean[] group = new boolean[classRules.length];
+    int[] length = new int[classRules.length];
+    for (int i = 0; i < classRules.length; i++) {
+      invoke[i] = classRules[i][0] != 0;
+      group[i] = classRules[i][1] != 0;
+      length[i] = classRules[i][2];
+    }
+    
+    return build(names.toArray(new String[names.size()]), invoke, group, length, classes, masks);
+  }
+  
+  /**
+   * Returns the definition equivalent to the classes built in to
+   * {@link net.java.sen.tokenizers.ja.JapaneseTokenizer}, used for
+   * dictionaries compiled without a character definition. Kanji, hiragana
+   * and symbols form single character unknown morphemes, while katakana,
+   * spaces, and letters, digits and punctuation of the same Unicode
+   * general category form grouped unknown morphemes
+   *
+   * @return The definition
+   */
+  public static synchronized CharacterDefinition getDefault() {
+    if (defaultDefinition == null) {
+      // The general categories, which are numbered from 0 to 30
+      String[] names = new String[36];
+      for (int i = 0; i < 31; i++) {
+        names[i] = "CATEGORY_" + i;
+      }
+      names[31] = DEFAULT_CLASS;
+      names[32] = "SPACE";
+      names[33] = "KANJI";
+      names[34] = "KATAKANA";
+      names[35] = "HIRAGANA";
+      
+      boolean[] invoke = new boolean[names.length];
+      boolean[] group = new boolean[names.length];
+      int[] length = new int[names.length];
+      Arrays.fill(invoke, true);
+      Arrays.fill(group, true);
+      invoke[33] = invoke[35] = false;
+      group[31] = group[33] = group[35] = false;
+      length[31] = length[33] = length[35] = 1;
+      
+      int[] classes = new int[CHARACTERS];
+      long[] masks = new long[CHARACTERS];
+      for (int c = 0; c < CHARACTERS; c++) {
+        classes[c] = getBuiltInClass((char) c);
+        masks[c] = 1L << classes[c];
+      }
+      
+      defaultDefinition = build(names, invoke, group, length, classes, masks);
+    }
+    
+    return defaultDefinition;
+  }
+  
+  /**
+   * Gets the built in class of a character, numbered as in
+   * {@link #getDefault()}
+   *
+   * @param c The character
+   * @return The class
+   */
+  private static int getBuiltInClass(char c) {
+    if (c <= 0x7F) {
+      return (c == ' ' || c == '\t' || c == '\r' || c == '\n') ? 32 : Character.getType(Character.toLowerCase(c));
+    } else if (c >= 0x3040 && c <= 0x309F) {
+      return 35;
+    } else if ((c >= 0x30A0 && c <= 0x30FF && c != 0x30FB) || (c >= 0x31F0 && c <= 0x31FF) || (c >= 0xFF66 && c <= 0xFF9F)) {
+      return 34;
+    } else if (c >= 0x4E00 && c <= 0x9FFF) {
+      return 33;
+    } else {
+      Character.UnicodeBlock ub = Character.UnicodeBlock.of(c);
+      if (ub == LATIN_1_SUPPLEMENT || ub == LATIN_EXTENDED_ADDITIONAL || ub == LATIN_EXTENDED_A || ub == LATIN_EXTENDED_B || ub == LATIN_EXTENDED_C || ub == LATIN_EXTENDED_D
+          || ub == GREEK || ub == GREEK_EXTENDED
+          || ub == CYRILLIC || ub == CYRILLIC_EXTENDED_A || ub == CYRILLIC_EXTENDED_B || ub == CYRILLIC_SUPPLEMENTARY) {
+        // Latin, Greek and Cyrillic letters
+        return Character.getType(Character.toLowerCase(c));
+      } else {
+        // Symbols
+        return 31;
+      }
+    }
+  }
+  
+  /**
+   * Builds a definition from the class and compatible classes of every
+   * character, sharing one character type between all characters with the
+   * same classes
+   *
+   * @param names The names of the classes
+   * @param invoke The invoke rules of the classes
+   * @param group The group rules of the classes
+   * @param length The length rules of the classes
+   * @param classes The class of each character
+   * @param masks The compatible classes of each character
+   * @return The definition
+   */
+  private static CharacterDefinition build(String[] names, boolean[] invoke, boolean[] group, int[] length, int[] classes, long[] masks) {
+    Map<String, Integer> typeIndex = new HashMap<String, Integer>();
+    List<Integer> typeClasses = new ArrayList<Integer>();
+    List<Long> typeMasks = new ArrayList<Long>();
+    byte[] types = new byte[CHARACTERS];
+    
+    for (int c = 0; c < CHARACTERS; c++) {
+      String key = classes[c] + ":" + masks[c];
+      Integer type = typeIndex.get(key);
+      if (type == null) {
+        if (typeClasses.size() == MAX_TYPES) {
+          throw new IllegalArgumentException("More than " + MAX_TYPES + " distinct character types");
+        }
+        type = typeClasses.size();
+        typeIndex.put(key, type);
+        typeClasses.add(classes[c]);
+        typeMasks.add(masks[c]);
+      }
+      types[c] = (byte) type.intValue();
+    }
+    
+    byte[] typeClassArray = new byte[typeClasses.size()];
+    long[] typeMaskArray = new long[typeMasks.size()];
+    for (int i = 0; i < typeClassArray.length; i++) {
+      typeClassArray[i] = (byte) typeClasses.get(i).intValue();
+      typeMaskArray[i] = typeMasks.get(i);
+    }
+    
+    return new CharacterDefinition(names, invoke, group, length, typeClassArray, typeMaskArray, types);
+  }
+  
+  /**
+   * @param names The names of the classes
+   * @param invoke The invoke rules of the classes
+   * @param group The group rules of the classes
+   * @param length The length rules of the classes
+   * @param typeClasses The class of each character type
+   * @param typeMasks The compatible classes of each character type
+   * @param types The type of each character
+   */
+  private CharacterDefinition(String[] names, boolean[] invoke, boolean[] group, int[] length, byte[] typeClasses, long[] typeMasks, byte[] types) {
+    this.names = names;
+    this.invoke = invoke;
+    this.group = group;
+    this.length = length;
+    this.typeClasses = typeClasses;
+    this.typeMasks = typeMasks;
+    this.types = types;
+  }
+}
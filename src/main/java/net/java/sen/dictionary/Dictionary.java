@@ -25,12 +25,19 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.util.Arrays;
 
 import net.java.sen.trie.CharIterator;
-import net.java.sen.trie.TrieSearcher;
+import net.java.sen.trie.PrefixIndex;
+import net.java.sen.trie.Trie;
 
 /**
  * The <code>Dictionary</code> class wraps access to a compiled Sen dictionary
+ * 
+ * <p><b>Thread Safety</b>: A <code>Dictionary</code> only reads its buffers
+ * at absolute positions, and keeps the scratch state of its searches in a
+ * {@link SearchState} owned by the caller, so one instance may be shared by
+ * any number of threads
  */
 public class Dictionary {
   
@@ -40,8 +47,8 @@ public class Dictionary {
   /** Mapped buffer of the part-of-speech information file (partOfSpeech.sen) */
   private final ByteBuffer partOfSpeechInfoBuffer;
   
-  /** Mapped buffer of the Trie data (trie.sen) */
-  private final IntBuffer trieBuffer;
+  /** The index of the dictionary's keys (trie.sen or fst.sen) */
+  private final PrefixIndex index;
   
   /** Mapped buffer of the connection cost matrix file (connectionCost.sen) */
   private final ShortBuffer connectionCostBuffer;
@@ -55,6 +62,16 @@ public class Dictionary {
   /** Size of the third extent of the connection cost matrix */
   private final int connectionSize3;
   
+  /**
+   * The connection cost matrix on the heap if its first extent has size 1,
+   * in which case the cost depends only on the two Nodes being connected;
+   * <code>null</code> otherwise
+   */
+  private final short[] bigramCosts;
+  
+  /** The index of the first cost within {@link #bigramCosts} */
+  private final int bigramOffset;
+  
   /** A CToken representing a beginning-of-string */
   private final CToken bosToken;
   
@@ -64,17 +81,11 @@ public class Dictionary {
   /** A CToken representing an unknown morpheme */
   private final CToken unknownToken;
   
-  /**
-   * A buffer used to store result indices from a Trie search. Reused on
-   * every call to the {@link #commonPrefixSearch(CharIterator)} method
-   */
-  private final int trieSearchResults[] = new int[256];
+  /** The character classes used to find unknown morphemes */
+  private final CharacterDefinition characterDefinition;
   
-  /**
-   * A buffer used to store {@link CToken}s resulting from a search. Reused
-   * on every call to the {@link #commonPrefixSearch(CharIterator)} method
-   */
-  private final CToken results[] = new CToken[256];
+  /** The cache of decoded morphemes, or <code>null</code> */
+  private final MorphemeCache morphemeCache;
   
   final String posIndex[];
   final String conjTypeIndex[];
@@ -110,6 +121,65 @@ public class Dictionary {
     return unknownToken.clone();
   }
   
+  /**
+   * Returns the character classes used to find unknown morphemes
+   *
+   * @return The character definition
+   */
+  public CharacterDefinition getCharacterDefinition() {
+    return characterDefinition;
+  }
+  
+  /**
+   * Returns the cache of decoded morphemes
+   *
+   * @return The cache, or <code>null</code> if morphemes are decoded afresh
+   *         for each {@link Morpheme}
+   */
+  public MorphemeCache getMorphemeCache() {
+    return morphemeCache;
+  }
+  
+  /**
+   * Returns the part-of-speech with a given ID
+   *
+   * @param id The ID, from {@link Morpheme#getPartOfSpeechId()}
+   * @return The part-of-speech in Chasen format
+   */
+  public String getPartOfSpeech(int id) {
+    return posIndex[id];
+  }
+  
+  /**
+   * Returns the number of distinct parts-of-speech, one more than the
+   * greatest part-of-speech ID
+   *
+   * @return The number of parts-of-speech
+   */
+  public int getPartOfSpeechCount() {
+    return posIndex.length;
+  }
+  
+  /**
+   * Returns the conjugation type with a given ID
+   *
+   * @param id The ID, from {@link Morpheme#getConjugationalTypeId()}
+   * @return The conjugation type
+   */
+  public String getConjugationalType(int id) {
+    return conjTypeIndex[id];
+  }
+  
+  /**
+   * Returns the conjugation form with a given ID
+   *
+   * @param id The ID, from {@link Morpheme#getConjugationalFormId()}
+   * @return The conjugation form
+   */
+  public String getConjugationalForm(int id) {
+    return conjFormIndex[id];
+  }
+  
   /**
    * Returns the part of speech info character buffer
    *
@@ -128,32 +198,74 @@ public class Dictionary {
    * @return The connection cost
    */
   public int getCost(Node lNode2, Node lNode, Node rNode) {
+    if (bigramCosts != null) {
+      return getCost(lNode, rNode);
+    }
     final int position = connectionSize3 * (connectionSize2 * lNode2.rcAttr2 + lNode.rcAttr1) + rNode.lcAttr;
     return connectionCostBuffer.get(position) + rNode.dictionaryCost;
   }
   
+  /**
+   * Indicates whether the connection cost depends only on the two Nodes
+   * being connected, so that {@link #getCost(Node, Node)} may be used
+   *
+   * @return <code>true</code> if the connection cost matrix is a bigram matrix
+   */
+  public boolean isBigram() {
+    return bigramCosts != null;
+  }
+  
+  /**
+   * Retrieves the cost between two Nodes from a bigram connection cost
+   * matrix
+   * 
+   * @param lNode The left Node
+   * @param rNode The right Node
+   * @return The connection cost
+   * @see #isBigram()
+   */
+  public int getCost(Node lNode, Node rNode) {
+    return bigramCosts[bigramOffset + connectionSize3 * lNode.rcAttr1 + rNode.lcAttr] + rNode.dictionaryCost;
+  }
+  
+  /**
+   * Creates the scratch state for searches of this Dictionary by one thread
+   *
+   * @return A new search state
+   */
+  public SearchState newSearchState() {
+    return new SearchState(index.newSearcher());
+  }
+  
   /**
    * Searches for possible morphemes starting at the current position of a
    * CharIterator. The iterator is advanced by the length of the longest
    * matching morpheme 
    *
    * @param iterator The iterator to search from 
-   * @return The possible morphemes found
+   * @param state The scratch state of the search
+   * @return The possible morphemes found, terminated by a CToken whose
+   *         <code>terminator</code> is set. The array is reused by the next
+   *         search with the same state
    */
-  public CToken[] commonPrefixSearch(CharIterator iterator) {
+  public CToken[] commonPrefixSearch(CharIterator iterator, SearchState state) {
+    int[] indices = commonPrefixTokens(iterator, state);
     int size = 0;
+    while (indices[size] >= 0) {
+      size++;
+    }
     
-    int n = TrieSearcher.commonPrefixSearch(trieBuffer, iterator, trieSearchResults);
-
-    for (int i = 0; i < n; i++) {
-      int k = trieSearchResults[i] & 0xff;
-      int p = trieSearchResults[i] >> 8;
-    
-      tokenBuffer.position((int) ((p + 3) * CToken.SIZE));
-    
-      for (int j = 0; j < k; j++) {
-        results[size++].read(tokenBuffer);
+    CToken[] results = state.tokens;
+    if (results == null || results.length <= size) {
+      results = new CToken[Math.max(size + 1, 256)];
+      for (int i = 0; i < results.length; i++) {
+        results[i] = new CToken();
       }
+      state.tokens = results;
+    }
+    
+    for (int i = 0; i < size; i++) {
+      results[i].read(tokenBuffer, (int) (indices[i] * CToken.SIZE));
     }
     
     // Null terminate
@@ -163,10 +275,150 @@ public class Dictionary {
   }
   
   /**
-   * Constructor
+   * Searches for possible morphemes starting at the current position of a
+   * CharIterator, with a search state of its own. The iterator is advanced by
+   * the length of the longest matching morpheme 
+   *
+   * @param iterator The iterator to search from 
+   * @return The possible morphemes found, terminated by a CToken whose
+   *         <code>terminator</code> is set
+   * @deprecated Use {@link #commonPrefixSearch(CharIterator, SearchState)}
+   *             with a state from {@link #newSearchState()}, which is reused
+   *             from one search to the next
+   */
+  @Deprecated
+  public CToken[] commonPrefixSearch(CharIterator iterator) {
+    return commonPrefixSearch(iterator, newSearchState());
+  }
+  
+  /**
+   * Searches for possible morphemes starting at the current position of a
+   * CharIterator, returning the indices of their records in the token file
+   * rather than copying the records out. The iterator is advanced by the
+   * length of the longest matching morpheme 
+   *
+   * @param iterator The iterator to search from 
+   * @param state The scratch state of the search
+   * @return The indices of the token records found, terminated by -1. The
+   *         array is reused by the next search with the same state
+   * @see #readNode(Node, int)
+   */
+  public int[] commonPrefixTokens(CharIterator iterator, SearchState state) {
+    return tokenIndices(state, state.index.commonPrefixSearch(iterator, state.indexResults));
+  }
+  
+  /**
+   * Searches for possible morphemes starting at a given position within a
+   * character array, returning the indices of their records in the token
+   * file rather than copying the records out
+   *
+   * @param text The characters to search
+   * @param from The position to search from
+   * @param limit The position after the last character a morpheme may cover
+   * @param state The scratch state of the search
+   * @return The indices of the token records found, terminated by -1. The
+   *         array is reused by the next search with the same state
+   * @see #readNode(Node, int)
+   */
+  public int[] commonPrefixTokens(char[] text, int from, int limit, SearchState state) {
+    return tokenIndices(state, state.index.commonPrefixSearch(text, from, limit, state.indexResults));
+  }
+  
+  /**
+   * Expands the results of an index search into the indices of their token
+   * records
+   *
+   * @param state The scratch state holding the index search results
+   * @param n The number of index search results
+   * @return The indices of the token records, terminated by -1
+   */
+  private static int[] tokenIndices(SearchState state, int n) {
+    int[] indexResults = state.indexResults;
+    int[] tokenResults = state.tokenIndices;
+    int size = 0;
+    
+    for (int i = 0; i < n; i++) {
+      int k = indexResults[i] & 0xff;
+      int p = indexResults[i] >> 8;
+      
+      if (size + k >= tokenResults.length) {
+        tokenResults = Arrays.copyOf(tokenResults, Math.max(size + k + 1, tokenResults.length << 1));
+        state.tokenIndices = tokenResults;
+      }
+      for (int j = 0; j < k; j++) {
+        tokenResults[size++] = p + 3 + j;
+      }
+    }
+    
+    // Terminate
+    tokenResults[size] = -1;
+    
+    return tokenResults;
+  }
+  
+  /**
+   * Sets up a {@link Node} for a token record, reading the record's
+   * connection attributes, cost and length straight from the token file
+   *
+   * @param node The {@link Node} to set up
+   * @param tokenIndex The index of the token record
+   */
+  public void readNode(Node node, int tokenIndex) {
+    int position = (int) (tokenIndex * CToken.SIZE);
+    node.rcAttr2 = tokenBuffer.getShort(position);
+    node.rcAttr1 = tokenBuffer.getShort(position + 2);
+    node.lcAttr = tokenBuffer.getShort(position + 4);
+    node.length = tokenBuffer.getShort(position + 6);
+    node.dictionaryCost = tokenBuffer.getShort(position + 8);
+    node.tokenIndex = tokenIndex;
+  }
+  
+  /**
+   * Returns the index in the part-of-speech information file of the morpheme
+   * data of a token record
+   *
+   * @param tokenIndex The index of the token record
+   * @return The index of the morpheme data
+   */
+  public int getPartOfSpeechIndex(int tokenIndex) {
+    return tokenBuffer.getInt((int) (tokenIndex * CToken.SIZE) + 10);
+  }
+  
+  /**
+   * Constructor, using the built in character classes
    */
   public Dictionary(ShortBuffer connectionCostBuffer, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, IntBuffer trieBuffer, String[] posIndex,
       String[] conjTypeIndex, String[] conjFormIndex) {
+    this(connectionCostBuffer, partOfSpeechInfoBuffer, tokenBuffer, trieBuffer, posIndex, conjTypeIndex, conjFormIndex, CharacterDefinition.getDefault());
+  }
+  
+  /**
+   * Constructor
+   */
+  public Dictionary(ShortBuffer connectionCostBuffer, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, IntBuffer trieBuffer, String[] posIndex,
+      String[] conjTypeIndex, String[] conjFormIndex, CharacterDefinition characterDefinition) {
+    this(connectionCostBuffer, partOfSpeechInfoBuffer, tokenBuffer, new Trie(trieBuffer), posIndex, conjTypeIndex, conjFormIndex, characterDefinition);
+  }
+  
+  /**
+   * Constructor, with an already loaded index of the dictionary's keys. Each
+   * {@link SearchState} searches the index returned by its
+   * {@link PrefixIndex#newSearcher()}
+   */
+  public Dictionary(ShortBuffer connectionCostBuffer, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, PrefixIndex index, String[] posIndex,
+      String[] conjTypeIndex, String[] conjFormIndex, CharacterDefinition characterDefinition) {
+    this(connectionCostBuffer, partOfSpeechInfoBuffer, tokenBuffer, index, posIndex, conjTypeIndex, conjFormIndex, characterDefinition, null);
+  }
+  
+  /**
+   * Constructor, with an already loaded index of the dictionary's keys and
+   * a cache of decoded morphemes
+   * 
+   * @param morphemeCache The cache of decoded morphemes, or <code>null</code>
+   *        to decode morphemes afresh for each {@link Morpheme}
+   */
+  public Dictionary(ShortBuffer connectionCostBuffer, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, PrefixIndex index, String[] posIndex,
+      String[] conjTypeIndex, String[] conjFormIndex, CharacterDefinition characterDefinition, MorphemeCache morphemeCache) {
     // Map connection cost file
     ShortBuffer buffer = connectionCostBuffer;
     
@@ -181,28 +433,43 @@ public class Dictionary {
     
     this.connectionCostBuffer = buffer.slice();
     
+    // Use a bigram matrix from the heap, copying it there unless it already is
+    if (connectionSize1 == 1) {
+      if (this.connectionCostBuffer.hasArray()) {
+        this.bigramCosts = this.connectionCostBuffer.array();
+        this.bigramOffset = this.connectionCostBuffer.arrayOffset();
+      } else {
+        this.bigramCosts = new short[this.connectionCostBuffer.limit()];
+        this.connectionCostBuffer.duplicate().get(this.bigramCosts);
+        this.bigramOffset = 0;
+      }
+    } else {
+      this.bigramCosts = null;
+      this.bigramOffset = 0;
+    }
+    
     // Map position information file.
     this.partOfSpeechInfoBuffer = partOfSpeechInfoBuffer;
     
     // Map token file
     this.tokenBuffer = tokenBuffer;
     this.bosToken = new CToken();
-    this.bosToken.read(this.tokenBuffer);
+    this.bosToken.read(this.tokenBuffer, 0);
     this.eosToken = new CToken();
-    this.eosToken.read(this.tokenBuffer);
+    this.eosToken.read(this.tokenBuffer, (int) CToken.SIZE);
     this.unknownToken = new CToken();
-    this.unknownToken.read(this.tokenBuffer);
+    this.unknownToken.read(this.tokenBuffer, (int) (2 * CToken.SIZE));
     
-    // Map double array trie dictionary
-    this.trieBuffer = trieBuffer;
+    // Map double array trie or FST dictionary index
+    this.index = index;
     
     // indexes (unique POS values, etc)
     this.posIndex = posIndex;
     this.conjTypeIndex = conjTypeIndex;
     this.conjFormIndex = conjFormIndex;
     
-    for (int i = 0; i < results.length; i++) {
-      results[i] = new CToken();
-    }
+    this.characterDefinition = characterDefinition;
+    
+    this.morphemeCache = morphemeCache;
   }
 }
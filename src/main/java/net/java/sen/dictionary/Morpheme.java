@@ -35,11 +35,8 @@ import java.util.List;
  *  <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe and
  * should not be accessed simultaneously by multiple threads.
  * 
- *  <p><b>CAUTION</b>: {@link Morpheme}s are implemented as lazy proxies onto a
- *  {@link Dictionary}, and care should be taken not to access the same
- *  {@link Dictionary} from multiple threads. Once any member of a
- *  {@link Morpheme} has been read, its link to the {@link Dictionary} is broken
- *  and this restriction is relaxed
+ *  <p>{@link Morpheme}s are implemented as lazy proxies onto a
+ *  {@link Dictionary}, which may be shared by multiple threads
  */
 public class Morpheme {
   
@@ -55,16 +52,52 @@ public class Morpheme {
   private int partOfSpeechIndex;
   
   /**
-   * Indicates if the part-of-speech data has been loaded
+   * The {@link LoadState#bit}s of the parts of the part-of-speech data that
+   * have been loaded
    */
-  private LoadState loaded;
+  private int loaded;
   
+  /**
+   * The parts of the part-of-speech data, each of which is loaded when first
+   * requested without decoding the others. The parts are stored in this
+   * order, so loading a part reads the IDs before it and skips the basic
+   * form by its length, but decodes no Strings of another part
+   */
   private static enum LoadState {
-    NONE,
-    BASIC,
-    FULL
+    /** The part-of-speech ID */
+    PART_OF_SPEECH,
+    /** The conjugation type and form IDs */
+    CONJUGATION,
+    /** The basic form */
+    BASIC_FORM,
+    /** The readings and pronunciations */
+    READINGS;
+    
+    /** The bit of the part in {@link Morpheme#loaded} */
+    final int bit = 1 << ordinal();
   }
   
+  /** The bits of all the parts of the part-of-speech data */
+  private static final int ALL_LOADED = (1 << LoadState.values().length) - 1;
+  
+  /**
+   * The ID of the part-of-speech in the Dictionary, or -1 if the Morpheme
+   * does not link to a Dictionary
+   */
+  private int partOfSpeechId = -1;
+  
+  /**
+   * The ID of the conjugation type in the Dictionary, or -1 if the Morpheme
+   * does not link to a Dictionary
+   */
+  private int conjugationalTypeId = -1;
+  
+  /**
+   * The ID of the conjugation form in the Dictionary, or -1 if the Morpheme
+   * does not link to a Dictionary
+   */
+  private int conjugationalFormId = -1;
+  
   /**
    * The conjugation type of the morpheme
    */
@@ -90,6 +123,13 @@ public class Morpheme {
    */
   private List<String> pronunciations = null;
   
+  /**
+   * <code>true</code> if {@link #readings} and {@link #pronunciations} are
+   * the unmodifiable lists shared through the Dictionary's
+   * {@link MorphemeCache}, which are copied when first requested
+   */
+  private boolean sharedReadings = false;
+  
   /**
    * The part-of-speech in Chasen format
    */
@@ -101,73 +141,133 @@ public class Morpheme {
   private String additionalInformation = null;
   
   /**
-   * Loads the part-of-speech data from the {@link Dictionary}
+   * Loads a part of the part-of-speech data from the {@link Dictionary}. The
+   * basic form and readings are taken from the Dictionary's
+   * {@link MorphemeCache} if it has one
    *
+   * @param requested The part to load
    */
   private void load(LoadState requested) {
-    if (loaded.compareTo(requested) >= 0) {
+    if ((loaded & requested.bit) != 0) {
       return; // we already loaded what we need
     }
     
-    ByteBuffer buffer = dictionary.getPartOfSpeechInfoBuffer();
+    MorphemeCache cache = dictionary.getMorphemeCache();
+    if (cache != null && requested.compareTo(LoadState.BASIC_FORM) >= 0) {
+      MorphemeData data = cache.get(dictionary, partOfSpeechIndex);
+      partOfSpeechId = data.partOfSpeechId;
+      conjugationalTypeId = data.conjugationalTypeId;
+      conjugationalFormId = data.conjugationalFormId;
+      partOfSpeech = data.partOfSpeech;
+      conjugationalType = data.conjugationalType;
+      conjugationalForm = data.conjugationalForm;
+      basicForm = data.basicForm;
+      readings = data.readings;
+      pronunciations = data.pronunciations;
+      sharedReadings = true;
+      loaded = ALL_LOADED;
+      return;
+    }
+    
+    // Read through a view of our own, as the Dictionary may be shared. The
+    // IDs cost no more to take from the table than to skip
+    ByteBuffer buffer = dictionary.getPartOfSpeechInfoBuffer().duplicate();
     buffer.position(partOfSpeechIndex);
-    char[] temp = new char[512];
-    int length;
     
-    if (loaded == LoadState.NONE) {
-      partOfSpeech = dictionary.posIndex[DictionaryUtil.readVInt(buffer)];
-      conjugationalType = dictionary.conjTypeIndex[DictionaryUtil.readVInt(buffer)];
-      conjugationalForm = dictionary.conjFormIndex[DictionaryUtil.readVInt(buffer)];
-      
-      length = DictionaryUtil.readVInt(buffer);
-      if (length == 0) {
-        basicForm = "*"; // basic form is the same as surface form
-      } else {
-        DictionaryUtil.readString(buffer, temp, 0, length);
-        basicForm = new String(temp, 0, length);
-      }
-    } else {
-      // we've already loaded the basic data, but not the full, just skip over bytes
-      DictionaryUtil.readVInt(buffer); // POS
-      DictionaryUtil.readVInt(buffer); // conjType
-      DictionaryUtil.readVInt(buffer); // conjForm
-      length = DictionaryUtil.readVInt(buffer); // length
-      if (length != 0)
-        DictionaryUtil.readString(buffer, temp, 0, length); // basicForm
+    partOfSpeechId = DictionaryUtil.readVInt(buffer);
+    partOfSpeech = dictionary.posIndex[partOfSpeechId];
+    loaded |= LoadState.PART_OF_SPEECH.bit;
+    if (requested == LoadState.PART_OF_SPEECH) {
+      return;
     }
     
-    loaded = LoadState.BASIC;
+    conjugationalTypeId = DictionaryUtil.readVInt(buffer);
+    conjugationalFormId = DictionaryUtil.readVInt(buffer);
+    conjugationalType = dictionary.conjTypeIndex[conjugationalTypeId];
+    conjugationalForm = dictionary.conjFormIndex[conjugationalFormId];
+    loaded |= LoadState.CONJUGATION.bit;
+    if (requested == LoadState.CONJUGATION) {
+      return;
+    }
     
-    if (requested == LoadState.FULL) {
-      int readingData = DictionaryUtil.readVInt(buffer);
-      int numReadings = readingData >>> 1;
-      
-      readings = new ArrayList<String>(numReadings);
-      pronunciations = new ArrayList<String>(numReadings);
-      
-      for (int i = 0; i < numReadings; i++) {
-        length = DictionaryUtil.readVInt(buffer);
-        final int readingLength = length >>> 1;
+    char[] temp = new char[512];
+    if (requested == LoadState.BASIC_FORM) {
+      basicForm = readBasicForm(buffer, temp);
+      loaded |= LoadState.BASIC_FORM.bit;
+      return;
+    }
+    
+    // Skip over the basic form
+    int length = DictionaryUtil.readVInt(buffer);
+    buffer.position(buffer.position() + 2 * length);
+    
+    readings = new ArrayList<String>();
+    pronunciations = new ArrayList<String>();
+    readReadings(buffer, temp, readings, pronunciations);
+    loaded |= LoadState.READINGS.bit;
+  }
+  
+  /**
+   * Loads all the parts of the part-of-speech data at once. A fully loaded
+   * Morpheme is never written again, so it can be shared between threads
+   * once safely published
+   */
+  public void loadAll() {
+    for (LoadState state : LoadState.values()) {
+      load(state);
+    }
+  }
+  
+  /**
+   * Reads the basic form of a morpheme from the part-of-speech file
+   *
+   * @param buffer The part-of-speech file, positioned at the basic form
+   * @param temp A buffer for decoded characters
+   * @return The basic form, or "*" if it is the same as the surface form
+   */
+  static String readBasicForm(ByteBuffer buffer, char[] temp) {
+    int length = DictionaryUtil.readVInt(buffer);
+    if (length == 0) {
+      return "*"; // basic form is the same as surface form
+    }
+    DictionaryUtil.readString(buffer, temp, 0, length);
+    return new String(temp, 0, length);
+  }
+  
+  /**
+   * Reads the readings and pronunciations of a morpheme from the
+   * part-of-speech file
+   *
+   * @param buffer The part-of-speech file, positioned at the readings
+   * @param temp A buffer for decoded characters
+   * @param readings The list to add the readings to
+   * @param pronunciations The list to add the pronunciations to
+   */
+  static void readReadings(ByteBuffer buffer, char[] temp, List<String> readings, List<String> pronunciations) {
+    int readingData = DictionaryUtil.readVInt(buffer);
+    int numReadings = readingData >>> 1;
+    
+    for (int i = 0; i < numReadings; i++) {
+      int length = DictionaryUtil.readVInt(buffer);
+      final int readingLength = length >>> 1;
+      if ((readingData & 1) == 0) {
+        DictionaryUtil.readKatakana(buffer, temp, 0, readingLength);
+      } else {
+        DictionaryUtil.readString(buffer, temp, 0, readingLength);
+      }
+      String reading = new String(temp, 0, readingLength);
+      readings.add(reading);
+      if ((length & 1) != 0) {
+        final int pronunciationLength = DictionaryUtil.readVInt(buffer);
         if ((readingData & 1) == 0) {
-          DictionaryUtil.readKatakana(buffer, temp, 0, readingLength);
+          DictionaryUtil.readKatakana(buffer, temp, 0, pronunciationLength);
         } else {
-          DictionaryUtil.readString(buffer, temp, 0, readingLength);
-        }
-        String reading = new String(temp, 0, readingLength);
-        readings.add(reading);
-        if ((length & 1) != 0) {
-          final int pronunciationLength = DictionaryUtil.readVInt(buffer);
-          if ((readingData & 1) == 0) {
-            DictionaryUtil.readKatakana(buffer, temp, 0, pronunciationLength);
-          } else {
-            DictionaryUtil.readString(buffer, temp, 0, pronunciationLength);
-          }
-          pronunciations.add(new String(temp, 0, pronunciationLength));
-        } else {
-          pronunciations.add(reading);
+          DictionaryUtil.readString(buffer, temp, 0, pronunciationLength);
         }
+        pronunciations.add(new String(temp, 0, pronunciationLength));
+      } else {
+        pronunciations.add(reading);
       }
-      loaded = LoadState.FULL;
     }
   }
   
@@ -177,7 +277,7 @@ public class Morpheme {
    * @return The conjugation type
    */
   public String getConjugationalType() {
-    load(LoadState.BASIC);
+    load(LoadState.CONJUGATION);
     return conjugationalType;
   }
   
@@ -187,7 +287,7 @@ public class Morpheme {
    * @return The conjugation form
    */
   public String getConjugationalForm() {
-    load(LoadState.BASIC);
+    load(LoadState.CONJUGATION);
     return conjugationalForm;
   }
   
@@ -197,7 +297,7 @@ public class Morpheme {
    * @return The unconjugated form
    */
   public String getBasicForm() {
-    load(LoadState.BASIC);
+    load(LoadState.BASIC_FORM);
     return basicForm;
   }
   
@@ -207,7 +307,7 @@ public class Morpheme {
    * @return The readings
    */
   public List<String> getReadings() {
-    load(LoadState.FULL);
+    loadReadings();
     return readings;
   }
   
@@ -217,20 +317,81 @@ public class Morpheme {
    * @return The pronunciations
    */
   public List<String> getPronunciations() {
-    load(LoadState.FULL);
+    loadReadings();
     return pronunciations;
   }
   
+  /**
+   * Loads the readings and pronunciations into lists of this Morpheme's own,
+   * copying those shared through the Dictionary's {@link MorphemeCache}
+   */
+  private void loadReadings() {
+    load(LoadState.READINGS);
+    if (sharedReadings) {
+      readings = new ArrayList<String>(readings);
+      pronunciations = new ArrayList<String>(pronunciations);
+      sharedReadings = false;
+    }
+  }
+  
   /**
    * Gets the part-of-speech in Chasen format
    * 
    * @return The part-of-speech in Chasen format
    */
   public String getPartOfSpeech() {
-    load(LoadState.BASIC);
+    load(LoadState.PART_OF_SPEECH);
     return partOfSpeech;
   }
   
+  /**
+   * Gets the {@link Dictionary} that contains this <code>Morpheme</code>
+   * 
+   * @return The Dictionary, or <code>null</code> if the Morpheme does not
+   *         link to a Dictionary
+   */
+  public Dictionary getDictionary() {
+    return dictionary;
+  }
+  
+  /**
+   * Gets the ID of the part-of-speech within the {@link Dictionary}, without
+   * creating any Strings. See {@link Dictionary#getPartOfSpeech(int)}
+   * 
+   * @return The part-of-speech ID, or -1 if the Morpheme does not link to a
+   *         Dictionary
+   */
+  public int getPartOfSpeechId() {
+    load(LoadState.PART_OF_SPEECH);
+    return partOfSpeechId;
+  }
+  
+  /**
+   * Gets the ID of the conjugation type within the {@link Dictionary},
+   * without creating any Strings. See
+   * {@link Dictionary#getConjugationalType(int)}
+   * 
+   * @return The conjugation type ID, or -1 if the Morpheme does not link to
+   *         a Dictionary
+   */
+  public int getConjugationalTypeId() {
+    load(LoadState.CONJUGATION);
+    return conjugationalTypeId;
+  }
+  
+  /**
+   * Gets the ID of the conjugation form within the {@link Dictionary},
+   * without creating any Strings. See
+   * {@link Dictionary#getConjugationalForm(int)}
+   * 
+   * @return The conjugation form ID, or -1 if the Morpheme does not link to
+   *         a Dictionary
+   */
+  public int getConjugationalFormId() {
+    load(LoadState.CONJUGATION);
+    return conjugationalFormId;
+  }
+  
   /**
    * Gets the additional information string
    * 
@@ -323,7 +484,7 @@ public class Morpheme {
   
   @Override
   public String toString() {
-    load(LoadState.FULL);
+    loadAll();
     
     StringBuilder partOfSpeechData = new StringBuilder();
     String[] parts = partOfSpeech.split("-");
@@ -358,7 +519,7 @@ public class Morpheme {
   public Morpheme(Dictionary dictionary, int partOfSpeechIndex) {
     this.dictionary = dictionary;
     this.partOfSpeechIndex = partOfSpeechIndex;
-    this.loaded = LoadState.NONE;
+    this.loaded = 0;
   }
   
   /**
@@ -380,7 +541,30 @@ public class Morpheme {
     this.pronunciations = new ArrayList<String>(Arrays.asList(pronunciations));
     this.partOfSpeech = partOfSpeech;
     this.additionalInformation = additionalInformation;
-    this.loaded = LoadState.FULL;
+    this.loaded = ALL_LOADED;
+  }
+  
+  /**
+   * Creates a copy of a <code>Morpheme</code>, linking to the same
+   * Dictionary (if any). The parts already loaded are copied rather than
+   * loaded again, and the copy can be altered without changing the original
+   * 
+   * @param morpheme The Morpheme to copy
+   */
+  public Morpheme(Morpheme morpheme) {
+    this.dictionary = morpheme.dictionary;
+    this.partOfSpeechIndex = morpheme.partOfSpeechIndex;
+    this.loaded = morpheme.loaded;
+    this.partOfSpeechId = morpheme.partOfSpeechId;
+    this.conjugationalTypeId = morpheme.conjugationalTypeId;
+    this.conjugationalFormId = morpheme.conjugationalFormId;
+    this.conjugationalType = morpheme.conjugationalType;
+    this.conjugationalForm = morpheme.conjugationalForm;
+    this.basicForm = morpheme.basicForm;
+    this.readings = (morpheme.readings == null) ? null : new ArrayList<String>(morpheme.readings);
+    this.pronunciations = (morpheme.pronunciations == null) ? null : new ArrayList<String>(morpheme.pronunciations);
+    this.partOfSpeech = morpheme.partOfSpeech;
+    this.additionalInformation = morpheme.additionalInformation;
   }
   
   /**
@@ -390,6 +574,6 @@ public class Morpheme {
   public Morpheme() {
     this.readings = Collections.emptyList();
     this.pronunciations = Collections.emptyList();
-    this.loaded = LoadState.FULL;
+    this.loaded = ALL_LOADED;
   }
 }
@@ -0,0 +1,112 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the decoded part-of-speech data of a {@link Dictionary}'s
+ * morphemes, keyed by part-of-speech index, so that the few thousand
+ * morphemes making up most text are only decoded once. {@link Morpheme}s
+ * of a Dictionary with a cache share the cached Strings, and copy the cached
+ * reading and pronunciation lists when they are first requested.
+ * <p>
+ * The cache is direct mapped: each part-of-speech index hashes to one slot,
+ * and decoding a morpheme replaces whatever the slot held. It never holds
+ * more entries than its capacity, and neither reads nor writes take a lock;
+ * two threads missing on the same slot at once may both decode, and the
+ * last to finish keeps the slot.
+ * 
+ * <p><b>Thread Safety</b>: This class is thread safe
+ */
+public final class MorphemeCache {
+  
+  /** The cached data, by slot */
+  private final AtomicReferenceArray<MorphemeData> slots;
+  
+  /** The number of bits of a part-of-speech index's hash used as its slot */
+  private final int bits;
+  
+  /** The number of lookups found in the cache */
+  private final LongAdder hits = new LongAdder();
+  
+  /** The number of lookups not found in the cache */
+  private final LongAdder misses = new LongAdder();
+  
+  /**
+   * Returns the decoded data of a morpheme, from the cache if it is there,
+   * decoding and caching it otherwise
+   *
+   * @param dictionary The Dictionary of the morpheme
+   * @param partOfSpeechIndex The index of the morpheme's data within the
+   *        part-of-speech information file
+   * @return The decoded data
+   */
+  MorphemeData get(Dictionary dictionary, int partOfSpeechIndex) {
+    int slot = (partOfSpeechIndex * 0x9E3779B9) >>> (32 - bits);
+    MorphemeData data = slots.get(slot);
+    if (data != null && data.partOfSpeechIndex == partOfSpeechIndex) {
+      hits.increment();
+      return data;
+    }
+    
+    misses.increment();
+    data = new MorphemeData(dictionary, partOfSpeechIndex);
+    slots.set(slot, data);
+    return data;
+  }
+  
+  /**
+   * Returns the maximum number of entries the cache holds
+   *
+   * @return The capacity of the cache
+   */
+  public int getCapacity() {
+    return slots.length();
+  }
+  
+  /**
+   * Returns the number of lookups found in the cache
+   *
+   * @return The number of hits
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+  
+  /**
+   * Returns the number of lookups that decoded a morpheme
+   *
+   * @return The number of misses
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+  
+  /**
+   * @param capacity The maximum number of entries to hold, rounded up to a
+   *        power of two
+   */
+  public MorphemeCache(int capacity) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("capacity must be between 1 and 2^30, but was " + capacity);
+    }
+    this.bits = Math.max(32 - Integer.numberOfLeadingZeros(capacity - 1), 1);
+    this.slots = new AtomicReferenceArray<MorphemeData>(1 << bits);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The decoded part-of-speech data of a morpheme in a {@link Dictionary}, held
+ * by a {@link MorphemeCache} and shared by every {@link Morpheme} of the same
+ * part-of-speech index. Immutable
+ */
+final class MorphemeData {
+  
+  /** The index of the data within the part-of-speech information file */
+  final int partOfSpeechIndex;
+  
+  /** The ID of the part-of-speech in the Dictionary */
+  final int partOfSpeechId;
+  
+  /** The ID of the conjugation type in the Dictionary */
+  final int conjugationalTypeId;
+  
+  /** The ID of the conjugation form in the Dictionary */
+  final int conjugationalFormId;
+  
+  /** The part-of-speech in Chasen format */
+  final String partOfSpeech;
+  
+  /** The conjugation type of the morpheme */
+  final String conjugationalType;
+  
+  /** The conjugation form of the morpheme */
+  final String conjugationalForm;
+  
+  /** The unconjugated form of the morpheme */
+  final String basicForm;
+  
+  /** The readings of the morpheme, unmodifiable */
+  final List<String> readings;
+  
+  /** The pronunciations of the morpheme, unmodifiable */
+  final List<String> pronunciations;
+  
+  /**
+   * Decodes the part-of-speech data of a morpheme
+   *
+   * @param dictionary The Dictionary to read from
+   * @param partOfSpeechIndex The index of the data within the part-of-speech
+   *        information file
+   */
+  MorphemeData(Dictionary dictionary, int partOfSpeechIndex) {
+    ByteBuffer buffer = dictionary.getPartOfSpeechInfoBuffer().duplicate();
+    buffer.position(partOfSpeechIndex);
+    char[] temp = new char[512];
+    
+    this.partOfSpeechIndex = partOfSpeechIndex;
+    this.partOfSpeechId = DictionaryUtil.readVInt(buffer);
+    this.conjugationalTypeId = DictionaryUtil.readVInt(buffer);
+    this.conjugationalFormId = DictionaryUtil.readVInt(buffer);
+    this.partOfSpeech = dictionary.posIndex[partOfSpeechId];
+    this.conjugationalType = dictionary.conjTypeIndex[conjugationalTypeId];
+    this.conjugationalForm = dictionary.conjFormIndex[conjugationalFormId];
+    this.basicForm = Morpheme.readBasicForm(buffer, temp);
+    
+    List<String> readings = new ArrayList<String>();
+    List<String> pronunciations = new ArrayList<String>();
+    Morpheme.readReadings(buffer, temp, readings, pronunciations);
+    this.readings = Collections.unmodifiableList(readings);
+    this.pronunciations = Collections.unmodifiableList(pronunciations);
+  }
+}
@@ -64,10 +64,20 @@ final public class Node implements Cloneable {
   public Node rnext;
   
   /**
-   * The <code>Morpheme</code> that is contained within this <code>Node</code>
+   * The <code>Morpheme</code> that is contained within this <code>Node</code>.
+   * May be <code>null</code> for a <code>Node</code> found in the
+   * <code>Dictionary</code>, in which case the <code>Morpheme</code> is
+   * created from the token record at <code>tokenIndex</code> when it is
+   * needed
    */
   public Morpheme morpheme;
   
+  /**
+   * The index of the record of this <code>Node</code> within the token file,
+   * or -1 if there is none
+   */
+  public int tokenIndex = -1;
+  
   /**
    * The index of the first character of this <code>Node</code> within the
    * surface
@@ -94,6 +104,39 @@ final public class Node implements Cloneable {
    */
   public int cost; 
   
+  /**
+   * Copies all fields of another <code>Node</code> into this one
+   *
+   * @param node The <code>Node</code> to copy
+   */
+  void copy(Node node) {
+    rcAttr2 = node.rcAttr2;
+    rcAttr1 = node.rcAttr1;
+    lcAttr = node.lcAttr;
+    dictionaryCost = node.dictionaryCost;
+    prev = node.prev;
+    next = node.next;
+    lnext = node.lnext;
+    rnext = node.rnext;
+    morpheme = node.morpheme;
+    tokenIndex = node.tokenIndex;
+    start = node.start;
+    length = node.length;
+    span = node.span;
+    cost = node.cost;
+  }
+  
+  /**
+   * Resets all fields so that the <code>Node</code> can be reused
+   */
+  void clear() {
+    rcAttr2 = rcAttr1 = lcAttr = dictionaryCost = 0;
+    prev = next = lnext = rnext = null;
+    morpheme = null;
+    tokenIndex = -1;
+    start = length = span = cost = 0;
+  }
+  
   @Override
   public Node clone() {
     // Nodes form a lattice, and must be copied shallowly
@@ -0,0 +1,101 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * A pool of {@link Node}s backing a {@link Viterbi} lattice. Nodes are
+ * handed out in order and all become free again when the arena is reset at
+ * the start of the next sentence, so that once the arena has grown to fit
+ * the longest sentence seen, building a lattice allocates nothing
+ * 
+ * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe and
+ * should not be accessed simultaneously by multiple threads
+ */
+public final class NodeArena {
+  
+  /** The pooled Nodes; entries beyond the high water mark may be null */
+  private Node[] nodes;
+  
+  /** The number of Nodes handed out since the last reset */
+  private int size = 0;
+  
+  /**
+   * Returns a cleared Node from the pool, growing the pool if necessary.
+   * The Node stays valid until the next call to {@link #reset()}
+   *
+   * @return The Node
+   */
+  public Node newNode() {
+    if (size == nodes.length) {
+      nodes = Arrays.copyOf(nodes, nodes.length << 1);
+    }
+    Node node = nodes[size];
+    if (node == null) {
+      node = nodes[size] = new Node();
+    } else {
+      node.clear();
+    }
+    size++;
+    return node;
+  }
+  
+  /**
+   * Returns a Node from the pool holding a copy of the given Node
+   *
+   * @param node The Node to copy
+   * @return The copy
+   */
+  public Node copyOf(Node node) {
+    Node copy = newNode();
+    copy.copy(node);
+    return copy;
+  }
+  
+  /**
+   * Makes every Node in the pool available for reuse
+   */
+  public void reset() {
+    size = 0;
+  }
+  
+  /**
+   * Returns the number of Nodes handed out since the last reset
+   *
+   * @return The number of Nodes in use
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * Creates an empty arena
+   */
+  public NodeArena() {
+    this(64);
+  }
+  
+  /**
+   * Creates an empty arena
+   * 
+   * @param initialCapacity The initial number of Node slots
+   */
+  public NodeArena(int initialCapacity) {
+    this.nodes = new Node[Math.max(1, initialCapacity)];
+  }
+}
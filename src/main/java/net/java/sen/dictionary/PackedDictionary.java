@@ -0,0 +1,343 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.java.sen.util.CRC32C;
+import net.java.sen.util.IOUtils;
+
+/**
+ * Reads and writes a packed dictionary, a single file holding all the
+ * compiled dictionary files as named sections.
+ * 
+ * <p>The layout of a packed dictionary is:
+ * <pre>
+ *   int   magic
+ *   int   format version
+ *   int   number of sections
+ *   int   length of the section table in bytes
+ *   int   CRC-32C of the section table
+ *   section table, one entry per section:
+ *     UTF   section name (the name of the equivalent loose file)
+ *     int   CRC-32C of the section data
+ *     long  offset of the section data from the start of the file
+ *     long  length of the section data
+ *   section data, each section starting on an 8 byte boundary
+ * </pre>
+ * All values are big endian, as in the loose dictionary files. Because the
+ * whole dictionary comes from a single file, files from different builds
+ * can never be mixed up, and because every section is aligned a mapped
+ * packed dictionary can be handed out as slices without any copying
+ */
+public class PackedDictionary {
+  
+  /** The filename of a packed dictionary */
+  public static final String FILENAME = "dictionary.sen";
+  
+  /** Magic number identifying a packed dictionary ("GSEN") */
+  static final int MAGIC = 0x4753454E;
+  
+  /** The current format version */
+  public static final int VERSION = 1;
+  
+  /** Alignment of each section in bytes */
+  static final int ALIGNMENT = 8;
+  
+  /** Length of the fixed header in bytes */
+  private static final int HEADER_SIZE = 20;
+  
+  /**
+   * Rounds a position up to the next section boundary
+   *
+   * @param position The position
+   * @return The aligned position
+   */
+  private static long align(long position) {
+    return (position + ALIGNMENT - 1) & ~(ALIGNMENT - 1L);
+  }
+  
+  /**
+   * Packs dictionary files into a single packed dictionary
+   *
+   * @param packedFile The packed dictionary file to write
+   * @param directory The directory containing the files to pack
+   * @param names The names of the files to pack, which become the section names
+   * @throws IOException
+   */
+  public static void write(File packedFile, File directory, List<String> names) throws IOException {
+    // Lay out the sections
+    long[] offsets = new long[names.size()];
+    long[] lengths = new long[names.size()];
+    int[] checksums = new int[names.size()];
+    int tableSize = writeTable(names, checksums, offsets, lengths).length;
+    long position = align(HEADER_SIZE + tableSize);
+    for (int i = 0; i < names.size(); i++) {
+      offsets[i] = position;
+      lengths[i] = new File(directory, names.get(i)).length();
+      position = align(position + lengths[i]);
+    }
+    
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(packedFile, "rw");
+      file.setLength(0);
+      
+      // Write the section data, checksumming as we go
+      byte[] buf = new byte[64 * 1024];
+      CRC32C crc = new CRC32C();
+      for (int i = 0; i < names.size(); i++) {
+        FileInputStream in = null;
+        try {
+          in = new FileInputStream(new File(directory, names.get(i)));
+          file.seek(offsets[i]);
+          crc.reset();
+          for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+            crc.update(buf, 0, n);
+            file.write(buf, 0, n);
+          }
+          checksums[i] = (int) crc.getValue();
+        } finally {
+          IOUtils.closeWhileHandlingException(in);
+        }
+      }
+      file.setLength(position);
+      
+      // Write the header and section table
+      byte[] table = writeTable(names, checksums, offsets, lengths);
+      crc.reset();
+      crc.update(table, 0, table.length);
+      
+      file.seek(0);
+      file.writeInt(MAGIC);
+      file.writeInt(VERSION);
+      file.writeInt(names.size());
+      file.writeInt(table.length);
+      file.writeInt((int) crc.getValue());
+      file.write(table);
+    } finally {
+      IOUtils.closeWhileHandlingException(file);
+    }
+  }
+  
+  /**
+   * Serialises the section table
+   *
+   * @param names The section names
+   * @param checksums The section checksums
+   * @param offsets The section offsets
+   * @param lengths The section lengths
+   * @return The section table
+   * @throws IOException
+   */
+  private static byte[] writeTable(List<String> names, int[] checksums, long[] offsets, long[] lengths) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    for (int i = 0; i < names.size(); i++) {
+      out.writeUTF(names.get(i));
+      out.writeInt(checksums[i]);
+      out.writeLong(offsets[i]);
+      out.writeLong(lengths[i]);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+  
+  /**
+   * Maps a packed dictionary read-only and returns its sections as slices of
+   * the mapping. Only the header and section table are checked, so that no
+   * section data is paged in until it is used
+   *
+   * @param packedFile The packed dictionary file
+   * @return The sections, by name
+   * @throws IOException
+   */
+  public static Map<String, ByteBuffer> map(File packedFile) throws IOException {
+    RandomAccessFile file = null;
+    FileChannel channel = null;
+    try {
+      file = new RandomAccessFile(packedFile, "r");
+      channel = file.getChannel();
+      return sections(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), false);
+    } finally {
+      IOUtils.closeWhileHandlingException(channel, file);
+    }
+  }
+  
+  /**
+   * Reads a packed dictionary sequentially from a stream into a single direct
+   * buffer and returns its sections as slices of that buffer. Every section
+   * is checked against its checksum
+   *
+   * @param in The stream to read from
+   * @return The sections, by name
+   * @throws IOException
+   */
+  public static Map<String, ByteBuffer> read(InputStream in) throws IOException {
+    DataInputStream din = new DataInputStream(in);
+    byte[] header = new byte[HEADER_SIZE];
+    din.readFully(header);
+    ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+    checkHeader(headerBuffer);
+    byte[] table = new byte[headerBuffer.getInt(12)];
+    din.readFully(table);
+    
+    // The end of the last section is the size of the file
+    ByteBuffer tableBuffer = ByteBuffer.allocate(HEADER_SIZE + table.length);
+    tableBuffer.put(header).put(table).flip();
+    long size = 0;
+    for (Section section : readTable(tableBuffer)) {
+      size = Math.max(size, section.offset + section.length);
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new RuntimeException("Packed dictionary too large: " + size + " bytes");
+    }
+    
+    ByteBuffer buffer = ByteBuffer.allocateDirect((int) align(size));
+    buffer.put(header).put(table);
+    byte[] buf = new byte[64 * 1024];
+    while (buffer.position() < size) {
+      int n = din.read(buf, 0, (int) Math.min(buf.length, size - buffer.position()));
+      if (n == -1) {
+        throw new EOFException("Packed dictionary truncated at " + buffer.position() + " of " + size + " bytes");
+      }
+      buffer.put(buf, 0, n);
+    }
+    buffer.clear();
+    
+    return sections(buffer, true);
+  }
+  
+  /**
+   * Checks the fixed header of a packed dictionary
+   *
+   * @param buffer A buffer positioned at the start of the packed dictionary
+   */
+  private static void checkHeader(ByteBuffer buffer) {
+    if (buffer.getInt(0) != MAGIC) {
+      throw new RuntimeException("Not a packed dictionary");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new RuntimeException("Unsupported packed dictionary version " + buffer.getInt(4) + ", expected " + VERSION);
+    }
+  }
+  
+  /**
+   * A section table entry
+   */
+  private static class Section {
+    String name;
+    int checksum;
+    long offset;
+    long length;
+  }
+  
+  /**
+   * Reads and checks the section table
+   *
+   * @param buffer A buffer containing at least the header and section table
+   * @return The section table entries
+   */
+  private static Section[] readTable(ByteBuffer buffer) {
+    int count = buffer.getInt(8);
+    int tableSize = buffer.getInt(12);
+    
+    ByteBuffer table = buffer.duplicate();
+    table.position(HEADER_SIZE).limit(HEADER_SIZE + tableSize);
+    CRC32C crc = new CRC32C();
+    crc.update(table);
+    if ((int) crc.getValue() != buffer.getInt(16)) {
+      throw new RuntimeException("Packed dictionary section table is corrupt");
+    }
+    
+    Section[] sections = new Section[count];
+    for (int i = 0; i < count; i++) {
+      Section section = new Section();
+      int length = table.getShort() & 0xFFFF;
+      byte[] name = new byte[length];
+      table.get(name);
+      // Section names are plain ASCII, where modified UTF-8 and UTF-8 agree
+      section.name = new String(name, StandardCharsets.UTF_8);
+      section.checksum = table.getInt();
+      section.offset = table.getLong();
+      section.length = table.getLong();
+      sections[i] = section;
+    }
+    return sections;
+  }
+  
+  /**
+   * Slices a packed dictionary into its sections
+   *
+   * @param buffer A buffer holding the whole packed dictionary
+   * @param verify If <code>true</code>, check every section against its checksum
+   * @return The sections, by name
+   */
+  private static Map<String, ByteBuffer> sections(ByteBuffer buffer, boolean verify) {
+    checkHeader(buffer);
+    Map<String, ByteBuffer> sections = new LinkedHashMap<String, ByteBuffer>();
+    for (Section section : readTable(buffer)) {
+      if (section.offset + section.length > buffer.capacity()) {
+        throw new RuntimeException("Packed dictionary section[" + section.name + "] is truncated");
+      }
+      ByteBuffer slice = buffer.duplicate();
+      slice.limit((int) (section.offset + section.length)).position((int) section.offset);
+      slice = slice.slice();
+      if (verify) {
+        CRC32C crc = new CRC32C();
+        crc.update(slice);
+        if ((int) crc.getValue() != section.checksum) {
+          throw new RuntimeException("Packed dictionary section[" + section.name + "] is corrupt");
+        }
+      }
+      sections.put(section.name, slice);
+    }
+    return sections;
+  }
+  
+  /**
+   * Checks every section of a packed dictionary against its checksum
+   *
+   * @param packedFile The packed dictionary file
+   * @throws IOException
+   */
+  public static void verify(File packedFile) throws IOException {
+    RandomAccessFile file = null;
+    FileChannel channel = null;
+    try {
+      file = new RandomAccessFile(packedFile, "r");
+      channel = file.getChannel();
+      sections(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), true);
+    } finally {
+      IOUtils.closeWhileHandlingException(channel, file);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import net.java.sen.trie.PrefixIndex;
+
+/**
+ * The scratch state of searches of a {@link Dictionary}, owned by the
+ * caller so that one {@link Dictionary} may be searched by many threads at
+ * once. Created by {@link Dictionary#newSearchState()}, and reused by every
+ * search it is passed to
+ * 
+ * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe and
+ * should not be accessed simultaneously by multiple threads
+ */
+public final class SearchState {
+  
+  /** The index of the dictionary's keys, for use by this state's owner */
+  final PrefixIndex index;
+  
+  /** A buffer used to store the values of the keys found by an index search */
+  final int[] indexResults = new int[256];
+  
+  /**
+   * A buffer used to store the indices of the token records resulting from
+   * a search, terminated by -1
+   */
+  int[] tokenIndices = new int[256];
+  
+  /**
+   * A buffer used to store {@link CToken}s resulting from a search. Created
+   * when first needed
+   */
+  CToken[] tokens;
+  
+  /**
+   * @param index The index of the dictionary's keys, for use by this state's
+   *              owner alone unless it is thread safe
+   */
+  SearchState(PrefixIndex index) {
+    this.index = index;
+  }
+}
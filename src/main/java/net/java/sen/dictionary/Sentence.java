@@ -19,6 +19,7 @@
 
 package net.java.sen.dictionary;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.NoSuchElementException;
 
@@ -30,9 +31,24 @@ import java.util.NoSuchElementException;
  */
 public class Sentence {
   
-  /** The sentence's characters */
+  /**
+   * The array holding the sentence's characters, which may be a window onto
+   * a larger buffer
+   */
   private char[] characters;
   
+  /** The index in <code>characters</code> of the sentence's first character */
+  private int offset;
+  
+  /** The number of characters in the sentence */
+  private int length;
+  
+  /**
+   * Whether the Tokens of the sentence copy their surfaces when created,
+   * because the caller owns <code>characters</code> and may reuse it
+   */
+  private boolean copySurfaces;
+  
   /**
    * An BitSet of the same length as the <code>characters</code> array.
    * characters at indices that are <code>true</code> are both ignored
@@ -49,6 +65,20 @@ public class Sentence {
    */
   private Reading[] constraints;
   
+  /**
+   * For each position, the number of characters skipped before it if it is
+   * an origin, or -1 if it is not. Built on demand by {@link #seekOrigins()},
+   * and discarded whenever the ignore spans or reading constraints change
+   */
+  private int[] originSkips;
+  
+  /**
+   * The character classes computed by
+   * {@link #computeCharacterClasses(CharacterDefinition, CharacterClasses)},
+   * discarded whenever the ignore spans or reading constraints change
+   */
+  private CharacterClasses characterClasses;
+  
   
   /**
    * A SentenceIterator that obeys the defined breaking ignore spans,
@@ -124,13 +154,13 @@ public class Sentence {
       }
       
       // Find the next iterable position, skipping any ignored spans and space
-      for (int j = i; j < characters.length; ) {
+      for (int j = i; j < length; ) {
         if (breakingIgnoreSet.get(j)) {
           j = breakingIgnoreSet.nextClearBit(j);
-        } else if (characters[j] == ' '  ||
-            characters[j] == '\t' ||
-            characters[j] == '\r' ||
-            characters[j] == '\n') {
+        } else if (characters[offset + j] == ' '  ||
+            characters[offset + j] == '\t' ||
+            characters[offset + j] == '\r' ||
+            characters[offset + j] == '\n') {
           j++;
         } else {
           nextOrigin = j;
@@ -144,20 +174,20 @@ public class Sentence {
       this.nextSkipped = nextSkipped;
       if (
           (this.nextOrigin >= 0)
-          && (this.nextOrigin < characters.length)
+          && (this.nextOrigin < length)
           && (Sentence.this.constraints[this.nextOrigin] != null)
       )
       {
         this.nextLimit = this.nextOrigin + constraints[this.nextOrigin].length; 
       } else {
-        this.nextLimit = characters.length;
+        this.nextLimit = length;
       }
     }
     
     /* SentenceIterator interface */
     
     public char current() {
-      return characters[nextIndex];
+      return characters[offset + nextIndex];
     }
     
     public boolean hasNextOrigin() {
@@ -169,7 +199,7 @@ public class Sentence {
     }
     
     public int length() {
-      return characters.length;
+      return length;
     }
     
     public int nextOrigin() {
@@ -190,6 +220,26 @@ public class Sentence {
       return origin;
     }
     
+    public boolean seekOrigin(int origin) {
+      if ((origin < 0) || (origin >= length)) {
+        return false;
+      }
+      
+      int skipped = seekOrigins()[origin];
+      if (skipped < 0) {
+        return false;
+      }
+      
+      this.skipped = skipped;
+      this.origin = origin;
+      this.limit = (constraints[origin] != null) ? origin + constraints[origin].length : length;
+      this.nextIndex = origin;
+      this.nextIndexValid = null;
+      this.nextOrigin = -1;
+      
+      return true;
+    }
+    
     public void rewindToOrigin() {
       nextIndex = origin;
     }
@@ -198,6 +248,10 @@ public class Sentence {
       return skipped;
     }
     
+    public CharacterClasses characterClasses() {
+      return getCharacterClasses();
+    }
+    
     /* CharIterator interface */
     
     public boolean hasNext() {
@@ -209,10 +263,10 @@ public class Sentence {
         nextIndexValid = false;
       } else 	if ((nextIndex > origin) && (constraints[nextIndex] != null)) {
         nextIndexValid = false;
-      } else if (characters[nextIndex] == ' '  ||
-          characters[nextIndex] == '\t' ||
-          characters[nextIndex] == '\r' ||
-          characters[nextIndex] == '\n') {
+      } else if (characters[offset + nextIndex] == ' '  ||
+          characters[offset + nextIndex] == '\t' ||
+          characters[offset + nextIndex] == '\r' ||
+          characters[offset + nextIndex] == '\n') {
         nextIndexValid = false;
       } else {
         nextIndexValid = true;
@@ -232,7 +286,7 @@ public class Sentence {
         throw new NoSuchElementException();
       }
       
-      char nextCharacter = characters[nextIndex];
+      char nextCharacter = characters[offset + nextIndex];
       nextIndex++;
       nextIndexValid = null;
       return nextCharacter;
@@ -268,7 +322,7 @@ public class Sentence {
     /* SentenceIterator interface */
     
     public char current() {
-      return characters[nextIndex];
+      return characters[offset + nextIndex];
     }
     
     public boolean hasNextOrigin() {
@@ -276,7 +330,7 @@ public class Sentence {
     }
     
     public int length() {
-      return characters.length;
+      return length;
     }
     
     public int nextOrigin() {
@@ -287,6 +341,10 @@ public class Sentence {
       return origin;
     }
     
+    public boolean seekOrigin(int origin) {
+      throw new IllegalStateException();
+    }
+    
     public void rewindToOrigin() {
       nextIndex = origin;
     }
@@ -295,19 +353,24 @@ public class Sentence {
       return 0;
     }
     
+    public CharacterClasses characterClasses() {
+      // Runs are computed as constrained iteration would stop them
+      return null;
+    }
+    
     /* CharIterator interface */
     
     public boolean hasNext() {
       boolean nextIndexValid;
       
-      if (nextIndex >= characters.length) {
+      if (nextIndex >= length) {
         nextIndexValid = false;
       } else if (breakingIgnoreSet.get(nextIndex)) {
         nextIndexValid = false;
-      } else if (characters[nextIndex] == ' '  ||
-          characters[nextIndex] == '\t' ||
-          characters[nextIndex] == '\r' ||
-          characters[nextIndex] == '\n') {
+      } else if (characters[offset + nextIndex] == ' '  ||
+          characters[offset + nextIndex] == '\t' ||
+          characters[offset + nextIndex] == '\r' ||
+          characters[offset + nextIndex] == '\n') {
         nextIndexValid = false;
       } else {
         nextIndexValid = true;
@@ -327,7 +390,7 @@ public class Sentence {
         throw new NoSuchElementException();
       }
       
-      char nextCharacter = characters[nextIndex];
+      char nextCharacter = characters[offset + nextIndex];
       nextIndex++;
       nextIndexValid = null;
       return nextCharacter;
@@ -354,6 +417,8 @@ public class Sentence {
    */
   public void setBreakingIgnoreSpan(int position, short length) {
     breakingIgnoreSet.set(position, position + length);
+    originSkips = null;
+    characterClasses = null;
   }
   
   /**
@@ -364,12 +429,12 @@ public class Sentence {
    */
   public void setReadingConstraint(Reading constraint) {
     // Check starting position
-    if ((constraint.start < 0) || (constraint.start >= characters.length)) {
+    if ((constraint.start < 0) || (constraint.start >= length)) {
       throw new IllegalArgumentException("Invalid constraint starting position");
     }
     
     // Check length
-    if ((constraint.length <= 0) || (constraint.start + constraint.length - 1) >= characters.length) {
+    if ((constraint.length <= 0) || (constraint.start + constraint.length - 1) >= length) {
       throw new IllegalArgumentException("Invalid constraint length");
     }
     
@@ -394,6 +459,8 @@ public class Sentence {
     }
     
     constraints[constraint.start] = constraint;
+    originSkips = null;
+    characterClasses = null;
   }
   
   /**
@@ -413,6 +480,105 @@ public class Sentence {
    */
   public void removeReadingConstraint(int position) {
     constraints[position] = null;
+    originSkips = null;
+    characterClasses = null;
+  }
+  
+  /**
+   * Returns the table of origins used to seek directly to an origin, building
+   * it with a single pass over the sentence if necessary
+   *
+   * @return For each position, the number of characters skipped before it if
+   *         it is an origin, or -1 if it is not
+   */
+  private int[] seekOrigins() {
+    if (originSkips == null) {
+      int[] skips = new int[length];
+      Arrays.fill(skips, -1);
+      
+      SentenceIterator iterator = new ConstrainedIterator();
+      while (iterator.hasNextOrigin()) {
+        int origin = iterator.nextOrigin();
+        skips[origin] = iterator.skippedCharCount();
+      }
+      
+      originSkips = skips;
+    }
+    
+    return originSkips;
+  }
+  
+  /**
+   * Computes the character class of every position of the sentence, and the
+   * end of the run of characters compatible with it that a
+   * {@link #iterator()} starting there would return, as well as the end of
+   * all the characters it would return, into the given reusable buffers. The
+   * runs are found with a single backward pass, each position
+   * continuing the run of the following position when their classes are the
+   * same. Iterators of this sentence then return the classes from
+   * {@link SentenceIterator#characterClasses()} until the buffers are used
+   * for another sentence or the ignore spans or reading constraints change
+   *
+   * @param definition The character definition to classify with
+   * @param buffers The buffers to compute into
+   */
+  public void computeCharacterClasses(CharacterDefinition definition, CharacterClasses buffers) {
+    buffers.ensureCapacity(length);
+    byte[] classes = buffers.classes;
+    int[] runEnds = buffers.runEnds;
+    int[] readEnds = buffers.readEnds;
+    
+    for (int i = length - 1; i >= 0; i--) {
+      int charClass = definition.getCharClass(characters[offset + i]);
+      classes[i] = (byte) charClass;
+      
+      int end = i + 1;
+      if ((end < length) && continuesRun(end) && definition.isCompatible(charClass, characters[offset + end])) {
+        if (classes[end] == charClass) {
+          end = runEnds[end];
+        } else {
+          for (end++; (end < length) && continuesRun(end) && definition.isCompatible(charClass, characters[offset + end]); end++) {
+            // continue
+          }
+        }
+      }
+      int readEnd = ((i + 1 < length) && continuesRun(i + 1)) ? readEnds[i + 1] : i + 1;
+      if (constraints[i] != null) {
+        end = Math.min(end, i + constraints[i].length);
+        readEnd = Math.min(readEnd, i + constraints[i].length);
+      }
+      runEnds[i] = end;
+      readEnds[i] = readEnd;
+    }
+    
+    buffers.definition = definition;
+    buffers.sentence = this;
+    characterClasses = buffers;
+  }
+  
+  /**
+   * Returns the character classes computed for this sentence, if they are
+   * still valid
+   *
+   * @return The character classes, or <code>null</code>
+   */
+  CharacterClasses getCharacterClasses() {
+    CharacterClasses characterClasses = this.characterClasses;
+    return (characterClasses != null && characterClasses.sentence == this) ? characterClasses : null;
+  }
+  
+  /**
+   * Determines whether an iterator reading a run of characters may continue
+   * to the given position, which must not be the run's origin
+   *
+   * @param position The position
+   * @return <code>false</code> if the position is ignored, a space or the
+   *         start of a reading constraint
+   */
+  private boolean continuesRun(int position) {
+    char c = characters[offset + position];
+    return !(breakingIgnoreSet.get(position) || (constraints[position] != null)
+        || c == ' ' || c == '\t' || c == '\r' || c == '\n');
   }
   
   /**
@@ -425,6 +591,22 @@ public class Sentence {
     return new ConstrainedIterator();
   }
   
+  /**
+   * Returns a SentenceIterator that obeys the defined breaking ignore spans,
+   * reading constraints, and skips space characters, positioned at the given
+   * origin. The origins of the sentence are found once and shared by all
+   * iterators created this way, so that positioning an iterator takes
+   * constant time rather than time proportional to the origin's position
+   *
+   * @param origin The origin to position the iterator at
+   * @return The iterator, or <code>null</code> if the position is not an
+   *         origin of the sentence
+   */
+  public SentenceIterator iteratorAt(int origin) {
+    SentenceIterator iterator = new ConstrainedIterator();
+    return iterator.seekOrigin(origin) ? iterator : null;
+  }
+  
   /**
    * Returns a SentenceIterator that obeys the defined breaking ignore spans,
    * skips space characters, but ignores reading constraints
@@ -437,23 +619,90 @@ public class Sentence {
   }
   
   /**
-   * Returns the underlying characters of this Sentence
+   * Returns the underlying characters of this Sentence. If the Sentence is a
+   * window onto a larger buffer, the characters are copied
    *
    * @return The underlying characters
    */
   public char[] getCharacters() {
+    if (offset == 0 && length == characters.length) {
+      return characters;
+    }
+    return Arrays.copyOfRange(characters, offset, offset + length);
+  }
+  
+  /**
+   * Returns the array holding the characters of this Sentence, which begin
+   * at {@link #getOffset()}. The array is not copied
+   *
+   * @return The array holding the characters
+   */
+  public char[] getBuffer() {
     return characters;
   }
   
   /**
-   * Creates a sentence with the given characters
+   * Returns the index of the first character of this Sentence in
+   * {@link #getBuffer()}
+   *
+   * @return The index of the first character
+   */
+  public int getOffset() {
+    return offset;
+  }
+  
+  /**
+   * Returns the number of characters in this Sentence
+   *
+   * @return The number of characters
+   */
+  public int length() {
+    return length;
+  }
+  
+  /**
+   * Returns whether the {@link Token}s this Sentence is analysed into copy
+   * their surfaces when created. They do for a Sentence created from a
+   * caller's array with {@link #Sentence(char[])}; otherwise they refer to
+   * their surface in the array until it is first requested
+   *
+   * @return <code>true</code> if the Tokens copy their surfaces
+   */
+  public boolean copiesSurfaces() {
+    return copySurfaces;
+  }
+  
+  /**
+   * Creates a sentence with the given characters. The {@link Token}s it is
+   * analysed into copy their surfaces, so the array may be reused once
+   * analysis is done
    *  
    * @param characters The sentence's characters 
    */
   public Sentence(char[] characters) {
+    this(characters, 0, characters.length);
+    this.copySurfaces = true;
+  }
+  
+  /**
+   * Creates a sentence that is a window onto the given characters, without
+   * copying them. The characters must not change while the sentence is
+   * being analysed. Positions within the sentence, including the start of
+   * the {@link Token}s it is analysed into, are relative to the window
+   *  
+   * @param characters The array holding the sentence's characters
+   * @param offset The index of the sentence's first character
+   * @param length The number of characters in the sentence
+   */
+  public Sentence(char[] characters, int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > characters.length) {
+      throw new IllegalArgumentException("Invalid sentence window: offset=" + offset + ", length=" + length);
+    }
     this.characters = characters;
-    this.breakingIgnoreSet = new BitSet(characters.length);
-    this.constraints = new Reading[characters.length];
+    this.offset = offset;
+    this.length = length;
+    this.breakingIgnoreSet = new BitSet(length);
+    this.constraints = new Reading[length];
   }
   
   /**
@@ -462,6 +711,6 @@ public class Sentence {
    * @param text The string containing the sentence's characters
    */
   public Sentence(String text) {
-    this(text.toCharArray());
+    this(text.toCharArray(), 0, text.length());
   }
 }
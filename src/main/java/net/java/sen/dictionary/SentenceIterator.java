@@ -75,6 +75,18 @@ public interface SentenceIterator extends CharIterator {
    */
   public int nextOrigin();
   
+  /**
+   * Moves the origin directly to the given position, leaving the iterator in
+   * the same state as if {@link #nextOrigin nextOrigin} had been called until
+   * it returned that position. If the position is not an origin of the
+   * sentence, the iterator is left unchanged
+   *
+   * @param origin The origin to move to
+   * @return <code>true</code> if the origin was moved, <code>false</code> if
+   *         the position is not an origin
+   */
+  public boolean seekOrigin(int origin);
+  
   /**
    * Returns to the current origin position. Subsequent characters returned
    * by {@link CharIterator#next next} will start at the origin position
@@ -89,4 +101,13 @@ public interface SentenceIterator extends CharIterator {
    * @return The number of characters skipped
    */
   public int skippedCharCount();
+  
+  /**
+   * Returns the character classes computed for the sentence, whose runs end
+   * where this iterator would stop reading characters
+   *
+   * @return The character classes, or <code>null</code> if none have been
+   *         computed or they do not apply to this iterator
+   */
+  public CharacterClasses characterClasses();
 }
@@ -30,6 +30,12 @@ package net.java.sen.dictionary;
  *  {@link Dictionary} from multiple threads. Once any member of a
  *  {@link Morpheme} has been read, its link to the {@link Dictionary} is broken
  *  and this restriction is relaxed
+ * 
+ *  <p><b>CAUTION</b>: Tokens analysed from a {@link Sentence} that is a window
+ *  onto a buffer, as by <code>StringTagger.analyze(char[], int, int, List)</code>,
+ *  refer to their surface in the buffer rather than copying it, until
+ *  {@link #getSurface()} is first called. The buffer must not change before
+ *  then. See {@link Sentence#copiesSurfaces()}
  */
 public class Token {
   
@@ -38,6 +44,22 @@ public class Token {
    */
   private String surface = null;
   
+  /**
+   * The array holding the surface, if it has not yet been copied to
+   * <code>surface</code>
+   */
+  private char[] surfaceBuffer;
+  
+  /**
+   * The index of the surface in <code>surfaceBuffer</code>
+   */
+  private int surfaceOffset;
+  
+  /**
+   * The length of the surface in <code>surfaceBuffer</code>
+   */
+  private int surfaceLength;
+  
   /**
    * The Viterbi cost of this Token
    */
@@ -129,9 +151,45 @@ public class Token {
    * @return The character range of this Token within the underlying sentence
    */
   public String getSurface() {
+    if (surfaceBuffer != null) {
+      surface = new String(surfaceBuffer, surfaceOffset, surfaceLength);
+      surfaceBuffer = null;
+    }
     return surface;
   }
   
+  /**
+   * Returns the array holding the surface of this Token, if it refers to
+   * its surface in a buffer without having copied it. The surface is
+   * {@link #getSurfaceLength()} characters from {@link #getSurfaceOffset()}
+   *
+   * @return The array holding the surface, or <code>null</code> if the
+   *         surface is only available from {@link #getSurface()}
+   */
+  public char[] getSurfaceBuffer() {
+    return surfaceBuffer;
+  }
+  
+  /**
+   * Returns the index of the surface of this Token in
+   * {@link #getSurfaceBuffer()}
+   *
+   * @return The index of the surface
+   */
+  public int getSurfaceOffset() {
+    return surfaceOffset;
+  }
+  
+  /**
+   * Returns the length of the surface of this Token in
+   * {@link #getSurfaceBuffer()}
+   *
+   * @return The length of the surface
+   */
+  public int getSurfaceLength() {
+    return surfaceLength;
+  }
+  
   /**
    * Sets the character range of this Token within the underlying sentence
    * 
@@ -140,6 +198,7 @@ public class Token {
    */
   public void setSurface(String surface) {
     this.surface = surface;
+    this.surfaceBuffer = null;
   }
   
   /**
@@ -196,7 +255,7 @@ public class Token {
       Token token = ((Token) object);
       
       if (
-          ((this.surface == token.surface) || (this.surface != null && this.surface.equals(token.surface)))
+          surfaceEquals(token)
           && (this.cost == token.cost)
           && (this.start == token.start)
           && (this.length == token.length)
@@ -211,6 +270,35 @@ public class Token {
     return false;
   }
   
+  /**
+   * Compares the surface of this Token with that of another, wherever each
+   * is held, without copying either
+   *
+   * @param token The other Token
+   * @return <code>true</code> if the surfaces are equal
+   */
+  private boolean surfaceEquals(Token token) {
+    if (this.surfaceBuffer == null && token.surfaceBuffer == null) {
+      return (this.surface == token.surface) || (this.surface != null && this.surface.equals(token.surface));
+    }
+    if ((this.surfaceBuffer == null && this.surface == null) || (token.surfaceBuffer == null && token.surface == null)) {
+      return false;
+    }
+    
+    int length = (this.surfaceBuffer != null) ? this.surfaceLength : this.surface.length();
+    if (length != ((token.surfaceBuffer != null) ? token.surfaceLength : token.surface.length())) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = (this.surfaceBuffer != null) ? this.surfaceBuffer[this.surfaceOffset + i] : this.surface.charAt(i);
+      char d = (token.surfaceBuffer != null) ? token.surfaceBuffer[token.surfaceOffset + i] : token.surface.charAt(i);
+      if (c != d) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
   /**
    * Returns the character range of this Token within the underlying sentence
    * 
@@ -235,6 +323,24 @@ public class Token {
     this.length = node.length;
   }
   
+  /**
+   * Creates a Token from a Node of a sentence that is a window onto a
+   * buffer, referring to its surface in the buffer without copying it
+   * 
+   * @param buffer The array holding the sentence
+   * @param offset The index of the sentence in the array
+   * @param node The Node to create from
+   */
+  public Token(char[] buffer, int offset, Node node) {
+    this.morpheme = node.morpheme;
+    this.cost = node.cost;
+    this.surfaceBuffer = buffer;
+    this.surfaceOffset = offset + node.start;
+    this.surfaceLength = node.length;
+    this.start = node.start;
+    this.length = node.length;
+  }
+  
   /**
    * Creates a Token with explicit parameters
    * 
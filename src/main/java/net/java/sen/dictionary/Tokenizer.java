@@ -36,6 +36,11 @@ public abstract class Tokenizer {
    */
   protected final Dictionary dictionary;
   
+  /**
+   * The scratch state of this Tokenizer's searches of the {@link Dictionary}
+   */
+  protected final SearchState searchState;
+  
   /**
    * A {@link CToken} representing an unknown morpheme
    */
@@ -88,6 +93,21 @@ public abstract class Tokenizer {
     return bosNode;
   }
   
+  /**
+   * Creates a unique beginning-of-string {@link Node} from the given
+   * {@link NodeArena}
+   *
+   * @param arena The arena to take the {@link Node} from
+   * @return A beginning-of-string {@link Node}
+   */
+  public Node getBOSNode(NodeArena arena) {
+    Node bosNode = arena.copyOf(this.bosNode);
+    // The connection cost of a node is calculated using its predecessor's
+    // predecessor, so the beginning-of-string also needs a predecessor
+    bosNode.prev = arena.copyOf(this.bosNode);
+    return bosNode;
+  }
+  
   /**
    * Creates a unique end-of-string {@link Node}. The {@link Node} returned by
    * this method is freshly cloned and not an alias of any other {@link Node}
@@ -98,6 +118,17 @@ public abstract class Tokenizer {
     return eosNode.clone();
   }
   
+  /**
+   * Creates a unique end-of-string {@link Node} from the given
+   * {@link NodeArena}
+   *
+   * @param arena The arena to take the {@link Node} from
+   * @return An end-of-string Node
+   */
+  public Node getEOSNode(NodeArena arena) {
+    return arena.copyOf(eosNode);
+  }
+  
   /**
    * Creates an "unknown morpheme" {@link Node} with the specified
    * characteristics.  The {@link Node} returned by this method is freshly
@@ -111,8 +142,35 @@ public abstract class Tokenizer {
    * @return The new "unknown morpheme" {@link Node}
    */
   public Node getUnknownNode(char[] surface, int start, int length, int span) {
-    Node unknownNode = new Node();
-    
+    return initUnknownNode(new Node(), start, length, span);
+  }
+  
+  /**
+   * Creates an "unknown morpheme" {@link Node} with the specified
+   * characteristics from the given {@link NodeArena}
+   *
+   * @param arena The arena to take the {@link Node} from
+   * @param surface The underlying surface of which the {@link Node} is part
+   * @param start The index of the first character of the surface within the
+   *              {@link Node}
+   * @param length The length of the {@link Node}
+   * @param span The span of the {@link Node}
+   * @return The new "unknown morpheme" {@link Node}
+   */
+  public Node getUnknownNode(NodeArena arena, char[] surface, int start, int length, int span) {
+    return initUnknownNode(arena.newNode(), start, length, span);
+  }
+  
+  /**
+   * Sets up an "unknown morpheme" {@link Node}
+   *
+   * @param unknownNode The {@link Node} to set up
+   * @param start The index of the first character of the {@link Node}
+   * @param length The length of the {@link Node}
+   * @param span The span of the {@link Node}
+   * @return The {@link Node}
+   */
+  private Node initUnknownNode(Node unknownNode, int start, int length, int span) {
     unknownNode.setCToken(unknownCToken);
     unknownNode.start = start;
     unknownNode.length = length;
@@ -136,7 +194,42 @@ public abstract class Tokenizer {
    *         morphemes beginning at the given index
    * @throws IOException
    */
-  public abstract Node lookup(SentenceIterator iterator, char[] surface) throws IOException;
+  public Node lookup(SentenceIterator iterator, char[] surface) throws IOException {
+    return lookup(iterator, surface, new NodeArena());
+  }
+  
+  /**
+   * Searches for possible morphemes from the given SentenceIterator, taking
+   * the returned {@link Node}s from the given {@link NodeArena}. The
+   * {@link Node} that is returned links through <code>Node.rnext</code> to a
+   * list of matches which may be of varying lengths. {@link Node}s for
+   * morphemes found in the {@link Dictionary} may have no
+   * <code>Node.morpheme</code>, but carry their
+   * <code>Node.tokenIndex</code> instead
+   *
+   * @param iterator The iterator to search from
+   * @param surface The underlying character surface; for a {@link Sentence}
+   *        that is a window onto a buffer, the whole buffer
+   * @param arena The arena to take {@link Node}s from
+   * @return The head of a chain of {@link Node}s representing the possible
+   *         morphemes beginning at the given index
+   * @throws IOException
+   */
+  public abstract Node lookup(SentenceIterator iterator, char[] surface, NodeArena arena) throws IOException;
+  
+  /**
+   * Returns the {@link Morpheme} of a {@link Node}, creating it from the
+   * {@link Dictionary} if the {@link Node} does not have one yet
+   *
+   * @param node The {@link Node}
+   * @return The {@link Morpheme}
+   */
+  public Morpheme getMorpheme(Node node) {
+    if (node.morpheme == null && node.tokenIndex >= 0) {
+      node.morpheme = new Morpheme(dictionary, dictionary.getPartOfSpeechIndex(node.tokenIndex));
+    }
+    return node.morpheme;
+  }
   
   /**
    * Constructs a new {@link Tokenizer} that uses the specified
@@ -149,6 +242,7 @@ public abstract class Tokenizer {
    */
   public Tokenizer(Dictionary dictionary, String unknownPartOfSpeechDescription, boolean tokenizeUnknownKatakana) {
     this.dictionary = dictionary;
+    this.searchState = dictionary.newSearchState();
     this.unknownPartOfSpeechDescription = unknownPartOfSpeechDescription;
     
     this.bosNode = new Node();
@@ -23,7 +23,10 @@ package net.java.sen.dictionary;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * An implementation of the Viterbi algorithm used to find the most likely
@@ -33,6 +36,10 @@ import java.util.List;
  * should not be accessed simultaneously by multiple threads. Note that creating
  * additional instances using {@link net.java.sen.SenFactory} is relatively
  * cheap in both memory and time
+ * 
+ * <p>The lattice is built from a {@link NodeArena} owned by the instance
+ * and reset for every sentence, so that once it has grown to fit the
+ * longest sentence, analysis only allocates the output {@link Token}s
  */
 public class Viterbi {
   
@@ -52,9 +59,29 @@ public class Viterbi {
   private Node eosNode;
   
   /**
-   * An array of linked lists of possible morphemes ending at a given position
+   * An array of linked lists of possible morphemes ending at a given position.
+   * Reused between sentences, and grown to fit the longest sentence seen
+   */
+  private Node[] endNodeList = new Node[256];
+  
+  /**
+   * The pool from which the Nodes of the lattice are taken. Reset at the
+   * start of every sentence
+   */
+  private final NodeArena arena = new NodeArena(1024);
+  
+  /**
+   * The character classes of the sentence being analysed, reused from
+   * sentence to sentence
    */
-  private Node[] endNodeList;
+  private final CharacterClasses characterClasses = new CharacterClasses();
+  
+  /**
+   * An iterator over the current sentence used to look up the Nodes that
+   * follow a Node with a second right context attribute. Created when first
+   * needed for each sentence
+   */
+  private SentenceIterator seekIterator;
   
   /**
    * Calculates the best connection for each of a linked list of Nodes
@@ -65,12 +92,15 @@ public class Viterbi {
    * @param sentence The original sentence
    */
   final private void calculateConnectionCosts(int position, int limit, Node rNode, Sentence sentence)throws IOException  {
+    final Dictionary dictionary = tokenizer.getDictionary();
+    final boolean bigram = dictionary.isBigram();
+    
     for (; rNode != null; rNode = rNode.rnext) {
       int bestCost = Integer.MAX_VALUE;
       Node bestNode = null;
       
       for (Node lNode = endNodeList[position]; lNode != null; lNode = lNode.lnext) {
-        int cost = lNode.cost + tokenizer.getDictionary().getCost(lNode.prev, lNode, rNode);
+        int cost = lNode.cost + (bigram ? dictionary.getCost(lNode, rNode) : dictionary.getCost(lNode.prev, lNode, rNode));
         if (cost <= bestCost) {
           bestNode = lNode;
           bestCost = cost;
@@ -84,27 +114,24 @@ public class Viterbi {
       rNode.lnext = endNodeList[x];
       endNodeList[x] = rNode;
       
-      if (rNode.rcAttr2 != 0) {
-        SentenceIterator it = sentence.iterator();
+      // A bigram matrix does not depend on the Node before rNode, so there
+      // is nothing to gain by connecting the Nodes that follow it early
+      if (!bigram && rNode.rcAttr2 != 0) {
         int pos2 = rNode.span + position;
         if(pos2 == limit){
           continue;
         }
-        //winding to pos2
-        int pos3 = 0;
-        for(int i=0;i<=pos2;i++){
-          if(it.hasNextOrigin()){
-            pos3 = it.nextOrigin();
-          }
+        // Seek directly to pos2, which must be an origin
+        if (seekIterator == null) {
+          seekIterator = sentence.iterator();
         }
-        // safety check
-        if(pos2 != pos3){
+        if (!seekIterator.seekOrigin(pos2)) {
           continue;
         }
-        Node rNode2 = lookup(it, sentence.getCharacters(), sentence.getReadingConstraint(pos2));
+        Node rNode2 = lookup(seekIterator, sentence.getBuffer(), sentence.getReadingConstraint(pos2));
         for (; rNode2 != null; rNode2 = rNode2.rnext) {
-          rNode2 = rNode2.clone();
-          rNode2.cost = rNode.cost + tokenizer.getDictionary().getCost(rNode.prev, rNode, rNode2);
+          // The looked up Nodes are fresh, and can be linked in directly
+          rNode2.cost = rNode.cost + dictionary.getCost(rNode.prev, rNode, rNode2);
           rNode2.prev = rNode;
           
           int y = pos2 + rNode2.span;
@@ -123,14 +150,14 @@ public class Viterbi {
    * SentenceIterator
    *
    * @param iterator The iterator to search from
-   * @param surface The underlying character array
+   * @param surface The array holding the sentence's characters
    * @param constraint The reading constraint to apply
    * @return The head of a list of <code>Node</code>s linked through
    *         <code>Node.rnext</code> 
    * @throws IOException
    */
   private Node lookup(SentenceIterator iterator, char[] surface, Reading constraint) throws IOException {
-    Node resultNode = tokenizer.lookup(iterator, surface);
+    Node resultNode = tokenizer.lookup(iterator, surface, arena);
     
     if (constraint == null) {
       return resultNode;
@@ -139,7 +166,7 @@ public class Viterbi {
     Node filteredResultNode = null;
     Node lastNode = null;
     for (Node node = resultNode; node != null; node = node.rnext) {
-      if ((node.length == constraint.length) && (node.morpheme.getReadings().contains(constraint.text))) {
+      if ((node.length == constraint.length) && (tokenizer.getMorpheme(node).getReadings().contains(constraint.text))) {
         if (filteredResultNode == null) {
           filteredResultNode = node;
         } else {
@@ -155,7 +182,7 @@ public class Viterbi {
     }
     
     // Synthesize Node
-    Node unknownNode = tokenizer.getUnknownNode(surface, iterator.origin(), constraint.length, constraint.length + iterator.skippedCharCount());
+    Node unknownNode = tokenizer.getUnknownNode(arena, surface, iterator.origin(), constraint.length, constraint.length + iterator.skippedCharCount());
     Morpheme unknownMorpheme = new Morpheme(unknownNode.morpheme.getPartOfSpeech(), null, null, "*", 
         new String[] { constraint.text }, new String[0], unknownNode.morpheme.getAdditionalInformation());
     unknownNode.morpheme = unknownMorpheme;
@@ -172,12 +199,13 @@ public class Viterbi {
    * @throws IOException
    */
   public List<Token> getPossibleTokens(Sentence sentence, int position) throws IOException {
-    Node resultNode = tokenizer.lookup(sentence.unconstrainedIterator(position), sentence.getCharacters());
+    arena.reset();
+    Node resultNode = tokenizer.lookup(sentence.unconstrainedIterator(position), sentence.getBuffer(), arena);
     
-    String sentenceString = new String(sentence.getCharacters());
     List<Token> tokenList = new ArrayList<Token>();
     while (resultNode != null) {
-      Token token = new Token(sentenceString, resultNode);
+      tokenizer.getMorpheme(resultNode);
+      Token token = newToken(sentence, resultNode);
       tokenList.add(token);
       resultNode = resultNode.rnext;
     }
@@ -186,23 +214,30 @@ public class Viterbi {
   }
   
   /**
-   * Analyses a sentence to find the most likely sequence of morphemes
+   * Builds the Viterbi lattice for a sentence, connecting every Node to its
+   * most likely predecessor, and connecting the end-of-string Node
    *
    * @param sentence The sentence to analyse
-   * @return The most likely list of morphemes
+   * @return The position at which the end-of-string Node was connected
    * @throws IOException
    */
-  public List<Token> getBestTokens(Sentence sentence, List<Token> reuse) throws IOException {
+  private int buildLattice(Sentence sentence) throws IOException {
     SentenceIterator iterator = sentence.iterator();
     int length = iterator.length();
-    char[] surface = sentence.getCharacters();
+    char[] surface = sentence.getBuffer();
     
     // Initialize the Viterbi lattice
-    bosNode = tokenizer.getBOSNode();
-    eosNode = tokenizer.getEOSNode();
-    endNodeList = new Node[length + 1];
+    arena.reset();
+    seekIterator = null;
+    sentence.computeCharacterClasses(tokenizer.getDictionary().getCharacterDefinition(), characterClasses);
+    bosNode = tokenizer.getBOSNode(arena);
+    eosNode = tokenizer.getEOSNode(arena);
+    if (endNodeList.length < length + 1) {
+      endNodeList = new Node[Math.max(length + 1, endNodeList.length << 1)];
+    } else {
+      Arrays.fill(endNodeList, 0, length + 1, null);
+    }
     endNodeList[0] = bosNode;
-    endNodeList[length] = null;
     
     // Look up potential morphemes at each position in the sentence, and
     // join them to the lattice
@@ -224,30 +259,256 @@ public class Viterbi {
       if (endNodeList[position] != null) {
         calculateConnectionCosts(position, length, eosNode, sentence);
         // Once we have connected the end-of-string node, leave the loop. 
-        break;
+        return position;
       }
     }
     
-    // Working backwards from the end-of-string Node, make the forward
-    // connections along the most likely path
+    return 0;
+  }
+  
+  /**
+   * Analyses a sentence to find the most likely sequence of morphemes
+   *
+   * @param sentence The sentence to analyse
+   * @return The most likely list of morphemes
+   * @throws IOException
+   */
+  public List<Token> getBestTokens(Sentence sentence, List<Token> reuse) throws IOException {
+    buildLattice(sentence);
+    linkBestPath();
+    
+    // Convert to Token list
+    List<Token> tokenList = reuse;
+    tokenList.clear();
+    addBestTokens(sentence, tokenList);
+    
+    return tokenList;
+  }
+  
+  /**
+   * Working backwards from the end-of-string Node, makes the forward
+   * connections along the most likely path
+   */
+  private void linkBestPath() {
     Node node = eosNode;
     for (Node prevNode; node.prev != null;) {
       prevNode = node.prev;
       prevNode.next = node;
       node = prevNode;
     }
-    
-    // Convert to Token list
-    String sentenceString = new String(sentence.getCharacters());
-    List<Token> tokenList = reuse;
-    tokenList.clear();
-    node = bosNode.next;
+  }
+  
+  /**
+   * Creates a {@link Token} for a Node of a sentence, which copies its
+   * surface if the sentence requires it
+   *
+   * @param sentence The sentence
+   * @param node The Node
+   * @return The Token
+   * @see Sentence#copiesSurfaces()
+   */
+  private static Token newToken(Sentence sentence, Node node) {
+    if (sentence.copiesSurfaces()) {
+      String surface = new String(sentence.getBuffer(), sentence.getOffset() + node.start, node.length);
+      return new Token(surface, node.cost, node.start, node.length, node.morpheme);
+    }
+    return new Token(sentence.getBuffer(), sentence.getOffset(), node);
+  }
+  
+  /**
+   * Converts the most likely path, linked through <code>Node.next</code>
+   * from the beginning-of-string, to {@link Token}s
+   *
+   * @param sentence The sentence
+   * @param tokenList The list to add the {@link Token}s to
+   */
+  private void addBestTokens(Sentence sentence, List<Token> tokenList) {
+    Node node = bosNode.next;
     while ((node != null) && (node.next != null)) {
-      Token token = new Token(sentenceString, node);
+      tokenizer.getMorpheme(node);
+      Token token = newToken(sentence, node);
       tokenList.add(token);
       node = node.next;
     }
+  }
+  
+  /**
+   * A partial path through the lattice from a Node to the end-of-string,
+   * used by the backward search of {@link Viterbi#getNBestTokens}
+   */
+  private static final class Path {
+    
+    /** The first Node of the partial path */
+    final Node node;
     
+    /** The rest of the partial path, or <code>null</code> at the end-of-string */
+    final Path next;
+    
+    /** The cost of the connections from <code>node</code> to the end-of-string */
+    final int suffixCost;
+    
+    /**
+     * The cost of the best complete path that ends with this partial path.
+     * As <code>node.cost</code> is the exact cost of the best path from the
+     * beginning-of-string to <code>node</code>, complete paths are found in
+     * order of cost
+     */
+    final int estimatedCost;
+    
+    /**
+     * @param node The first Node of the partial path
+     * @param next The rest of the partial path
+     * @param suffixCost The cost of the connections to the end-of-string
+     */
+    Path(Node node, Path next, int suffixCost) {
+      this.node = node;
+      this.next = next;
+      this.suffixCost = suffixCost;
+      this.estimatedCost = node.cost + suffixCost;
+    }
+  }
+  
+  /**
+   * Orders {@link Path}s by their estimated cost
+   */
+  private static final Comparator<Path> PATH_COMPARATOR = new Comparator<Path>() {
+    public int compare(Path path1, Path path2) {
+      return Integer.compare(path1.estimatedCost, path2.estimatedCost);
+    }
+  };
+  
+  /**
+   * Analyses a sentence to find the <code>n</code> most likely sequences of
+   * morphemes. The lattice is built as for {@link #getBestTokens}, then
+   * searched backwards from the end-of-string with the A* algorithm, using
+   * the cost of the best path to each Node as the (exact) estimate of the
+   * cost remaining. The first sequence returned is always the sequence
+   * returned by {@link #getBestTokens}
+   * 
+   * <p>The cost of each {@link Token} is the cumulative cost of the sequence
+   * it belongs to up to and including the {@link Token}. Connections that
+   * depend on a second right context attribute are costed with the best
+   * predecessor of their left Node, as they are in the forward search 
+   *
+   * @param sentence The sentence to analyse
+   * @param n The maximum number of sequences to return
+   * @return Up to <code>n</code> distinct sequences of morphemes, most
+   *         likely first. Paths through different Nodes that result in the
+   *         same morphemes are returned only once
+   * @throws IOException
+   */
+  public List<List<Token>> getNBestTokens(Sentence sentence, int n) throws IOException {
+    List<List<Token>> paths = new ArrayList<List<Token>>();
+    if (n <= 0) {
+      return paths;
+    }
+    
+    int eosPosition = buildLattice(sentence);
+    Dictionary dictionary = tokenizer.getDictionary();
+    
+    // The best path is already known from the forward search
+    linkBestPath();
+    List<Token> bestTokens = new ArrayList<Token>();
+    addBestTokens(sentence, bestTokens);
+    paths.add(bestTokens);
+    boolean bestPathFound = false;
+    
+    PriorityQueue<Path> queue = new PriorityQueue<Path>(64, PATH_COMPARATOR);
+    queue.add(new Path(eosNode, null, 0));
+    while (paths.size() < n && !queue.isEmpty()) {
+      Path path = queue.poll();
+      Node rNode = path.node;
+      
+      if (rNode == bosNode) {
+        if (!bestPathFound && isBestPath(path)) {
+          bestPathFound = true;
+        } else {
+          List<Token> tokens = getTokens(sentence, path);
+          if (!containsTokens(paths, tokens)) {
+            paths.add(tokens);
+          }
+        }
+        continue;
+      }
+      
+      int position = (rNode == eosNode) ? eosPosition : rNode.start + rNode.length - rNode.span;
+      for (Node lNode = endNodeList[position]; lNode != null; lNode = lNode.lnext) {
+        if (lNode != eosNode) {
+          int cost = dictionary.getCost(lNode.prev, lNode, rNode);
+          queue.add(new Path(lNode, path, path.suffixCost + cost));
+        }
+      }
+    }
+    
+    return paths;
+  }
+  
+  /**
+   * Determines whether a complete path found by the backward search is the
+   * best path, linked through <code>Node.next</code> from the
+   * beginning-of-string
+   *
+   * @param path The path, starting at the beginning-of-string
+   * @return <code>true</code> if the path is the best path
+   */
+  private boolean isBestPath(Path path) {
+    Node node = bosNode;
+    for (; path != null && node != null; path = path.next, node = node.next) {
+      if (path.node != node) {
+        return false;
+      }
+    }
+    return (path == null) && (node == null);
+  }
+  
+  /**
+   * Determines whether a list of {@link Token}s has already been found. The
+   * dictionary may contain otherwise identical morphemes with different
+   * connection attributes, so different paths may result in the same
+   * {@link Token}s. The costs of the {@link Token}s are ignored
+   *
+   * @param paths The lists of {@link Token}s already found
+   * @param tokens The list of {@link Token}s to find
+   * @return <code>true</code> if the list of {@link Token}s has been found
+   */
+  private static boolean containsTokens(List<List<Token>> paths, List<Token> tokens) {
+    for (List<Token> path : paths) {
+      if (path.size() != tokens.size()) {
+        continue;
+      }
+      boolean equal = true;
+      for (int i = 0; i < tokens.size() && equal; i++) {
+        Token token1 = path.get(i);
+        Token token2 = tokens.get(i);
+        equal = (token1.getStart() == token2.getStart())
+            && (token1.getLength() == token2.getLength())
+            && ((token1.getMorpheme() == token2.getMorpheme()) || token1.getMorpheme().equals(token2.getMorpheme()));
+      }
+      if (equal) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Converts a complete path found by the backward search to a list of
+   * {@link Token}s
+   *
+   * @param sentence The sentence
+   * @param path The path, starting at the beginning-of-string
+   * @return The {@link Token}s
+   */
+  private List<Token> getTokens(Sentence sentence, Path path) {
+    int totalCost = path.suffixCost;
+    List<Token> tokenList = new ArrayList<Token>();
+    for (path = path.next; (path != null) && (path.next != null); path = path.next) {
+      Node node = path.node;
+      tokenizer.getMorpheme(node);
+      Token token = newToken(sentence, node);
+      token.setCost(totalCost - path.suffixCost);
+      tokenList.add(token);
+    }
     return tokenList;
   }
   
@@ -0,0 +1,255 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.server;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.TaggerPool;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.representation.WriterRepresentation;
+import org.restlet.routing.Router;
+import org.restlet.routing.Template;
+
+/**
+ * A Restlet application serving an {@link AnalysisService} over HTTP, so
+ * that other processes on the same host can share one loaded dictionary:
+ * <ul>
+ *   <li><code>POST /analyze</code> analyses the request body as one text,
+ *       and returns the result as JSON
+ *   <li><code>POST /analyze/batch</code> analyses a body of newline delimited
+ *       JSON requests, streaming back one result line for each line
+ *   <li><code>GET /stats</code> returns the latency, throughput and tagger
+ *       pool statistics as JSON
+ * </ul>
+ * See {@link AnalysisService} for the JSON formats. Request bodies are read
+ * as UTF-8 unless they give another character set.
+ */
+public class AnalysisServer extends Application {
+  
+  /** The port the server listens on by default */
+  public static final int DEFAULT_PORT = 8182;
+  
+  /** The address the server listens on by default, which is local only */
+  public static final String DEFAULT_ADDRESS = "127.0.0.1";
+  
+  /** The media type of newline delimited JSON */
+  private static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+  
+  /** The service */
+  private final AnalysisService service;
+  
+  /**
+   * @param service The service to serve
+   */
+  public AnalysisServer(AnalysisService service) {
+    this.service = service;
+  }
+  
+  @Override
+  public Restlet createInboundRoot() {
+    Router router = new Router(getContext());
+    router.setDefaultMatchingMode(Template.MODE_EQUALS);
+    
+    router.attach("/analyze", new Restlet(getContext()) {
+      @Override
+      public void handle(Request request, Response response) {
+        super.handle(request, response);
+        if (!allow(request, response, Method.POST)) {
+          return;
+        }
+        try {
+          String result = service.analyze(readText(request.getEntity()));
+          response.setEntity(json(result, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+          response.setStatus(Status.SERVER_ERROR_INTERNAL, e.getMessage());
+        }
+      }
+    });
+    
+    router.attach("/analyze/batch", new Restlet(getContext()) {
+      @Override
+      public void handle(Request request, Response response) {
+        super.handle(request, response);
+        if (!allow(request, response, Method.POST)) {
+          return;
+        }
+        // the request body is read before returning, as it may be released
+        // once the call has been handled; the results are then streamed as
+        // each line is analysed
+        final String body;
+        try {
+          body = readText(request.getEntity());
+        } catch (IOException e) {
+          response.setStatus(Status.SERVER_ERROR_INTERNAL, e.getMessage());
+          return;
+        }
+        WriterRepresentation result = new WriterRepresentation(APPLICATION_NDJSON) {
+          @Override
+          public void write(Writer writer) throws IOException {
+            service.analyzeBatch(new StringReader(body), writer);
+          }
+        };
+        result.setCharacterSet(CharacterSet.UTF_8);
+        response.setEntity(result);
+      }
+    });
+    
+    router.attach("/stats", new Restlet(getContext()) {
+      @Override
+      public void handle(Request request, Response response) {
+        super.handle(request, response);
+        if (allow(request, response, Method.GET)) {
+          response.setEntity(json(service.getStats(), MediaType.APPLICATION_JSON));
+        }
+      }
+    });
+    
+    return router;
+  }
+  
+  /**
+   * Checks the method of a request, setting the response's status if it is
+   * not the allowed method
+   *
+   * @param request The request
+   * @param response The response
+   * @param method The allowed method
+   * @return <code>true</code> if the request uses the allowed method
+   */
+  private static boolean allow(Request request, Response response, Method method) {
+    if (method.equals(request.getMethod())) {
+      return true;
+    }
+    response.getAllowedMethods().add(method);
+    response.setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+    return false;
+  }
+  
+  /**
+   * @param text The JSON text
+   * @param mediaType The media type
+   * @return A UTF-8 representation of the text
+   */
+  private static Representation json(String text, MediaType mediaType) {
+    StringRepresentation representation = new StringRepresentation(text, mediaType);
+    representation.setCharacterSet(CharacterSet.UTF_8);
+    return representation;
+  }
+  
+  /**
+   * @param entity A request body, or <code>null</code>
+   * @return A reader of the body, in its character set or UTF-8
+   * @throws IOException
+   */
+  private static Reader openReader(Representation entity) throws IOException {
+    if (entity == null || !entity.isAvailable()) {
+      return new StringReader("");
+    }
+    CharacterSet characterSet = entity.getCharacterSet();
+    Charset charset = Charset.forName((characterSet != null) ? characterSet.getName() : "UTF-8");
+    return new InputStreamReader(entity.getStream(), charset);
+  }
+  
+  /**
+   * @param entity A request body, or <code>null</code>
+   * @return The text of the body, in its character set or UTF-8
+   * @throws IOException
+   */
+  private static String readText(Representation entity) throws IOException {
+    Reader reader = openReader(entity);
+    try {
+      StringBuilder text = new StringBuilder();
+      char[] buffer = new char[4096];
+      for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
+        text.append(buffer, 0, n);
+      }
+      return text.toString();
+    } finally {
+      reader.close();
+    }
+  }
+  
+  /**
+   * Starts a server for a service
+   *
+   * @param service The service
+   * @param address The address to listen on
+   * @param port The port to listen on
+   * @return The started component, which should be stopped when done with
+   * @throws Exception if the server could not be started
+   */
+  public static Component start(AnalysisService service, String address, int port) throws Exception {
+    Component component = new Component();
+    component.getServers().add(Protocol.HTTP, address, port);
+    component.getDefaultHost().attach(new AnalysisServer(service));
+    component.start();
+    return component;
+  }
+  
+  /**
+   * Main method
+   * 
+   * @param args [-dictionaryDir &lt;directory&gt;] [-address &lt;address&gt;] [-port &lt;port&gt;]
+   *        [-poolSize &lt;taggers&gt;] [-idleTimeout &lt;seconds&gt;] [-tokenizeUnknownKatakana]
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    String dictionaryDir = null;
+    String address = DEFAULT_ADDRESS;
+    int port = DEFAULT_PORT;
+    int poolSize = Runtime.getRuntime().availableProcessors();
+    long idleTimeout = 300;
+    boolean tokenizeUnknownKatakana = false;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-dictionaryDir") && i + 1 < args.length) {
+        dictionaryDir = args[++i];
+      } else if (args[i].equals("-address") && i + 1 < args.length) {
+        address = args[++i];
+      } else if (args[i].equals("-port") && i + 1 < args.length) {
+        port = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-poolSize") && i + 1 < args.length) {
+        poolSize = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-idleTimeout") && i + 1 < args.length) {
+        idleTimeout = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-tokenizeUnknownKatakana")) {
+        tokenizeUnknownKatakana = true;
+      } else {
+        throw new IllegalArgumentException("Unknown argument: " + args[i]);
+      }
+    }
+    TaggerPool pool = new TaggerPool(dictionaryDir, tokenizeUnknownKatakana, poolSize, idleTimeout, TimeUnit.SECONDS);
+    start(new AnalysisService(pool), address, port);
+  }
+}
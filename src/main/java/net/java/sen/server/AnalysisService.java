@@ -0,0 +1,275 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.java.sen.StringTagger;
+import net.java.sen.TaggerPool;
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Token;
+
+/**
+ * Analyses texts with a {@link TaggerPool}, giving the results as JSON, and
+ * keeps latency and throughput statistics. This is the part of
+ * {@link AnalysisServer} which does not depend on HTTP.
+ * <p>
+ * The result of analysing a text is an object with a <code>tokens</code>
+ * array, each token being an object with the members <code>surface</code>,
+ * <code>start</code>, <code>length</code>, <code>cost</code> (the increase in
+ * the path cost at the word, that is its word cost plus the cost of its
+ * connection to the word before), <code>partOfSpeech</code>,
+ * <code>basicForm</code>,
+ * <code>conjugationalType</code>, <code>conjugationalForm</code>,
+ * <code>readings</code> and <code>pronunciations</code>.
+ * <p>
+ * A batch is newline delimited JSON: each line of the input is an object
+ * with a string <code>text</code> and optionally an <code>id</code> (a
+ * string or number), and gives one line of output, the result of analysing
+ * the text with the <code>id</code> added, or an object with the
+ * <code>id</code> and an <code>error</code> if the line was not valid.
+ * 
+ * <p><b>Thread Safety</b>: This class is thread safe
+ */
+public class AnalysisService {
+  
+  /** The pool of taggers */
+  private final TaggerPool pool;
+  
+  /** The time the service was created */
+  private final long createdAt = System.nanoTime();
+  
+  /** The number of texts analysed */
+  private final LongAdder documents = new LongAdder();
+  
+  /** The number of characters analysed */
+  private final LongAdder characters = new LongAdder();
+  
+  /** The number of tokens produced */
+  private final LongAdder tokens = new LongAdder();
+  
+  /** The number of batch lines which were not valid */
+  private final LongAdder errors = new LongAdder();
+  
+  /** The total time spent analysing texts, in nanoseconds */
+  private final LongAdder latencyNanos = new LongAdder();
+  
+  /** The longest time spent analysing a text, in nanoseconds */
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+  
+  /**
+   * @param pool The pool of taggers to analyse with
+   */
+  public AnalysisService(TaggerPool pool) {
+    this.pool = pool;
+  }
+  
+  /**
+   * Returns the pool of taggers
+   *
+   * @return The pool
+   */
+  public TaggerPool getTaggerPool() {
+    return pool;
+  }
+  
+  /**
+   * Analyses a text
+   *
+   * @param text The text
+   * @return The result, as a JSON object
+   * @throws IOException
+   * @throws InterruptedIOException if interrupted while waiting for a tagger
+   */
+  public String analyze(String text) throws IOException {
+    TaggerPool.Lease lease = acquire();
+    try {
+      StringBuilder out = new StringBuilder();
+      appendResult(lease.getTagger(), null, text, new ArrayList<Token>(), out);
+      return out.toString();
+    } finally {
+      lease.close();
+    }
+  }
+  
+  /**
+   * Analyses a batch of texts, reading lines from the input and writing each
+   * result line as soon as it is ready. A tagger is leased for each line
+   * only while it is analysed, so that a slow client does not hold one while
+   * its request is read or its results are written
+   *
+   * @param in The input, one JSON object per line
+   * @param out The output, one JSON object per line
+   * @throws IOException
+   * @throws InterruptedIOException if interrupted while waiting for a tagger
+   */
+  public void analyzeBatch(Reader in, Writer out) throws IOException {
+    BufferedReader reader = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+    List<Token> reuse = new ArrayList<Token>();
+    StringBuilder line = new StringBuilder();
+    String input;
+    while ((input = reader.readLine()) != null) {
+      if (input.trim().length() == 0) {
+        continue;
+      }
+      line.setLength(0);
+      String id = null;
+      try {
+        Map<String, String> request = Json.parseObject(input);
+        id = request.get("id");
+        String text = request.get("text");
+        if (text == null) {
+          throw new IllegalArgumentException("Missing text");
+        }
+        text = Json.stringValue(text);
+        TaggerPool.Lease lease = acquire();
+        try {
+          appendResult(lease.getTagger(), id, text, reuse, line);
+        } finally {
+          lease.close();
+        }
+      } catch (IllegalArgumentException e) {
+        errors.increment();
+        line.setLength(0);
+        line.append("{\"id\":").append(id != null ? id : "null").append(",\"error\":");
+        Json.quote(e.getMessage(), line);
+        line.append('}');
+      }
+      line.append('\n');
+      out.write(line.toString());
+      out.flush();
+    }
+  }
+  
+  /**
+   * Returns the statistics of the service and its pool of taggers
+   *
+   * @return The statistics, as a JSON object
+   */
+  public String getStats() {
+    long documentCount = documents.sum();
+    long characterCount = characters.sum();
+    double seconds = (System.nanoTime() - createdAt) / 1e9;
+    double meanLatencyMicros = (documentCount > 0) ? latencyNanos.sum() / 1e3 / documentCount : 0;
+    
+    StringBuilder out = new StringBuilder();
+    out.append("{\"documents\":").append(documentCount);
+    out.append(",\"characters\":").append(characterCount);
+    out.append(",\"tokens\":").append(tokens.sum());
+    out.append(",\"errors\":").append(errors.sum());
+    out.append(",\"uptimeSeconds\":").append(String.format(Locale.ROOT, "%.3f", seconds));
+    out.append(",\"documentsPerSecond\":").append(String.format(Locale.ROOT, "%.1f", documentCount / seconds));
+    out.append(",\"charactersPerSecond\":").append(String.format(Locale.ROOT, "%.1f", characterCount / seconds));
+    out.append(",\"meanLatencyMicros\":").append(String.format(Locale.ROOT, "%.1f", meanLatencyMicros));
+    out.append(",\"maxLatencyMicros\":").append(String.format(Locale.ROOT, "%.1f", maxLatencyNanos.get() / 1e3));
+    out.append(",\"pool\":{\"maxSize\":").append(pool.getMaxSize());
+    out.append(",\"size\":").append(pool.getSize());
+    out.append(",\"leased\":").append(pool.getLeasedCount());
+    out.append(",\"leases\":").append(pool.getLeaseCount());
+    out.append(",\"waits\":").append(pool.getWaitCount());
+    out.append(",\"waitMillis\":").append(pool.getWaitTime(TimeUnit.MILLISECONDS));
+    out.append(",\"utilization\":").append(String.format(Locale.ROOT, "%.3f", pool.getUtilization()));
+    out.append("}}");
+    return out.toString();
+  }
+  
+  /**
+   * Leases a tagger from the pool
+   *
+   * @return The lease
+   * @throws InterruptedIOException if interrupted while waiting
+   */
+  private TaggerPool.Lease acquire() throws InterruptedIOException {
+    try {
+      return pool.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a tagger");
+    }
+  }
+  
+  /**
+   * Analyses a text, appending the result and recording the statistics
+   *
+   * @param tagger The tagger
+   * @param id The JSON text of the id to add to the result, or
+   *        <code>null</code>
+   * @param text The text to analyse
+   * @param reuse A list to reuse for the tokens
+   * @param out The builder to append to
+   * @throws IOException
+   */
+  private void appendResult(StringTagger tagger, String id, String text, List<Token> reuse, StringBuilder out)
+      throws IOException {
+    long start = System.nanoTime();
+    List<Token> result = tagger.analyze(text, reuse);
+    
+    out.append('{');
+    if (id != null) {
+      out.append("\"id\":").append(id).append(',');
+    }
+    out.append("\"tokens\":[");
+    int previousCost = 0;
+    for (int i = 0; i < result.size(); i++) {
+      Token token = result.get(i);
+      Morpheme morpheme = token.getMorpheme();
+      if (i > 0) {
+        out.append(',');
+      }
+      out.append("{\"surface\":");
+      Json.quote(token.getSurface(), out);
+      out.append(",\"start\":").append(token.getStart());
+      out.append(",\"length\":").append(token.getLength());
+      out.append(",\"cost\":").append(token.getCost() - previousCost);
+      out.append(",\"partOfSpeech\":");
+      Json.quote(morpheme.getPartOfSpeech(), out);
+      out.append(",\"basicForm\":");
+      Json.quote(morpheme.getBasicForm(), out);
+      out.append(",\"conjugationalType\":");
+      Json.quote(morpheme.getConjugationalType(), out);
+      out.append(",\"conjugationalForm\":");
+      Json.quote(morpheme.getConjugationalForm(), out);
+      out.append(",\"readings\":");
+      Json.quote(morpheme.getReadings(), out);
+      out.append(",\"pronunciations\":");
+      Json.quote(morpheme.getPronunciations(), out);
+      out.append('}');
+      previousCost = token.getCost();
+    }
+    out.append("]}");
+    
+    long latency = System.nanoTime() - start;
+    documents.increment();
+    characters.add(text.length());
+    tokens.add(result.size());
+    latencyNanos.add(latency);
+    for (long max = maxLatencyNanos.get(); latency > max && !maxLatencyNanos.compareAndSet(max, latency); ) {
+      max = maxLatencyNanos.get();
+    }
+  }
+}
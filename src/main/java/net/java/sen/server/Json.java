@@ -0,0 +1,234 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.server;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The little JSON the analysis service needs: quoting strings, and reading
+ * the flat objects of a batch request
+ */
+final class Json {
+  
+  /** A JSON number */
+  private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+  
+  private Json() {
+  }
+  
+  /**
+   * Appends a string as a JSON string literal
+   *
+   * @param value The string, or <code>null</code> for the literal null
+   * @param out The builder to append to
+   */
+  static void quote(String value, StringBuilder out) {
+    if (value == null) {
+      out.append("null");
+      return;
+    }
+    out.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+            out.append(String.format("\\u%04x", (int) c));
+          } else {
+            out.append(c);
+          }
+      }
+    }
+    out.append('"');
+  }
+  
+  /**
+   * Appends a list of strings as a JSON array
+   *
+   * @param values The strings
+   * @param out The builder to append to
+   */
+  static void quote(List<String> values, StringBuilder out) {
+    out.append('[');
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        out.append(',');
+      }
+      quote(values.get(i), out);
+    }
+    out.append(']');
+  }
+  
+  /**
+   * Reads a JSON object whose values are strings, numbers, booleans or
+   * null. Nested objects and arrays are not accepted
+   *
+   * @param text The JSON text
+   * @return The members' values as JSON text, by name, in order
+   * @throws IllegalArgumentException if the text is not such an object
+   */
+  static Map<String, String> parseObject(String text) {
+    Map<String, String> members = new LinkedHashMap<String, String>();
+    int i = skipWhitespace(text, 0);
+    i = expect(text, i, '{');
+    i = skipWhitespace(text, i);
+    if (i < text.length() && text.charAt(i) == '}') {
+      i++;
+    } else {
+      while (true) {
+        i = skipWhitespace(text, i);
+        int nameEnd = endOfString(text, i);
+        String name = stringValue(text.substring(i, nameEnd));
+        i = expect(text, skipWhitespace(text, nameEnd), ':');
+        i = skipWhitespace(text, i);
+        int valueEnd = endOfValue(text, i);
+        members.put(name, text.substring(i, valueEnd));
+        i = skipWhitespace(text, valueEnd);
+        if (i < text.length() && text.charAt(i) == ',') {
+          i++;
+        } else {
+          i = expect(text, i, '}');
+          break;
+        }
+      }
+    }
+    if (skipWhitespace(text, i) != text.length()) {
+      throw new IllegalArgumentException("Unexpected text after object at " + i);
+    }
+    return members;
+  }
+  
+  /**
+   * Returns the value of a JSON string literal
+   *
+   * @param literal The literal, including its quotes
+   * @return The string
+   * @throws IllegalArgumentException if the literal is not a string
+   */
+  static String stringValue(String literal) {
+    if (literal.length() < 2 || literal.charAt(0) != '"' || literal.charAt(literal.length() - 1) != '"') {
+      throw new IllegalArgumentException("Expected a string: " + literal);
+    }
+    StringBuilder value = new StringBuilder(literal.length() - 2);
+    for (int i = 1; i < literal.length() - 1; i++) {
+      char c = literal.charAt(i);
+      if (c != '\\') {
+        value.append(c);
+        continue;
+      }
+      c = literal.charAt(++i);
+      switch (c) {
+        case 'b':
+          value.append('\b');
+          break;
+        case 'f':
+          value.append('\f');
+          break;
+        case 'n':
+          value.append('\n');
+          break;
+        case 'r':
+          value.append('\r');
+          break;
+        case 't':
+          value.append('\t');
+          break;
+        case 'u':
+          if (i + 4 >= literal.length() - 1) {
+            throw new IllegalArgumentException("Bad escape in string: " + literal);
+          }
+          try {
+            value.append((char) Integer.parseInt(literal.substring(i + 1, i + 5), 16));
+          } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad escape in string: " + literal);
+          }
+          i += 4;
+          break;
+        default:
+          value.append(c);
+      }
+    }
+    return value.toString();
+  }
+  
+  private static int skipWhitespace(String text, int i) {
+    while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t'
+        || text.charAt(i) == '\n' || text.charAt(i) == '\r')) {
+      i++;
+    }
+    return i;
+  }
+  
+  private static int expect(String text, int i, char c) {
+    if (i >= text.length() || text.charAt(i) != c) {
+      throw new IllegalArgumentException("Expected '" + c + "' at " + i);
+    }
+    return i + 1;
+  }
+  
+  /**
+   * @return The index after the string literal starting at i
+   */
+  private static int endOfString(String text, int i) {
+    i = expect(text, i, '"');
+    while (i < text.length()) {
+      char c = text.charAt(i++);
+      if (c == '\\') {
+        i++;
+      } else if (c == '"') {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unterminated string");
+  }
+  
+  /**
+   * @return The index after the string, number or literal starting at i
+   */
+  private static int endOfValue(String text, int i) {
+    if (i < text.length() && text.charAt(i) == '"') {
+      return endOfString(text, i);
+    }
+    int start = i;
+    while (i < text.length() && "+-.0123456789eEtrufalsn".indexOf(text.charAt(i)) >= 0) {
+      i++;
+    }
+    String value = text.substring(start, i);
+    if (!value.equals("true") && !value.equals("false") && !value.equals("null") && !NUMBER.matcher(value).matches()) {
+      throw new IllegalArgumentException("Expected a string, number, boolean or null at " + start);
+    }
+    return i;
+  }
+}
@@ -20,157 +20,121 @@
 
 package net.java.sen.tokenizers.ja;
 
-import net.java.sen.dictionary.CToken;
+import net.java.sen.dictionary.CharacterClasses;
+import net.java.sen.dictionary.CharacterDefinition;
 import net.java.sen.dictionary.Dictionary;
-import net.java.sen.dictionary.Morpheme;
 import net.java.sen.dictionary.Node;
+import net.java.sen.dictionary.NodeArena;
 import net.java.sen.dictionary.SentenceIterator;
 import net.java.sen.dictionary.Tokenizer;
-import net.java.sen.trie.CharIterator;
-
-import static java.lang.Character.UnicodeBlock.LATIN_1_SUPPLEMENT;
-import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_ADDITIONAL;
-import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_A;
-import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_B;
-import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_C;
-import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_D;
-import static java.lang.Character.UnicodeBlock.GREEK;
-import static java.lang.Character.UnicodeBlock.GREEK_EXTENDED;
-import static java.lang.Character.UnicodeBlock.CYRILLIC;
-import static java.lang.Character.UnicodeBlock.CYRILLIC_EXTENDED_A;
-import static java.lang.Character.UnicodeBlock.CYRILLIC_EXTENDED_B;
-import static java.lang.Character.UnicodeBlock.CYRILLIC_SUPPLEMENTARY;
 
 /**
- * A Tokenizer for Japanese text
+ * A Tokenizer for Japanese text. Unknown morphemes are proposed according to
+ * the {@link CharacterDefinition} of the {@link Dictionary}
  */
 public class JapaneseTokenizer extends Tokenizer {
   
-  /** Character class for non-Japanese text */
-  static final int OTHER = 0x80;
-  
-  /** Character class for whitespace */
-  static final int SPACE = 0x81;
+  /** The name of the character class for Katakana */
+  static final String KATAKANA = "KATAKANA";
   
-  /** Character class for Kanji */
-  static final int KANJI = 0x82;
+  /** The character classes of the dictionary */
+  private final CharacterDefinition characterDefinition;
   
-  /** Character class for Katakana */
-  static final int KATAKANA = 0x83;
+  /** The invoke rule of each character class */
+  private final boolean[] invoke;
   
-  /** Character class for Hiragana */
-  static final int HIRAGANA = 0x84;
+  /** The group rule of each character class */
+  private final boolean[] group;
   
-  /** Character class for half-width forms */
-  static final int HALF_WIDTH = 0x85;
-
-  /**
-   * Gets the character class of the given character
-   *
-   * @param c The character
-   * @return The character class
-   */
-  private int getCharClass(char c) {
-    // TODO: I think we are recalculating this over and over (n^2),
-    // which is why the method is so sensitive to performance.
-    // maybe instead we should calculate up-front in the sentence?
-    // TODO: We should utilize char.def, which was introduced with MeCab,
-    // that enables us to modify the tokenizer behavior without updating the code.
-    if (c <= 0x7F) {
-      return (c == ' ' || c == '\t' || c == '\r' || c == '\n') ? SPACE : Character.getType(Character.toLowerCase(c));
-    } else if (c >= 0x3040 && c <= 0x309F) {
-      return HIRAGANA;
-    } else if ((c >= 0x30A0 && c <= 0x30FF && c != 0x30FB) || (c >= 0x31F0 && c <= 0x31FF) || (c >= 0xFF66 && c <= 0xFF9F)) {
-      return KATAKANA;
-    } else if (c >= 0x4E00 && c <= 0x9FFF) {
-      return KANJI;
-    } else {
-      Character.UnicodeBlock ub = Character.UnicodeBlock.of(c);
-      if (ub == LATIN_1_SUPPLEMENT || ub == LATIN_EXTENDED_ADDITIONAL || ub == LATIN_EXTENDED_A || ub == LATIN_EXTENDED_B || ub == LATIN_EXTENDED_C || ub == LATIN_EXTENDED_D) {
-        // Latin Letters
-        return Character.getType(Character.toLowerCase(c));
-      } else if (ub == GREEK || ub == GREEK_EXTENDED) {
-        // Greek
-        return Character.getType(Character.toLowerCase(c));
-      } else if (ub == CYRILLIC || ub == CYRILLIC_EXTENDED_A || ub == CYRILLIC_EXTENDED_B || ub == CYRILLIC_SUPPLEMENTARY) {
-        // Cyrillic
-        return Character.getType(Character.toLowerCase(c));
-      } else {
-        // Symbols
-        return OTHER;
-      }
-    }
-  }
+  /** The length rule of each character class */
+  private final int[] length;
   
   /**
-   * Find the length to use for an unknown token
+   * Prepends an "unknown morpheme" {@link Node} to a chain of {@link Node}s
    *
-   * @param iterator The iterator to read from
-   * @return The length
+   * @param arena The arena to take the {@link Node} from
+   * @param surface The underlying character surface
+   * @param resultNode The head of the chain
+   * @param start The index of the first character of the {@link Node}
+   * @param length The length of the {@link Node}
+   * @param skipped The number of characters skipped before the {@link Node}
+   * @return The new head of the chain
    */
-  @SuppressWarnings("fallthrough")
-  private int findUnknownToken(CharIterator iterator) {
-    int length = 0;
-    
-    if (iterator.hasNext()) {
-      int charClass = getCharClass(iterator.next());
-      switch (charClass) {
-        case HIRAGANA:
-        case KANJI:
-        case OTHER:
-          length = 1;
-          break;
-
-        case KATAKANA:
-          if (isTokenizeUnknownKatakan()) {
-            length = 1;
-            break;
-          }
-
-        default:
-          length = 1;
-          while (iterator.hasNext() && (getCharClass(iterator.next()) == charClass)) {
-            length++;
-          }
-          break;
-      }
-    }
-    
-    return length;
+  private Node addUnknownNode(NodeArena arena, char[] surface, Node resultNode, int start, int length, int skipped) {
+    Node unknownNode = getUnknownNode(arena, surface, start, length, skipped + length);
+    unknownNode.rnext = resultNode;
+    return unknownNode;
   }
   
   @Override
-  public Node lookup(SentenceIterator iterator, char[] surface) {
+  public Node lookup(SentenceIterator iterator, char[] surface, NodeArena arena) {
     Node resultNode = null;
     
-    int charClass = getCharClass(iterator.current());
+    // Take the class and run from the classes precomputed for the sentence
+    // if there are any, or find them from the iterator
+    CharacterClasses characterClasses = iterator.characterClasses();
+    if (characterClasses != null && characterClasses.getDefinition() != characterDefinition) {
+      characterClasses = null;
+    }
+    int origin = iterator.origin();
+    int charClass = (characterClasses != null) ? characterClasses.getCharClass(origin) : characterDefinition.getCharClass(iterator.current());
     
     int skipped = iterator.skippedCharCount();
-    CToken t[] = getDictionary().commonPrefixSearch(iterator);
-    for (int i = 0; t[i].terminator == false; i++) {
-      Node newNode = new Node();
-      newNode.setCToken(t[i]);
-      newNode.length = t[i].length;
-      newNode.start = iterator.origin();
-      newNode.span = t[i].length + skipped; 
+    Dictionary dictionary = getDictionary();
+    int tokenIndexes[];
+    if (characterClasses != null) {
+      int offset = characterClasses.getOffset();
+      tokenIndexes = dictionary.commonPrefixTokens(characterClasses.getBuffer(), offset + origin, offset + characterClasses.getReadEnd(origin), searchState);
+    } else {
+      tokenIndexes = dictionary.commonPrefixTokens(iterator, searchState);
+    }
+    for (int i = 0; tokenIndexes[i] >= 0; i++) {
+      Node newNode = arena.newNode();
+      dictionary.readNode(newNode, tokenIndexes[i]);
+      newNode.start = origin;
+      newNode.span = newNode.length + skipped; 
       newNode.rnext = resultNode;
-      newNode.morpheme = new Morpheme(getDictionary(), t[i].partOfSpeechIndex);
       
       resultNode = newNode;
     }
     
-    if ((resultNode != null) && (charClass == HIRAGANA || charClass == KANJI || (isTokenizeUnknownKatakan() && charClass == KATAKANA))) {
+    if ((resultNode != null) && !invoke[charClass]) {
       return resultNode;
     }
     
-    // Synthesize token for longest consecutive run of same character class
-    iterator.rewindToOrigin();
-    int unknownTokenLength = findUnknownToken(iterator);
-
-    Node unknownNode = getUnknownNode(surface, iterator.origin(), unknownTokenLength, skipped + unknownTokenLength);
-    unknownNode.rnext = resultNode;
+    int run;
+    if (characterClasses != null) {
+      run = characterClasses.getRunEnd(origin) - origin;
+    } else {
+      // Find the run of characters compatible with the class, as far as the
+      // rules of the class need it
+      iterator.rewindToOrigin();
+      int limit = group[charClass] ? Integer.MAX_VALUE : Math.max(length[charClass], 1);
+      run = 0;
+      if (iterator.hasNext()) {
+        iterator.next();
+        run = 1;
+        while ((run < limit) && iterator.hasNext() && characterDefinition.isCompatible(charClass, iterator.next())) {
+          run++;
+        }
+      }
+    }
     
-    return unknownNode;
+    // Synthesize tokens of each length up to the length rule, and for the
+    // whole run if grouping
+    int maxLength = Math.min(length[charClass], run);
+    boolean added = false;
+    for (int i = 1; i <= maxLength; i++) {
+      if (!group[charClass] || (i != run)) {
+        resultNode = addUnknownNode(arena, surface, resultNode, origin, i, skipped);
+        added = true;
+      }
+    }
+    if (group[charClass] || !added) {
+      resultNode = addUnknownNode(arena, surface, resultNode, origin, group[charClass] ? run : Math.min(run, 1), skipped);
+    }
+    
+    return resultNode;
   }
   
   /**
@@ -178,9 +142,29 @@ public class JapaneseTokenizer extends Tokenizer {
    * 
    * @param dictionary The Dictionary in which to search for possible morphemes
    * @param unknownPartOfSpeechDescription The part-of-speech code to use for unknown tokens
-   * @param tokenizeUnknownKatakana Grouping unknown tokens to generate a token.
+   * @param tokenizeUnknownKatakana If <code>true</code>, unknown Katakana
+   *        forms single character tokens, whatever the rules of its class
    */
   public JapaneseTokenizer(Dictionary dictionary, String unknownPartOfSpeechDescription, boolean tokenizeUnknownKatakana) {
     super(dictionary, unknownPartOfSpeechDescription, tokenizeUnknownKatakana);
+    
+    this.characterDefinition = dictionary.getCharacterDefinition();
+    
+    int classCount = characterDefinition.getClassCount();
+    this.invoke = new boolean[classCount];
+    this.group = new boolean[classCount];
+    this.length = new int[classCount];
+    for (int i = 0; i < classCount; i++) {
+      this.invoke[i] = characterDefinition.isInvoke(i);
+      this.group[i] = characterDefinition.isGroup(i);
+      this.length[i] = characterDefinition.getLength(i);
+    }
+    
+    int katakana = characterDefinition.getCharClass(KATAKANA);
+    if (tokenizeUnknownKatakana && katakana >= 0) {
+      this.invoke[katakana] = false;
+      this.group[katakana] = false;
+      this.length[katakana] = 1;
+    }
   }
 }
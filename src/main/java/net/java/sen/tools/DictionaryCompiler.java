@@ -22,6 +22,8 @@
 package net.java.sen.tools;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import net.java.sen.compiler.DictionaryBuilder;
 
@@ -32,10 +34,25 @@ public class DictionaryCompiler {
   /**
    * Main method
    * 
-   * @param args &lt;Custom dictionary file&gt; (optional)
+   * @param args [-packed] [-fst] [-charDef &lt;char.def file&gt;] &lt;Custom dictionary file&gt; (optional)
    * @throws IOException 
    */
   public static void main(String[] args) throws IOException {
-    new DictionaryBuilder(args);
+    boolean packed = false;
+    boolean fst = false;
+    String charDef = null;
+    List<String> customDictionaries = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-packed")) {
+        packed = true;
+      } else if (args[i].equals("-fst")) {
+        fst = true;
+      } else if (args[i].equals("-charDef") && i + 1 < args.length) {
+        charDef = args[++i];
+      } else {
+        customDictionaries.add(args[i]);
+      }
+    }
+    new DictionaryBuilder(customDictionaries.toArray(new String[customDictionaries.size()]), packed, charDef, fst);
   }
 }
@@ -0,0 +1,169 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen.trie;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A dense mapping from the characters present in a set of Trie keys to the
+ * codes used for the transitions of the Trie. Without one, the code of a
+ * character is its UTF-16 value plus one, which spreads the children of a
+ * node across up to 65536 slots; with one, the characters are numbered
+ * from 1 in descending order of frequency, so that the children of a node
+ * pack closely together and the Trie data becomes smaller.
+ * 
+ * <p>The compiled form (alphabet.sen) is:
+ * <pre>
+ *   int    number of characters
+ *   char[] the characters, in code order
+ * </pre>
+ */
+public class Alphabet {
+  
+  /** The filename of the compiled form within a dictionary */
+  public static final String FILENAME = "alphabet.sen";
+  
+  /** The characters, in code order */
+  private final char[] characters;
+  
+  /** The code of each character, or 0 if it is not in the alphabet */
+  private final int[] codes = new int[Character.MAX_VALUE + 1];
+  
+  /**
+   * Returns the code of a character
+   * 
+   * @param c The character
+   * @return The code of the character, from 1 to {@link #size()}, or 0 if
+   *         it is not in the alphabet
+   */
+  public int getCode(char c) {
+    return codes[c];
+  }
+  
+  /**
+   * Returns the number of characters in the alphabet
+   * 
+   * @return The number of characters
+   */
+  public int size() {
+    return characters.length;
+  }
+  
+  /**
+   * Returns the code of every character for a search of Trie data, in which
+   * characters not in the alphabet are given a code that leads off the end
+   * of the data
+   * 
+   * @param nodes The number of nodes in the Trie data
+   * @return The codes, indexed by character
+   */
+  int[] searchCodes(int nodes) {
+    int[] searchCodes = new int[codes.length];
+    for (int c = 0; c < codes.length; c++) {
+      searchCodes[c] = (codes[c] != 0) ? codes[c] : nodes;
+    }
+    return searchCodes;
+  }
+  
+  /**
+   * Writes the compiled form of the alphabet
+   *
+   * @param out The stream to write to
+   * @throws IOException
+   */
+  public void write(DataOutputStream out) throws IOException {
+    out.writeInt(characters.length);
+    for (char c : characters) {
+      out.writeChar(c);
+    }
+  }
+  
+  /**
+   * Reads the compiled form of an alphabet
+   *
+   * @param buffer The compiled alphabet
+   * @return The alphabet
+   */
+  public static Alphabet read(ByteBuffer buffer) {
+    ByteBuffer in = buffer.duplicate();
+    int size = in.getInt();
+    if (size < 0 || size > Character.MAX_VALUE + 1 || in.remaining() != size * 2) {
+      throw new RuntimeException("Invalid alphabet size[" + size + "]");
+    }
+    
+    char[] characters = new char[size];
+    in.asCharBuffer().get(characters);
+    return new Alphabet(characters);
+  }
+  
+  /**
+   * Builds the alphabet of a set of Trie keys, numbering the characters in
+   * descending order of frequency
+   * 
+   * @param keys The Trie keys
+   * @param size The actual number of entries in the keys array
+   * @return The alphabet
+   */
+  public static Alphabet build(String[] keys, int size) {
+    final long[] counts = new long[Character.MAX_VALUE + 1];
+    int distinct = 0;
+    for (int i = 0; i < size; i++) {
+      String key = keys[i];
+      for (int j = 0; j < key.length(); j++) {
+        if (counts[key.charAt(j)]++ == 0) {
+          distinct++;
+        }
+      }
+    }
+    
+    // Sort by descending count, then by character. Each entry holds the
+    // count in its upper bits and the complement of the character in its
+    // lower 16 bits
+    long[] entries = new long[distinct];
+    int n = 0;
+    for (int c = 0; c < counts.length; c++) {
+      if (counts[c] != 0) {
+        entries[n++] = (counts[c] << 16) | (Character.MAX_VALUE - c);
+      }
+    }
+    Arrays.sort(entries);
+    
+    char[] characters = new char[distinct];
+    for (int i = 0; i < distinct; i++) {
+      characters[i] = (char) (Character.MAX_VALUE - (entries[distinct - 1 - i] & 0xffff));
+    }
+    
+    return new Alphabet(characters);
+  }
+  
+  /**
+   * Constructor
+   * 
+   * @param characters The characters, in code order
+   */
+  public Alphabet(char[] characters) {
+    this.characters = characters.clone();
+    for (int i = 0; i < characters.length; i++) {
+      if (codes[characters[i]] != 0) {
+        throw new IllegalArgumentException("Duplicate character[" + characters[i] + "] in alphabet");
+      }
+      codes[characters[i]] = i + 1;
+    }
+  }
+}
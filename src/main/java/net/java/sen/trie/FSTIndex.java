@@ -0,0 +1,224 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen.trie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import org.apache.lucene.store.ByteBuffersDataInput;
+import org.apache.lucene.store.ByteBuffersIndexInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.OffHeapFSTStore;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+
+/**
+ * An index of the dictionary's keys held as a Lucene {@link FST}, an
+ * alternative to the double array {@link Trie} which also shares the common
+ * suffixes of the keys. The FST is read in place from its section of the
+ * dictionary, rather than copied onto the heap, and the arcs leaving its
+ * root are cached by character so that the first step of every search is a
+ * single array read.
+ * <p>
+ * An FSTIndex reuses its reading state from search to search, and so is not
+ * thread safe; {@link #FSTIndex(FSTIndex)} creates another index sharing the
+ * same FST and cache for use by another thread
+ */
+public class FSTIndex implements PrefixIndex {
+  
+  /** The filename of the compiled form within a dictionary */
+  public static final String FILENAME = "fst.sen";
+  
+  /** The FST */
+  private final FST<Long> fst;
+  
+  /** The arc leaving the root for each character, or <code>null</code> */
+  private final FST.Arc<Long>[] rootArcs;
+  
+  /** The value of the empty key, or -1 if there is none */
+  private final int rootValue;
+  
+  /** The reader of the FST's bytes */
+  private final FST.BytesReader reader;
+  
+  /** The arc followed by the current search */
+  private final FST.Arc<Long> arc = new FST.Arc<Long>();
+  
+  /**
+   * Returns the FST
+   * 
+   * @return The FST
+   */
+  public FST<Long> getFST() {
+    return fst;
+  }
+  
+  /**
+   * Returns a new index sharing the FST and cache of this one, with its own
+   * reading state
+   * 
+   * @return A new index sharing this one's FST
+   */
+  @Override
+  public PrefixIndex newSearcher() {
+    return new FSTIndex(this);
+  }
+  
+  @Override
+  public int commonPrefixSearch(CharIterator iterator, int results[]) {
+    int num = 0;
+    if (rootValue >= 0) {
+      results[num++] = rootValue;
+    }
+    
+    if (!iterator.hasNext()) {
+      return num;
+    }
+    
+    FST.Arc<Long> rootArc = rootArcs[iterator.next()];
+    if (rootArc == null) {
+      return num;
+    }
+    arc.copyFrom(rootArc);
+    long output = arc.output;
+    
+    try {
+      while (true) {
+        if (arc.isFinal()) {
+          results[num++] = (int) (output + arc.nextFinalOutput);
+        }
+        
+        if (!iterator.hasNext() || fst.findTargetArc(iterator.next(), arc, arc, reader) == null) {
+          return num;
+        }
+        output += arc.output;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+  
+  @Override
+  public int commonPrefixSearch(char[] text, int from, int limit, int results[]) {
+    int num = 0;
+    if (rootValue >= 0) {
+      results[num++] = rootValue;
+    }
+    
+    if (from >= limit) {
+      return num;
+    }
+    
+    FST.Arc<Long> rootArc = rootArcs[text[from]];
+    if (rootArc == null) {
+      return num;
+    }
+    arc.copyFrom(rootArc);
+    long output = arc.output;
+    
+    try {
+      for (int i = from + 1; ; i++) {
+        if (arc.isFinal()) {
+          results[num++] = (int) (output + arc.nextFinalOutput);
+        }
+        
+        if (i >= limit || fst.findTargetArc(text[i], arc, arc, reader) == null) {
+          return num;
+        }
+        output += arc.output;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+  
+  /**
+   * Writes the compiled form of an index of the given keys
+   * 
+   * @param keys The sorted keys
+   * @param values The non-negative values for each key
+   * @param size The actual number of entries in the key/value arrays
+   * @param out The output to write to
+   * @throws IOException
+   */
+  public static void build(String keys[], int values[], int size, DataOutput out) throws IOException {
+    PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    Builder<Long> builder = new Builder<Long>(FST.INPUT_TYPE.BYTE2, outputs);
+    IntsRefBuilder input = new IntsRefBuilder();
+    
+    for (int i = 0; i < size; i++) {
+      input.clear();
+      for (int j = 0; j < keys[i].length(); j++) {
+        input.append(keys[i].charAt(j));
+      }
+      builder.add(input.get(), (long) values[i]);
+    }
+    
+    FST<Long> fst = builder.finish();
+    if (fst == null) {
+      throw new RuntimeException("Fatal: No keys to index");
+    }
+    fst.save(out);
+  }
+  
+  /**
+   * Constructor, reading the compiled form of an index in place
+   * 
+   * @param buffer The compiled index
+   * @throws IOException
+   */
+  public FSTIndex(ByteBuffer buffer) throws IOException {
+    ByteBuffersIndexInput in = new ByteBuffersIndexInput(
+        new ByteBuffersDataInput(Collections.singletonList(buffer.duplicate())), FILENAME);
+    this.fst = new FST<Long>(in, PositiveIntOutputs.getSingleton(), new OffHeapFSTStore());
+    this.reader = fst.getBytesReader();
+    
+    Long emptyOutput = fst.getEmptyOutput();
+    this.rootValue = (emptyOutput != null) ? emptyOutput.intValue() : -1;
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    FST.Arc<Long>[] rootArcs = new FST.Arc[Character.MAX_VALUE + 1];
+    FST.Arc<Long> root = fst.getFirstArc(new FST.Arc<Long>());
+    if (FST.targetHasArcs(root)) {
+      FST.Arc<Long> arc = fst.readFirstTargetArc(root, new FST.Arc<Long>(), reader);
+      while (true) {
+        if (arc.label != FST.END_LABEL) {
+          rootArcs[arc.label] = new FST.Arc<Long>().copyFrom(arc);
+        }
+        if (arc.isLast()) {
+          break;
+        }
+        fst.readNextArc(arc, reader);
+      }
+    }
+    this.rootArcs = rootArcs;
+  }
+  
+  /**
+   * Constructor, sharing the FST of another index
+   * 
+   * @param other The index to share the FST of
+   */
+  public FSTIndex(FSTIndex other) {
+    this.fst = other.fst;
+    this.rootArcs = other.rootArcs;
+    this.rootValue = other.rootValue;
+    this.reader = fst.getBytesReader();
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen.trie;
+
+/**
+ * An index of the dictionary's keys, which finds the keys forming a prefix
+ * of some text. The value of each key gives the range of the token records
+ * of its morphemes: the number of records in its lowest 8 bits, and the
+ * index of the first record less 3 in the remaining bits
+ * 
+ * @see Trie
+ * @see FSTIndex
+ */
+public interface PrefixIndex {
+  
+  /**
+   * Searches for keys forming a complete substring of the given sentence,
+   * starting at the given position within the sentence
+   * 
+   * @param iterator The character iterator to read search characters from
+   * @param results An array used to return the values of the found keys
+   * @return The number of results found
+   * 
+   * @throws ArrayIndexOutOfBoundsException if results[] is too small
+   */
+  int commonPrefixSearch(CharIterator iterator, int results[]);
+  
+  /**
+   * Searches for keys forming a complete substring of the given characters,
+   * starting at the given position
+   * 
+   * @param text The characters to search
+   * @param from The position of the first character to search
+   * @param limit The position after the last character that may be read
+   * @param results An array used to return the values of the found keys
+   * @return The number of results found
+   * 
+   * @throws ArrayIndexOutOfBoundsException if results[] is too small
+   */
+  int commonPrefixSearch(char[] text, int from, int limit, int results[]);
+  
+  /**
+   * Returns an index of the same keys that one thread may search while
+   * other threads search this index. A thread safe index returns itself
+   * 
+   * @return An index of the same keys for use by one thread
+   */
+  PrefixIndex newSearcher();
+}
@@ -0,0 +1,204 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen.trie;
+
+import java.nio.IntBuffer;
+
+/**
+ * A searchable Trie data file, with the {@link Alphabet} its transitions
+ * were coded through if there is one. The transitions out of the root are
+ * precomputed into a table indexed by character, so that the first step of
+ * every search is a single array read, and the data may optionally be copied
+ * from its buffer onto the heap, where it can be read without bounds and
+ * byte order checks
+ * <p>
+ * Instances are immutable, and may be shared between threads
+ */
+public class Trie implements PrefixIndex {
+  
+  /** The value of {@link #firstStep} for a character that no key starts with */
+  private static final int NONE = Integer.MIN_VALUE;
+  
+  /** The Trie data */
+  private final IntBuffer buffer;
+  
+  /** A heap copy of the Trie data, or <code>null</code> */
+  private final int[] data;
+  
+  /** The alphabet, or <code>null</code> */
+  private final Alphabet alphabet;
+  
+  /** The transition code of each character */
+  private final int[] codes;
+  
+  /**
+   * The base of the node reached from the root by each character, or
+   * {@link #NONE}
+   */
+  private final int[] firstStep = new int[Character.MAX_VALUE + 1];
+  
+  /** The value of the empty key, or -1 if there is none */
+  private final int rootValue;
+  
+  /**
+   * Returns the Trie data
+   * 
+   * @return The Trie data
+   */
+  public IntBuffer getBuffer() {
+    return buffer;
+  }
+  
+  /**
+   * Returns the alphabet the transitions were coded through
+   * 
+   * @return The alphabet, or <code>null</code> if each character's code is
+   *         its value plus one
+   */
+  public Alphabet getAlphabet() {
+    return alphabet;
+  }
+  
+  /**
+   * Indicates whether the Trie data has been copied onto the heap
+   * 
+   * @return <code>true</code> if the Trie data is on the heap
+   */
+  public boolean isOnHeap() {
+    return data != null;
+  }
+  
+  /**
+   * Searches for Trie keys forming a complete substring of the given
+   * sentence, starting at the given position within the sentence
+   * 
+   * @param iterator The character iterator to read search characters from
+   * @param results An array used to return the values of the found keys
+   * @return The number of results found
+   * 
+   * @throws ArrayIndexOutOfBoundsException if results[] is too small
+   */
+  @Override
+  public int commonPrefixSearch(CharIterator iterator, int results[]) {
+    if (alphabet == null) {
+      return TrieSearcher.commonPrefixSearch(buffer, iterator, results);
+    }
+    return TrieSearcher.search(buffer, codes, iterator, results);
+  }
+  
+  /**
+   * Searches for Trie keys forming a complete substring of the given
+   * characters, starting at the given position
+   * 
+   * @param text The characters to search
+   * @param from The position of the first character to search
+   * @param limit The position after the last character that may be read
+   * @param results An array used to return the values of the found keys
+   * @return The number of results found
+   * 
+   * @throws ArrayIndexOutOfBoundsException if results[] is too small
+   */
+  @Override
+  public int commonPrefixSearch(char[] text, int from, int limit, int results[]) {
+    int num = 0;
+    if (rootValue >= 0) {
+      results[num++] = rootValue;
+    }
+    
+    if (from >= limit) {
+      return num;
+    }
+    
+    int b = firstStep[text[from]];
+    if (b == NONE) {
+      return num;
+    }
+    
+    if (data != null) {
+      return TrieSearcher.search(data, codes, b, text, from + 1, limit, results, num);
+    }
+    return TrieSearcher.search(buffer, codes, b, text, from + 1, limit, results, num);
+  }
+  
+  /**
+   * Returns this Trie, which only reads its data at absolute positions and
+   * so may be searched by any number of threads at once
+   * 
+   * @return This Trie
+   */
+  @Override
+  public PrefixIndex newSearcher() {
+    return this;
+  }
+  
+  /**
+   * Constructor, for Trie data built without an alphabet, leaving it in its
+   * buffer
+   * 
+   * @param buffer The Trie data
+   */
+  public Trie(IntBuffer buffer) {
+    this(buffer, null, false);
+  }
+  
+  /**
+   * Constructor, for Trie data built without an alphabet
+   * 
+   * @param buffer The Trie data
+   * @param onHeap If <code>true</code>, the Trie data is copied onto the heap
+   */
+  public Trie(IntBuffer buffer, boolean onHeap) {
+    this(buffer, null, onHeap);
+  }
+  
+  /**
+   * Constructor
+   * 
+   * @param buffer The Trie data
+   * @param alphabet The alphabet the Trie data was built with, or
+   *        <code>null</code>
+   * @param onHeap If <code>true</code>, the Trie data is copied onto the heap
+   */
+  public Trie(IntBuffer buffer, Alphabet alphabet, boolean onHeap) {
+    this.buffer = buffer;
+    this.alphabet = alphabet;
+    
+    if (onHeap) {
+      IntBuffer source = buffer.duplicate();
+      source.position(0);
+      data = new int[source.limit()];
+      source.get(data);
+    } else {
+      data = null;
+    }
+    
+    final int size = buffer.limit();
+    codes = (alphabet == null) ? TrieSearcher.IDENTITY_CODES : alphabet.searchCodes(size >> 1);
+    
+    final int b = buffer.get(0);
+    int n = buffer.get(b << 1);
+    rootValue = (n < 0 && b == buffer.get((b << 1) + 1)) ? -n - 1 : -1;
+    
+    for (int c = 0; c < firstStep.length; c++) {
+      int p = b + codes[c];
+      if (((p << 1) + 1) < size && b == buffer.get((p << 1) + 1)) {
+        firstStep[c] = buffer.get(p << 1);
+      } else {
+        firstStep[c] = NONE;
+      }
+    }
+  }
+}
@@ -26,6 +26,8 @@ import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Vector;
 
 /**
@@ -72,6 +74,21 @@ public class TrieBuilder {
    */
   private int size;
   
+  /**
+   * The alphabet mapping characters to transition codes, or
+   * <code>null</code> to use each character's value plus one
+   */
+  private Alphabet alphabet;
+  
+  /**
+   * Orders TrieNodes by code
+   */
+  private static final Comparator<TrieNode> CODE_ORDER = new Comparator<TrieNode>() {
+    public int compare(TrieNode a, TrieNode b) {
+      return a.code - b.code;
+    }
+  };
+  
   /**
    * A Trie node used in constructing the Trie data file
    */
@@ -149,7 +166,11 @@ public class TrieBuilder {
       }
       
       if (cur != prev || siblings.size() == 0) {
-        TrieNode tempNode = new TrieNode(cur, parent.depth + 1, i, 0);
+        int code = (alphabet == null || cur == 0) ? cur : alphabet.getCode((char) (cur - 1));
+        if (code == 0 && cur != 0) {
+          throw new RuntimeException("Fatal: Key character not in alphabet");
+        }
+        TrieNode tempNode = new TrieNode(code, parent.depth + 1, i, 0);
         if (siblings.size() != 0) {
           TrieNode lastSibling = siblings.lastElement();
           lastSibling.right = i;
@@ -166,6 +187,12 @@ public class TrieBuilder {
       lastSibling.right = parent.right;
     }
     
+    // The siblings are in character order; they must be inserted in code
+    // order
+    if (alphabet != null) {
+      Collections.sort(siblings, CODE_ORDER);
+    }
+    
     return siblings;
   }
   
@@ -306,8 +333,23 @@ public class TrieBuilder {
    * @param size The actual number of entries in the key/value arrays
    */
   public TrieBuilder(String keys[], int values[], int size) {
+    this(keys, values, size, null);
+  }
+  
+  /**
+   * Creates a TrieBuilder to build the given data, with transitions coded
+   * through an alphabet
+   * 
+   * @param keys The sorted Trie keys
+   * @param values The values for each key
+   * @param size The actual number of entries in the key/value arrays
+   * @param alphabet The alphabet, which must contain every character of the
+   *        keys, or <code>null</code> to use each character's value plus one
+   */
+  public TrieBuilder(String keys[], int values[], int size, Alphabet alphabet) {
     this.keys = keys;
     this.values = values;
     this.size = size;
+    this.alphabet = alphabet;
   }
 }
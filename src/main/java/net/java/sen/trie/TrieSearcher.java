@@ -26,6 +26,19 @@ import java.nio.IntBuffer;
  * Searches a Trie data file
  */
 public class TrieSearcher {
+  
+  /**
+   * The code of every character in Trie data built without an
+   * {@link Alphabet}: its value plus one
+   */
+  static final int[] IDENTITY_CODES = new int[Character.MAX_VALUE + 1];
+  
+  static {
+    for (int c = 0; c < IDENTITY_CODES.length; c++) {
+      IDENTITY_CODES[c] = c + 1;
+    }
+  }
+  
   /**
    * Searches for Trie keys forming a complete substring of the given
    * sentence, starting at the given position within the sentence
@@ -76,4 +89,155 @@ public class TrieSearcher {
     
     return num;
   }
+  
+  /**
+   * Searches for Trie keys forming a complete substring of the given
+   * sentence, starting at the given position within the sentence, with
+   * transitions coded through the given table
+   * 
+   * @param trieData The Trie data to search
+   * @param codes The transition code of each character
+   * @param iterator The character iterator to read search characters from
+   * @param results An array used to return the values of the found keys
+   * @return The number of results found
+   */
+  static int search(IntBuffer trieData, int[] codes, CharIterator iterator, int results[]) {
+    final int size = trieData.limit();
+    int b = trieData.get(0 << 1);
+    int num = 0;
+    int n;
+    int p;
+    
+    while (true) {
+      n = trieData.get(b << 1);
+      if (n < 0 && b == trieData.get((b << 1) + 1)) {
+        // Will throw ArrayIndexOutOfBoundsException if results[] is too small
+        results[num] = -n - 1;
+        num++;
+      }
+      
+      if (!iterator.hasNext()) {
+        return num;
+      }
+      
+      p = b + codes[iterator.next()];
+      
+      if (((p << 1) + 1) >= size || b != trieData.get((p << 1) + 1)) {
+        return num;
+      }
+      b = trieData.get(p << 1);
+    }
+  }
+  
+  /**
+   * Searches for Trie keys forming a complete substring of the given
+   * characters, starting at the given position
+   * 
+   * @param trieData The Trie data to search
+   * @param text The characters to search
+   * @param from The position of the first character to search
+   * @param limit The position after the last character that may be read
+   * @param results An array used to return the values of the found keys
+   * @return The number of results found
+   * 
+   * @throws ArrayIndexOutOfBoundsException if results[] is too small
+   */
+  public static int commonPrefixSearch(IntBuffer trieData, char[] text, int from, int limit, int results[]) {
+    return search(trieData, IDENTITY_CODES, trieData.get(0 << 1), text, from, limit, results, 0);
+  }
+  
+  /**
+   * Searches for Trie keys forming a complete substring of the given
+   * characters, starting at the given position
+   * 
+   * @param trieData The Trie data to search, copied to the heap
+   * @param text The characters to search
+   * @param from The position of the first character to search
+   * @param limit The position after the last character that may be read
+   * @param results An array used to return the values of the found keys
+   * @return The number of results found
+   * 
+   * @throws ArrayIndexOutOfBoundsException if results[] is too small
+   */
+  public static int commonPrefixSearch(int[] trieData, char[] text, int from, int limit, int results[]) {
+    return search(trieData, IDENTITY_CODES, trieData[0 << 1], text, from, limit, results, 0);
+  }
+  
+  /**
+   * Continues a search from the node with the given base
+   * 
+   * @param trieData The Trie data to search
+   * @param codes The transition code of each character
+   * @param b The base of the node reached so far
+   * @param text The characters to search
+   * @param from The position of the next character to search
+   * @param limit The position after the last character that may be read
+   * @param results An array used to return the values of the found keys
+   * @param num The number of results already found
+   * @return The number of results found
+   */
+  static int search(IntBuffer trieData, int[] codes, int b, char[] text, int from, int limit, int results[], int num) {
+    final int size = trieData.limit();
+    int n;
+    int p;
+    
+    for (int i = from; ; i++) {
+      n = trieData.get(b << 1);
+      if (n < 0 && b == trieData.get((b << 1) + 1)) {
+        // Will throw ArrayIndexOutOfBoundsException if results[] is too small
+        results[num] = -n - 1;
+        num++;
+      }
+      
+      if (i >= limit) {
+        return num;
+      }
+      
+      p = b + codes[text[i]];
+      
+      if (((p << 1) + 1) >= size || b != trieData.get((p << 1) + 1)) {
+        return num;
+      }
+      b = trieData.get(p << 1);
+    }
+  }
+  
+  /**
+   * Continues a search from the node with the given base
+   * 
+   * @param trieData The Trie data to search, copied to the heap
+   * @param codes The transition code of each character
+   * @param b The base of the node reached so far
+   * @param text The characters to search
+   * @param from The position of the next character to search
+   * @param limit The position after the last character that may be read
+   * @param results An array used to return the values of the found keys
+   * @param num The number of results already found
+   * @return The number of results found
+   */
+  static int search(int[] trieData, int[] codes, int b, char[] text, int from, int limit, int results[], int num) {
+    final int size = trieData.length;
+    int n;
+    int p;
+    
+    for (int i = from; ; i++) {
+      n = trieData[b << 1];
+      if (n < 0 && b == trieData[(b << 1) + 1]) {
+        // Will throw ArrayIndexOutOfBoundsException if results[] is too small
+        results[num] = -n - 1;
+        num++;
+      }
+      
+      if (i >= limit) {
+        return num;
+      }
+      
+      p = b + codes[text[i]];
+      
+      if (((p << 1) + 1) >= size || b != trieData[(p << 1) + 1]) {
+        return num;
+      }
+      b = trieData[p << 1];
+    }
+  }
 }
@@ -0,0 +1,78 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.util;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * A CRC-32C (Castagnoli) checksum. <code>java.util.zip.CRC32C</code> is
+ * only available from Java 9, so this is a plain table driven version
+ */
+public final class CRC32C implements Checksum {
+  
+  /** Reflected Castagnoli polynomial */
+  private static final int POLYNOMIAL = 0x82F63B78;
+  
+  private static final int[] TABLE = new int[256];
+  
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc = i;
+      for (int j = 0; j < 8; j++) {
+        crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+      }
+      TABLE[i] = crc;
+    }
+  }
+  
+  private int crc = 0xFFFFFFFF;
+  
+  public void update(int b) {
+    crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+  }
+  
+  public void update(byte[] b, int off, int len) {
+    int crc = this.crc;
+    for (int i = off; i < off + len; i++) {
+      crc = (crc >>> 8) ^ TABLE[(crc ^ b[i]) & 0xFF];
+    }
+    this.crc = crc;
+  }
+  
+  /**
+   * Updates the checksum with the remaining bytes of the given buffer,
+   * without moving its position
+   *
+   * @param buffer The buffer to read from
+   */
+  public void update(ByteBuffer buffer) {
+    int crc = this.crc;
+    for (int i = buffer.position(); i < buffer.limit(); i++) {
+      crc = (crc >>> 8) ^ TABLE[(crc ^ buffer.get(i)) & 0xFF];
+    }
+    this.crc = crc;
+  }
+  
+  public long getValue() {
+    return (~crc) & 0xFFFFFFFFL;
+  }
+  
+  public void reset() {
+    crc = 0xFFFFFFFF;
+  }
+}
@@ -139,7 +139,7 @@ public class GosenAnalyzer extends StopwordAnalyzerBase {
     Tokenizer tokenizer = new GosenTokenizer(null, dictionaryDir, tokenizeUnknownKatakana);
     TokenStream stream = new GosenWidthFilter(tokenizer);
     stream = new GosenPunctuationFilter(stream);
-    stream = new GosenPartOfSpeechStopFilter(stream, stoptags);
+    stream = new GosenPartOfSpeechStopFilter(stream, new PartOfSpeechSet(stoptags));
     stream = new StopFilter(stream, stopwords);
     if (!stemExclusionSet.isEmpty()) {
       stream = new SetKeywordMarkerFilter(stream, stemExclusionSet);
@@ -14,7 +14,6 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.apache.lucene.analysis.gosen;
 
 import com.ibm.icu.text.Normalizer2;
@@ -23,9 +22,21 @@ import org.apache.lucene.analysis.util.RollingCharBuffer;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
+import java.nio.CharBuffer;
 
 
+/**
+ * Normalizes the input with a {@link Normalizer2}, replacing the old-style
+ * voiced sound marks with their combining forms first.
+ * <p>
+ * The input is normalized incrementally, a chunk of at least
+ * {@link #MAX_BUFFER_SIZE} characters at a time, each chunk ending just
+ * before a character that has a normalization boundary before it, so that
+ * the input is never buffered whole. Within a chunk, spans that are already
+ * normalized are copied through, and the rest is normalized one segment
+ * between boundaries at a time, with offset corrections recorded wherever a
+ * segment changes length.
+ */
 public class GosenNormalizerCharFilter extends BaseCharFilter {
 
   private static final int VOICED_SOUND_MARK_CONVERT_OFFSET = 2;
@@ -41,7 +52,30 @@ public class GosenNormalizerCharFilter extends BaseCharFilter {
 
   private final Normalizer2 normalizer;
   private final RollingCharBuffer buffer = new RollingCharBuffer();
-  private Reader normalizedInput;
+
+  /** The current chunk of input, with special characters replaced */
+  private final StringBuilder chunk = new StringBuilder();
+
+  /** The normalized form of a segment of the current chunk */
+  private final StringBuilder segment = new StringBuilder();
+
+  /** Normalized output not yet read */
+  private final StringBuilder normalized = new StringBuilder();
+
+  /** The position of the next character to read from <code>normalized</code> */
+  private int normalizedPos;
+
+  /** The position in the input of the start of the next chunk */
+  private int inputPos;
+
+  /** The number of characters of output produced so far */
+  private int outputCount;
+
+  /** The current difference between input and output offsets */
+  private int cumulativeDiff;
+
+  /** Whether the end of the input has been reached */
+  private boolean inputEnded;
 
   /**
    * Constructor that takes {@link Reader}
@@ -65,33 +99,125 @@ public class GosenNormalizerCharFilter extends BaseCharFilter {
     buffer.reset(input);
   }
 
-  private static char[] replaceSpecialCharacters(char[] inBuffer, int len) {
+  private static char replaceSpecialCharacter(char c) {
     //TODO: Prevent NFKC normalization if the input is Degree Celsius and Fahrenheit
-    char[] outBuffer = new char[MAX_BUFFER_SIZE];
-    for (int i = 0; i < len; i++) {
-      char c = inBuffer[i];
-      if (c == specialCaseChars[0] || c == specialCaseChars[1]) {
-        // Replace the old-style voiced sound mark with new one
-        outBuffer[i] = (char) (c - VOICED_SOUND_MARK_CONVERT_OFFSET);
-      } else {
-        outBuffer[i] = inBuffer[i];
-      }
+    if (c == specialCaseChars[0] || c == specialCaseChars[1]) {
+      // Replace the old-style voiced sound mark with new one
+      return (char) (c - VOICED_SOUND_MARK_CONVERT_OFFSET);
     }
-    return outBuffer;
+    return c;
   }
 
   @Override
   public int read(char[] cbuf, int off, int len) throws IOException {
-    // Buffer all input on the first call.
-    if (normalizedInput == null) {
-      StringBuilder sbBuffer = new StringBuilder();
-      char[] temp = new char[MAX_BUFFER_SIZE];
-      for (int cnt = input.read(temp); cnt > 0; cnt = input.read(temp)) {
-        sbBuffer.append(replaceSpecialCharacters(temp, cnt), 0, cnt);
+    while (normalizedPos == normalized.length()) {
+      if (inputEnded) {
+        return -1;
+      }
+      normalized.setLength(0);
+      normalizedPos = 0;
+      normalizeChunk(readChunk());
+    }
+
+    int count = Math.min(len, normalized.length() - normalizedPos);
+    normalized.getChars(normalizedPos, normalizedPos + count, cbuf, off);
+    normalizedPos += count;
+    return count;
+  }
+
+  /**
+   * Reads the next chunk of input into <code>chunk</code>. The chunk ends
+   * before the first character after {@link #MAX_BUFFER_SIZE} characters that
+   * has a normalization boundary before it, or at the end of the input
+   *
+   * @return The position in the input of the start of the chunk
+   * @throws IOException
+   */
+  private int readChunk() throws IOException {
+    int start = inputPos;
+    int pos = start;
+    chunk.setLength(0);
+    for (int c = buffer.get(pos); ; c = buffer.get(pos)) {
+      if (c == -1) {
+        inputEnded = true;
+        break;
+      }
+      if (pos - start >= MAX_BUFFER_SIZE && hasBoundaryBefore(pos, replaceSpecialCharacter((char) c))) {
+        break;
+      }
+      chunk.append(replaceSpecialCharacter((char) c));
+      pos++;
+    }
+    buffer.freeBefore(pos);
+    inputPos = pos;
+    return start;
+  }
+
+  /**
+   * Determines whether the input has a normalization boundary before a
+   * position
+   *
+   * @param pos The position
+   * @param c The (replaced) character at the position
+   * @return <code>true</code> if there is a boundary before the position
+   * @throws IOException
+   */
+  private boolean hasBoundaryBefore(int pos, char c) throws IOException {
+    if (Character.isLowSurrogate(c)) {
+      return false;
+    }
+    int codePoint = c;
+    if (Character.isHighSurrogate(c)) {
+      int low = buffer.get(pos + 1);
+      if (low != -1 && Character.isLowSurrogate((char) low)) {
+        codePoint = Character.toCodePoint(c, (char) low);
+      }
+    }
+    return normalizer.hasBoundaryBefore(codePoint);
+  }
+
+  /**
+   * Normalizes <code>chunk</code> onto <code>normalized</code>, recording
+   * offset corrections
+   *
+   * @param chunkStart The position in the input of the start of the chunk
+   */
+  private void normalizeChunk(int chunkStart) {
+    int length = chunk.length();
+    int pos = 0;
+    while (pos < length) {
+      // Copy through the span that is already normalized, which ends at a
+      // boundary
+      int yesEnd = pos + normalizer.spanQuickCheckYes(CharBuffer.wrap(chunk, pos, length));
+      normalized.append(chunk, pos, yesEnd);
+      outputCount += yesEnd - pos;
+      if (yesEnd == length) {
+        break;
+      }
+
+      // Normalize the segment up to the next boundary
+      int end = yesEnd + Character.charCount(chunk.codePointAt(yesEnd));
+      while (end < length && !normalizer.hasBoundaryBefore(chunk.codePointAt(end))) {
+        end += Character.charCount(chunk.codePointAt(end));
+      }
+      normalizer.normalize(CharBuffer.wrap(chunk, yesEnd, end), segment);
+      normalized.append(segment);
+
+      // Offsets beyond the length of the input in an expanded segment all
+      // map to the end of the segment's input
+      int inputLength = end - yesEnd;
+      for (int i = inputLength + 1; i <= segment.length(); i++) {
+        addOffCorrectMap(outputCount + i, --cumulativeDiff);
+      }
+      outputCount += segment.length();
+
+      int diff = (chunkStart + end) - outputCount;
+      if (diff != cumulativeDiff) {
+        cumulativeDiff = diff;
+        addOffCorrectMap(outputCount, cumulativeDiff);
       }
-      normalizedInput = new StringReader(normalizer.normalize(sbBuffer.toString()));
+      pos = end;
     }
-    return normalizedInput.read(cbuf, off, len);
   }
 
   @Override
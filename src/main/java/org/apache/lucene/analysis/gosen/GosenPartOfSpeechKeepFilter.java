@@ -30,17 +30,20 @@ import org.apache.lucene.analysis.gosen.tokenAttributes.PartOfSpeechAttribute;
  * This is the inverse of {@link GosenPartOfSpeechStopFilter}.
  */
 public final class GosenPartOfSpeechKeepFilter extends FilteringTokenFilter {
-  private final Set<String> keepTags;
+  private final PartOfSpeechSet keepTags;
   private final PartOfSpeechAttribute posAtt = addAttribute(PartOfSpeechAttribute.class);
 
   public GosenPartOfSpeechKeepFilter(TokenStream input, Set<String> keepTags) {
+    this(input, new PartOfSpeechSet(keepTags));
+  }
+
+  public GosenPartOfSpeechKeepFilter(TokenStream input, PartOfSpeechSet keepTags) {
     super(input);
     this.keepTags = keepTags;
   }
 
   @Override
   protected boolean accept() throws IOException {
-    final String pos = posAtt.getPartOfSpeech();
-    return pos != null && keepTags.contains(pos);
+    return keepTags.contains(posAtt);
   }
 }
@@ -28,17 +28,20 @@ import org.apache.lucene.analysis.gosen.tokenAttributes.PartOfSpeechAttribute;
  * Removes tokens that match a set of POS tags.
  */
 public final class GosenPartOfSpeechStopFilter extends FilteringTokenFilter {
-  private final Set<String> stopTags;
+  private final PartOfSpeechSet stopTags;
   private final PartOfSpeechAttribute posAtt = addAttribute(PartOfSpeechAttribute.class);
 
   public GosenPartOfSpeechStopFilter(TokenStream input, Set<String> stopTags) {
+    this(input, new PartOfSpeechSet(stopTags));
+  }
+
+  public GosenPartOfSpeechStopFilter(TokenStream input, PartOfSpeechSet stopTags) {
     super(input);
     this.stopTags = stopTags;
   }
 
   @Override
   protected boolean accept() throws IOException {
-    final String pos = posAtt.getPartOfSpeech();
-    return pos == null || !stopTags.contains(pos);
+    return !stopTags.contains(posAtt);
   }
 }
@@ -18,8 +18,12 @@
 package org.apache.lucene.analysis.gosen;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import net.java.sen.SenFactory;
+import net.java.sen.SentenceCache;
 import net.java.sen.StringTagger;
 import net.java.sen.dictionary.Morpheme;
 import net.java.sen.dictionary.Token;
@@ -35,6 +39,8 @@ import org.apache.lucene.analysis.gosen.tokenAttributes.ReadingsAttribute;
 import org.apache.lucene.analysis.gosen.tokenAttributes.SentenceStartAttribute;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.util.AttributeFactory;
 
 /**
@@ -51,13 +57,33 @@ import org.apache.lucene.util.AttributeFactory;
  *   <li>{@link CostAttribute}
  *   <li>{@link SentenceStartAttribute}
  * </ul>
+ * <p>
+ * When created with <code>nBest</code> greater than 1, the union of the
+ * tokens of the <code>nBest</code> most likely segmentations of each sentence
+ * is emitted as a token graph, using {@link PositionIncrementAttribute} and
+ * {@link PositionLengthAttribute}. This is intended for query time, to match
+ * documents segmented differently at the cost of some extra analysis; the
+ * graph should be consumed by a graph-aware query parser, not indexed.
+ * <p>
+ * When created with a <code>parallelThreshold</code>, texts of at least that
+ * many characters have their sentences analysed concurrently on an
+ * {@link Executor}, for very large fields. The tokens and their attributes
+ * are the same as when the sentences are analysed in turn.
+ * <p>
+ * With a {@link SentenceCache}, set by {@link #setSentenceCache(SentenceCache)},
+ * recurring sentences are not analysed again (except for <code>nBest</code>
+ * greater than 1).
  */
 public final class GosenTokenizer extends Tokenizer {
   private final StreamTagger2 tagger;
+  // identifies the tagger configuration in a sentence cache
+  private final Object cacheConfiguration;
 
   // Term attributes
   private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
   private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+  private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+  private final PositionLengthAttribute posLengthAtt = addAttribute(PositionLengthAttribute.class);
   
   // morphological attributes
   private final BasicFormAttribute basicFormAtt = addAttribute(BasicFormAttribute.class);
@@ -78,6 +104,12 @@ public final class GosenTokenizer extends Tokenizer {
   // Default value for UNKNOWN Katakana tokenization
   public static final boolean DEFAULT_UNKNOWN_KATAKANA_TOKENIZATION = false;
 
+  // Default number of segmentations emitted per sentence
+  public static final int DEFAULT_NBEST = 1;
+
+  // Default size of text from which sentences are analysed in parallel; 0 never does
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 0;
+
 
   /**
    * Constructors
@@ -95,12 +127,82 @@ public final class GosenTokenizer extends Tokenizer {
    * @param tokenizeUnknownKatakana determine whether segmenting unknown katakana or not
    */
   public GosenTokenizer(AttributeFactory factory, StreamFilter filter, String dictionaryDir, boolean tokenizeUnknownKatakana) {
+    this(factory, filter, dictionaryDir, tokenizeUnknownKatakana, DEFAULT_NBEST);
+  }
+
+  /**
+   * Create A new GosenTokenizer
+   *
+   * @param factory the AttributeFactory to use
+   * @param filter stream filter
+   * @param dictionaryDir lucene-gosen dictionary directory
+   * @param tokenizeUnknownKatakana determine whether segmenting unknown katakana or not
+   * @param nBest number of most likely segmentations of each sentence to emit as a token graph
+   */
+  public GosenTokenizer(AttributeFactory factory, StreamFilter filter, String dictionaryDir, boolean tokenizeUnknownKatakana, int nBest) {
     super(factory);
+    cacheConfiguration = Arrays.asList(dictionaryDir, filter, tokenizeUnknownKatakana);
     StringTagger stringTagger = SenFactory.getStringTagger(dictionaryDir, tokenizeUnknownKatakana);
     if (filter != null) {
       stringTagger.addFilter(filter);
     }
-    tagger = new StreamTagger2(stringTagger, this.input);
+    tagger = new StreamTagger2(stringTagger, this.input, nBest);
+  }
+
+  /**
+   * Create A new GosenTokenizer which analyses the sentences of large texts
+   * in parallel
+   *
+   * @param factory the AttributeFactory to use
+   * @param filter stream filter, shared by the taggers of all threads, so it
+   *        must not keep state from preProcess to postProcess as
+   *        {@link net.java.sen.filter.stream.CommentFilter} does
+   * @param dictionaryDir lucene-gosen dictionary directory
+   * @param tokenizeUnknownKatakana determine whether segmenting unknown katakana or not
+   * @param parallelThreshold number of characters of text from which its sentences are analysed in parallel
+   * @param executor executor on which sentences are analysed, or null for the common ForkJoinPool
+   */
+  public GosenTokenizer(AttributeFactory factory, StreamFilter filter, String dictionaryDir,
+      boolean tokenizeUnknownKatakana, int parallelThreshold, Executor executor) {
+    super(factory);
+    cacheConfiguration = Arrays.asList(dictionaryDir, filter, tokenizeUnknownKatakana);
+    TaggerFactory taggers = new TaggerFactory(filter, dictionaryDir, tokenizeUnknownKatakana);
+    tagger = new StreamTagger2(taggers.call(), this.input, parallelThreshold, executor, taggers);
+  }
+
+  /**
+   * Creates the StringTaggers of the threads analysing sentences in parallel
+   */
+  private static final class TaggerFactory implements Callable<StringTagger> {
+    private final StreamFilter filter;
+    private final String dictionaryDir;
+    private final boolean tokenizeUnknownKatakana;
+
+    TaggerFactory(StreamFilter filter, String dictionaryDir, boolean tokenizeUnknownKatakana) {
+      this.filter = filter;
+      this.dictionaryDir = dictionaryDir;
+      this.tokenizeUnknownKatakana = tokenizeUnknownKatakana;
+    }
+
+    public StringTagger call() {
+      StringTagger stringTagger = SenFactory.getStringTagger(dictionaryDir, tokenizeUnknownKatakana);
+      if (filter != null) {
+        stringTagger.addFilter(filter);
+      }
+      return stringTagger;
+    }
+  }
+
+  /**
+   * Sets a cache of analysed sentences, which may be shared with other
+   * GosenTokenizers, for example through {@link SenFactory#getSentenceCache}.
+   * Entries are only shared between tokenizers of the same dictionary
+   * directory, unknown katakana tokenization and filter instance
+   *
+   * @param cache the cache, or null to analyse every sentence
+   */
+  public void setSentenceCache(SentenceCache cache) {
+    tagger.setSentenceCache(cache, cacheConfiguration);
   }
 
   @Override
@@ -112,8 +214,14 @@ public final class GosenTokenizer extends Tokenizer {
       clearAttributes();
       final Morpheme m = token.getMorpheme();
     
-      // note, unlike the previous implementation, we set the surface form
-      termAtt.setEmpty().append(token.getSurface());
+      // note, unlike the previous implementation, we set the surface form,
+      // copied straight from the tagger's buffer when the token refers to it
+      final char[] surfaceBuffer = token.getSurfaceBuffer();
+      if (surfaceBuffer != null) {
+        termAtt.copyBuffer(surfaceBuffer, token.getSurfaceOffset(), token.getSurfaceLength());
+      } else {
+        termAtt.setEmpty().append(token.getSurface());
+      }
       final int cost = token.getCost();
       
       if (token.isSentenceStart()) {
@@ -121,7 +229,14 @@ public final class GosenTokenizer extends Tokenizer {
         sentenceAtt.setSentenceStart(true);
       }
       
-      costAtt.setCost(cost - accumulatedCost);
+      if (tagger.getNBest() > 1) {
+        // tokens of a graph are not in path order, so the cost is taken from the tagger
+        costAtt.setCost(tagger.getWordCost());
+        posIncAtt.setPositionIncrement(tagger.getPositionIncrement());
+        posLengthAtt.setPositionLength(tagger.getPositionLength());
+      } else {
+        costAtt.setCost(cost - accumulatedCost);
+      }
       accumulatedCost = cost;
       basicFormAtt.setMorpheme(m);
       conjugationAtt.setMorpheme(m);
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.analysis.gosen;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.java.sen.dictionary.Dictionary;
+
+import org.apache.lucene.analysis.gosen.tokenAttributes.PartOfSpeechAttribute;
+
+/**
+ * A set of POS tags, for {@link GosenPartOfSpeechStopFilter} and
+ * {@link GosenPartOfSpeechKeepFilter}. A tag ending with <code>*</code> is a
+ * prefix pattern matching every tag that begins with the text before the
+ * <code>*</code>: <code>名詞*</code> matches <code>名詞</code> and all its
+ * subdivisions, and <code>名詞-*</code> only its subdivisions.
+ * <p>
+ * The tags are compiled into a {@link BitSet} over the part-of-speech IDs of
+ * the {@link Dictionary} of the tokens to be filtered, so that testing a token
+ * is a single bit test. The dictionary is that of the first token tested
+ * which has one, unless given in advance. Tokens without a part-of-speech ID
+ * in that dictionary, such as unknown words, are matched by their tag.
+ */
+public final class PartOfSpeechSet {
+  
+  /**
+   * The tags compiled over the part-of-speech IDs of a dictionary, or null
+   * until a dictionary is known
+   */
+  private volatile CompiledTags compiled;
+  
+  /** The tags that match exactly */
+  private final Set<String> tags = new HashSet<String>();
+  
+  /** The prefixes of the prefix patterns */
+  private final List<String> prefixes = new ArrayList<String>();
+  
+  /**
+   * Tests whether a tag is in the set, comparing strings
+   * 
+   * @param partOfSpeech The tag
+   * @return <code>true</code> if the tag matches
+   */
+  public boolean contains(String partOfSpeech) {
+    if (tags.contains(partOfSpeech)) {
+      return true;
+    }
+    for (String prefix : prefixes) {
+      if (partOfSpeech.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Tests whether the tag of the current token is in the set. When the
+   * token has a part-of-speech ID in the {@link Dictionary} this set is
+   * compiled over, only its bit is tested
+   * 
+   * @param posAtt The part-of-speech attribute of the token
+   * @return <code>true</code> if the token's tag matches, <code>false</code>
+   *         if it does not or the token has no tag
+   */
+  public boolean contains(PartOfSpeechAttribute posAtt) {
+    final Dictionary dictionary = posAtt.getDictionary();
+    if (dictionary != null) {
+      CompiledTags compiled = this.compiled;
+      if (compiled == null) {
+        // racing threads compile the same bits; either copy will do
+        compiled = new CompiledTags(dictionary);
+        this.compiled = compiled;
+      }
+      final int id = posAtt.getPartOfSpeechId();
+      if (compiled.dictionary == dictionary && id >= 0) {
+        return compiled.ids.get(id);
+      }
+    }
+    final String partOfSpeech = posAtt.getPartOfSpeech();
+    if (partOfSpeech == null) {
+      return false;
+    }
+    return contains(partOfSpeech);
+  }
+  
+  /**
+   * Creates a set compiled over the part-of-speech IDs of the dictionary of
+   * the first token tested
+   * 
+   * @param patterns The tags and prefix patterns
+   */
+  public PartOfSpeechSet(Collection<String> patterns) {
+    this(patterns, null);
+  }
+  
+  /**
+   * Creates a set compiled over the part-of-speech IDs of a dictionary
+   * 
+   * @param patterns The tags and prefix patterns
+   * @param dictionary The dictionary of the tokens to be tested, or
+   *        <code>null</code> to use that of the first token tested
+   */
+  public PartOfSpeechSet(Collection<String> patterns, Dictionary dictionary) {
+    for (String pattern : patterns) {
+      if (pattern.endsWith("*")) {
+        prefixes.add(pattern.substring(0, pattern.length() - 1));
+      } else {
+        tags.add(pattern);
+      }
+    }
+    
+    if (dictionary != null) {
+      compiled = new CompiledTags(dictionary);
+    }
+  }
+  
+  /**
+   * The tags of a set compiled over the part-of-speech IDs of a dictionary
+   */
+  private final class CompiledTags {
+    
+    /** The dictionary whose part-of-speech IDs {@link #ids} are over */
+    final Dictionary dictionary;
+    
+    /** The IDs of the dictionary's parts of speech that match */
+    final BitSet ids;
+    
+    /**
+     * @param dictionary The dictionary to compile the tags over
+     */
+    CompiledTags(Dictionary dictionary) {
+      this.dictionary = dictionary;
+      ids = new BitSet(dictionary.getPartOfSpeechCount());
+      for (int id = 0; id < dictionary.getPartOfSpeechCount(); id++) {
+        if (contains(dictionary.getPartOfSpeech(id))) {
+          ids.set(id);
+        }
+      }
+    }
+  }
+}
@@ -22,10 +22,21 @@ import java.io.Reader;
 
 import java.text.BreakIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import net.java.sen.SentenceCache;
 import net.java.sen.StringTagger;
+import net.java.sen.dictionary.Morpheme;
 import net.java.sen.dictionary.Token;
 
 /**
@@ -35,7 +46,9 @@ import net.java.sen.dictionary.Token;
  */
 public final class StreamTagger2 {
   private static final int IOBUFFER = 4096;
-  private final char buffer[] = new char[IOBUFFER];
+  /** the smallest buffer used when sentences are analysed in parallel */
+  private static final int PARALLEL_IOBUFFER = 65536;
+  private final char buffer[];
   /** true length of text in the buffer */
   private int length = 0; 
   /** length in buffer that can be evaluated safely, up to a safe end point */
@@ -49,13 +62,115 @@ public final class StreamTagger2 {
   private final CharArrayIterator iterator = new CharArrayIterator();
   private List<Token> tokens = new ArrayList<Token>();
   private int index = 0;
+  
+  /** number of most likely paths per sentence whose union is returned; 1 returns the best path only */
+  private final int nBest;
+  /** when nBest > 1, the position increment, position length and cost of each token */
+  private int positionIncrements[] = new int[0];
+  private int positionLengths[] = new int[0];
+  private int costs[] = new int[0];
+  /** when nBest > 1, the graph position of the first node of the current sentence */
+  private int sentencePosition = 0;
+  /** when nBest > 1, the graph position of the last token */
+  private int lastPosition = -1;
+  
+  /** the executor on which sentences are analysed in parallel, or null to analyse them in turn */
+  private final Executor executor;
+  /** the usable length of text above which sentences are analysed in parallel */
+  private final int parallelThreshold;
+  /** creates the taggers of the sentence groups after the first */
+  private final Callable<StringTagger> workerTaggers;
+  /** the taggers of the sentence groups after the first, created as needed */
+  private final List<StringTagger> workers = new ArrayList<StringTagger>();
+  
+  /** the cache of analysed sentences, or null */
+  private SentenceCache sentenceCache;
+  /** identifies the configuration of the taggers in the cache */
+  private Object cacheConfiguration;
 
   /**
    * Construct a new StreamTagger2 that breaks text into words from the given Reader.
    */
   public StreamTagger2(StringTagger tagger, Reader input) {
+    this(tagger, input, 1);
+  }
+  
+  /**
+   * Construct a new StreamTagger2 that breaks text into words from the given
+   * Reader, returning for each sentence the union of the tokens of its
+   * <code>nBest</code> most likely paths as a token graph.
+   * 
+   * @see #getPositionIncrement()
+   * @see #getPositionLength()
+   */
+  public StreamTagger2(StringTagger tagger, Reader input, int nBest) {
+    if (nBest < 1) {
+      throw new IllegalArgumentException("nBest must be at least 1: " + nBest);
+    }
+    this.tagger = tagger;
+    this.input = input;
+    this.nBest = nBest;
+    this.buffer = new char[IOBUFFER];
+    this.executor = null;
+    this.parallelThreshold = 0;
+    this.workerTaggers = null;
+  }
+  
+  /**
+   * Construct a new StreamTagger2 that breaks text into words from the given
+   * Reader, analysing the sentences of large texts in parallel.
+   * <p>
+   * Text is buffered in chunks of at least 64k characters. When a chunk holds
+   * at least <code>parallelThreshold</code> characters, its sentences are
+   * split into contiguous groups of about the same length, one for each
+   * thread of the executor, which are analysed concurrently; the first group
+   * is analysed on the calling thread with <code>tagger</code>, and each other
+   * group with a tagger of its own, created by <code>workerTaggers</code>. The
+   * tokens are returned in order, as if the sentences had been analysed in
+   * turn. Smaller texts are analysed in turn. As ever, a chunk ends at a
+   * line break, which is then a sentence break, so text with line breaks
+   * inside sentences may be split into sentences differently with the larger
+   * chunks.
+   * 
+   * @param tagger the tagger used on the calling thread
+   * @param input the text to analyse
+   * @param parallelThreshold the number of buffered characters from which
+   *        sentences are analysed in parallel
+   * @param executor the executor on which sentence groups are analysed; if
+   *        <code>null</code>, the common {@link ForkJoinPool} is used
+   * @param workerTaggers creates the additional taggers, which should be
+   *        configured like <code>tagger</code>
+   */
+  public StreamTagger2(StringTagger tagger, Reader input, int parallelThreshold, Executor executor,
+      Callable<StringTagger> workerTaggers) {
+    if (parallelThreshold < 1) {
+      throw new IllegalArgumentException("parallelThreshold must be at least 1: " + parallelThreshold);
+    }
     this.tagger = tagger;
     this.input = input;
+    this.nBest = 1;
+    this.buffer = new char[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(PARALLEL_IOBUFFER, 2L * parallelThreshold))];
+    this.executor = (executor != null) ? executor : ForkJoinPool.commonPool();
+    this.parallelThreshold = parallelThreshold;
+    this.workerTaggers = workerTaggers;
+  }
+
+  /**
+   * Sets a cache of analysed sentences, used when nBest is 1. A sentence found
+   * in the cache is not analysed again; its tokens are copied from the cache,
+   * with their offsets moved to the sentence's place in the text
+   * 
+   * @param cache the cache, or null to analyse every sentence
+   * @param configuration identifies everything besides a sentence's text
+   *        which determines its tokens, such as the dictionary and filters
+   *        of the tagger
+   */
+  public void setSentenceCache(SentenceCache cache, Object configuration) {
+    if (cache != null && configuration == null) {
+      throw new IllegalArgumentException("A cache configuration must be given");
+    }
+    this.sentenceCache = cache;
+    this.cacheConfiguration = configuration;
   }
 
   public Token next() throws IOException {
@@ -75,8 +190,43 @@ public final class StreamTagger2 {
     iterator.setText(buffer, 0, 0);
     breaker.setText(iterator);
     length = usableLength = offset = index = 0;
+    sentencePosition = 0;
+    lastPosition = -1;
     tokens.clear();
   }
+  
+  /**
+   * @return the number of most likely paths returned for each sentence
+   */
+  public int getNBest() {
+    return nBest;
+  }
+  
+  /**
+   * Returns the position increment of the token last returned by
+   * {@link #next()}. This is always 1 unless nBest is greater than 1.
+   */
+  public int getPositionIncrement() {
+    return (nBest > 1) ? positionIncrements[index - 1] : 1;
+  }
+  
+  /**
+   * Returns the number of positions spanned by the token last returned by
+   * {@link #next()}. This is always 1 unless nBest is greater than 1.
+   */
+  public int getPositionLength() {
+    return (nBest > 1) ? positionLengths[index - 1] : 1;
+  }
+  
+  /**
+   * Returns the cost of the token last returned by {@link #next()} on its
+   * own, rather than cumulatively as in {@link Token#getCost()}. When nBest
+   * is greater than 1, this is the cost on the most likely path containing
+   * the token. Only valid when nBest is greater than 1.
+   */
+  public int getWordCost() {
+    return costs[index - 1];
+  }
 
   public void reset(Reader input) throws IOException {
     this.input = input;
@@ -91,7 +241,8 @@ public final class StreamTagger2 {
    * This tokenizes text based upon the longest matching rule, and because of 
    * this, isn't friendly to a Reader.
    * 
-   * Text is read from the input stream in 4kB chunks. Within a 4kB chunk of
+   * Text is read from the input stream in 4kB chunks (larger when sentences
+   * are analysed in parallel). Within a 4kB chunk of
    * text, the last unambiguous break point is found. Any remaining characters 
    * represent possible partial sentences, so are appended to the front of the 
    * next chunk.
@@ -178,6 +329,16 @@ public final class StreamTagger2 {
    * exhausted.
    */
   private boolean incrementTokenBuffer() throws IOException {
+    // a large chunk is analysed in parallel as a whole, as soon as it is read
+    if (executor != null && usableLength >= parallelThreshold && breaker.current() == 0) {
+      analyzeParallel();
+      if (!tokens.isEmpty()) {
+        index = 0;
+        return true;
+      }
+      return false;
+    }
+    
     while (true) {
       int start = breaker.current();
 
@@ -190,8 +351,13 @@ public final class StreamTagger2 {
       if (end == BreakIterator.DONE)
         return false; // BreakIterator exhausted
 
-      String text = new String(buffer, start, end - start);
-      tokens = tagger.analyze(text, tokens);
+      // the sentence is analysed in place; its tokens refer to their surfaces
+      // in the buffer, which is not refilled until they have all been returned
+      if (nBest > 1) {
+        analyzeGraph(start, end);
+      } else {
+        tokens = analyzeSentence(tagger, start, end - start, tokens);
+      }
 
       if (tokens != null && !tokens.isEmpty()) {
         for (int i = 0; i < tokens.size(); i++) {
@@ -204,4 +370,253 @@ public final class StreamTagger2 {
       }
     }
   }
+
+  /*
+   * Analyzes every sentence of the buffer, in contiguous groups of about the
+   * same length which are analysed concurrently, leaving the BreakIterator
+   * exhausted. The tokens are those of analysing the sentences in turn.
+   */
+  private void analyzeParallel() throws IOException {
+    // find the sentences
+    int bounds[] = new int[64];
+    int sentences = 0;
+    bounds[0] = breaker.current();
+    for (int end = breaker.next(); end != BreakIterator.DONE; end = breaker.next()) {
+      if (++sentences == bounds.length) {
+        bounds = Arrays.copyOf(bounds, bounds.length << 1);
+      }
+      bounds[sentences] = end;
+    }
+    
+    int parallelism;
+    if (executor instanceof ForkJoinPool) {
+      parallelism = ((ForkJoinPool) executor).getParallelism();
+    } else if (executor instanceof ThreadPoolExecutor) {
+      parallelism = ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+    } else {
+      parallelism = Runtime.getRuntime().availableProcessors();
+    }
+    int groups = Math.max(1, Math.min(parallelism, sentences));
+    
+    // split the sentences into groups, group g being sentences
+    // firstSentences[g] until firstSentences[g + 1]
+    int firstSentences[] = new int[groups + 1];
+    int total = bounds[sentences] - bounds[0];
+    for (int g = 1, i = 0; g < groups; g++) {
+      long target = bounds[0] + (long) total * g / groups;
+      while (i < sentences && bounds[i] < target) {
+        i++;
+      }
+      firstSentences[g] = Math.max(i, firstSentences[g - 1]);
+    }
+    firstSentences[groups] = sentences;
+    final int sentenceBounds[] = bounds;
+    
+    // the other groups run on the executor while the first is analysed here
+    List<FutureTask<List<Token>>> futures = new ArrayList<FutureTask<List<Token>>>(groups - 1);
+    for (int g = 1; g < groups; g++) {
+      if (workers.size() < g) {
+        try {
+          workers.add(workerTaggers.call());
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+      final StringTagger worker = workers.get(g - 1);
+      final int from = firstSentences[g], to = firstSentences[g + 1];
+      FutureTask<List<Token>> future = new FutureTask<List<Token>>(new Callable<List<Token>>() {
+        public List<Token> call() throws IOException {
+          return analyzeSentences(worker, sentenceBounds, from, to);
+        }
+      });
+      try {
+        executor.execute(future);
+      } catch (RejectedExecutionException e) {
+        future.run();
+      }
+      futures.add(future);
+    }
+    
+    // every group is waited for, even after a failure, as they read the buffer
+    Throwable failure = null;
+    try {
+      tokens = analyzeSentences(tagger, bounds, firstSentences[0], firstSentences[1]);
+    } catch (Throwable t) {
+      failure = t;
+      tokens = new ArrayList<Token>();
+    }
+    // a group the executor has not yet started is run here, so that a busy
+    // executor, or one this thread belongs to, cannot leave it waiting;
+    // running a task already started or done does nothing
+    boolean interrupted = false;
+    for (FutureTask<List<Token>> future : futures) {
+      future.run();
+      while (true) {
+        try {
+          List<Token> groupTokens = future.get();
+          if (failure == null) {
+            tokens.addAll(groupTokens);
+          }
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause();
+          }
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new RuntimeException(failure);
+    }
+  }
+  
+  /*
+   * Analyzes a sentence of the buffer, or takes its tokens from the sentence
+   * cache. The starts of the tokens are relative to the sentence
+   */
+  private List<Token> analyzeSentence(StringTagger tagger, int start, int length, List<Token> reuse) throws IOException {
+    if (sentenceCache == null) {
+      return tagger.analyze(buffer, start, length, reuse);
+    }
+    if (sentenceCache.get(cacheConfiguration, buffer, start, length, reuse)) {
+      return reuse;
+    }
+    List<Token> result = tagger.analyze(buffer, start, length, reuse);
+    sentenceCache.put(cacheConfiguration, buffer, start, length, result);
+    return result;
+  }
+
+  /*
+   * Analyzes the sentences between the given bounds in turn, with offsets and
+   * sentence starts set as by incrementTokenBuffer()
+   */
+  private List<Token> analyzeSentences(StringTagger tagger, int bounds[], int from, int to) throws IOException {
+    List<Token> result = new ArrayList<Token>();
+    List<Token> sentenceTokens = new ArrayList<Token>();
+    for (int i = from; i < to; i++) {
+      int start = bounds[i];
+      sentenceTokens = analyzeSentence(tagger, start, bounds[i + 1] - start, sentenceTokens);
+      for (int j = 0; j < sentenceTokens.size(); j++) {
+        Token token = sentenceTokens.get(j);
+        token.setSentenceStart(j == 0);
+        token.setStart(token.getStart() + start + offset);
+      }
+      result.addAll(sentenceTokens);
+    }
+    return result;
+  }
+
+  /*
+   * Analyzes a sentence into the union of the tokens of its nBest most likely
+   * paths, ordered by start offset and then longest first. Each distinct
+   * start offset is a node of the token graph, and a token ends at the node
+   * of the next start offset at or after its end (tokens of a path are only
+   * separated by skipped characters), or at the last node of the sentence.
+   */
+  private void analyzeGraph(int start, int end) throws IOException {
+    List<List<Token>> paths = tagger.analyzeNBest(buffer, start, end - start, nBest);
+    
+    // Collect every token with its cost on its own path
+    List<Token> candidates = new ArrayList<Token>();
+    int candidateCosts[] = new int[16];
+    for (List<Token> path : paths) {
+      int previousCost = 0;
+      for (Token token : path) {
+        if (candidates.size() == candidateCosts.length) {
+          candidateCosts = Arrays.copyOf(candidateCosts, candidateCosts.length << 1);
+        }
+        candidateCosts[candidates.size()] = token.getCost() - previousCost;
+        candidates.add(token);
+        previousCost = token.getCost();
+      }
+    }
+    
+    // Sort stably by start, longest first, so that the first of several equal
+    // tokens comes from the most likely path
+    final List<Token> sortTokens = candidates;
+    Integer order[] = new Integer[candidates.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer i1, Integer i2) {
+        Token t1 = sortTokens.get(i1), t2 = sortTokens.get(i2);
+        if (t1.getStart() != t2.getStart()) {
+          return t1.getStart() < t2.getStart() ? -1 : 1;
+        }
+        return t2.getLength() - t1.getLength();
+      }
+    });
+    
+    // Remove duplicates, which are tokens of the same span and morpheme
+    tokens = new ArrayList<Token>(order.length);
+    if (costs.length < order.length) {
+      costs = new int[order.length];
+      positionIncrements = new int[order.length];
+      positionLengths = new int[order.length];
+    }
+    int runStart = 0;
+    for (int i = 0; i < order.length; i++) {
+      Token token = candidates.get(order[i]);
+      Token last = tokens.isEmpty() ? null : tokens.get(tokens.size() - 1);
+      if (last == null || last.getStart() != token.getStart() || last.getLength() != token.getLength()) {
+        runStart = tokens.size();
+      } else if (containsMorpheme(runStart, token)) {
+        continue;
+      }
+      costs[tokens.size()] = candidateCosts[order[i]];
+      tokens.add(token);
+    }
+    
+    // Number the nodes of the graph
+    int starts[] = new int[tokens.size()];
+    int nodes = 0;
+    for (Token token : tokens) {
+      if (nodes == 0 || starts[nodes - 1] != token.getStart()) {
+        starts[nodes++] = token.getStart();
+      }
+    }
+    for (int i = 0, node = -1; i < tokens.size(); i++) {
+      Token token = tokens.get(i);
+      if (node < 0 || starts[node] != token.getStart()) {
+        node++;
+      }
+      int endNode = Arrays.binarySearch(starts, 0, nodes, token.end());
+      if (endNode < 0) {
+        endNode = -endNode - 1;
+      }
+      int position = sentencePosition + node;
+      positionIncrements[i] = position - lastPosition;
+      positionLengths[i] = Math.max(1, endNode - node);
+      lastPosition = position;
+    }
+    sentencePosition += nodes;
+  }
+  
+  /*
+   * Returns true if a token with the same morpheme as the given token has
+   * been added to the union since the given index
+   */
+  private boolean containsMorpheme(int from, Token token) {
+    for (int i = from; i < tokens.size(); i++) {
+      Morpheme morpheme = tokens.get(i).getMorpheme();
+      if (morpheme == token.getMorpheme() || (morpheme != null && morpheme.equals(token.getMorpheme()))) {
+        return true;
+      }
+    }
+    return false;
+  }
 }
@@ -17,6 +17,7 @@
 
 package org.apache.lucene.analysis.gosen.tokenAttributes;
 
+import net.java.sen.dictionary.Dictionary;
 import net.java.sen.dictionary.Morpheme;
 
 import org.apache.lucene.util.Attribute;
@@ -26,5 +27,15 @@ import org.apache.lucene.util.Attribute;
  */
 public interface PartOfSpeechAttribute extends Attribute {
   public String getPartOfSpeech();
+  /**
+   * Returns {@link Morpheme#getPartOfSpeechId()}, the ID of the part of speech
+   * within the dictionary, or -1 if there is none
+   */
+  public int getPartOfSpeechId();
+  /**
+   * Returns {@link Morpheme#getDictionary()}, the dictionary the part of
+   * speech ID is within, or null if there is none
+   */
+  public Dictionary getDictionary();
   public void setMorpheme(Morpheme morpheme);
 }
@@ -17,6 +17,7 @@
 
 package org.apache.lucene.analysis.gosen.tokenAttributes;
 
+import net.java.sen.dictionary.Dictionary;
 import net.java.sen.dictionary.Morpheme;
 
 import org.apache.lucene.analysis.gosen.ToStringUtil;
@@ -33,6 +34,14 @@ public class PartOfSpeechAttributeImpl extends AttributeImpl implements PartOfSp
     return morpheme == null ? null : morpheme.getPartOfSpeech();
   }
   
+  public int getPartOfSpeechId() {
+    return morpheme == null ? -1 : morpheme.getPartOfSpeechId();
+  }
+  
+  public Dictionary getDictionary() {
+    return morpheme == null ? null : morpheme.getDictionary();
+  }
+  
   public void setMorpheme(Morpheme morpheme) {
     this.morpheme = morpheme;
   }
@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.analysis.gosen.GosenPartOfSpeechKeepFilter;
+import org.apache.lucene.analysis.gosen.PartOfSpeechSet;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
@@ -38,10 +39,14 @@ import org.apache.lucene.analysis.TokenStream;
  *             tags="keepTags.txt"/&gt;
  *   &lt;/analyzer&gt;
  * &lt;/fieldType&gt;</pre>
+ * <p>
+ * A tag ending with <code>*</code> matches every tag beginning with the text
+ * before it (see {@link PartOfSpeechSet}). The tags are compiled over the
+ * part-of-speech IDs of the dictionary of the first token filtered.
  */
 public class GosenPartOfSpeechKeepFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
   private final String keepTagFiles;
-  private Set<String> keepTags;
+  private PartOfSpeechSet keepTags;
 
   public GosenPartOfSpeechKeepFilterFactory(Map<String, String> args) {
     super(args);
@@ -59,11 +64,12 @@ public class GosenPartOfSpeechKeepFilterFactory extends TokenFilterFactory imple
   public void inform(ResourceLoader loader) {
     try {
       org.apache.lucene.analysis.CharArraySet cas = getWordSet(loader, keepTagFiles, false);
-      keepTags = new HashSet<String>();
+      Set<String> tags = new HashSet<String>();
       for (Object element : cas) {
         char chars[] = (char[]) element;
-        keepTags.add(new String(chars));
+        tags.add(new String(chars));
       }
+      keepTags = new PartOfSpeechSet(tags);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
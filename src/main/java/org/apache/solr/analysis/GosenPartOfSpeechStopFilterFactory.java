@@ -25,6 +25,7 @@ import java.util.Set;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.gosen.GosenPartOfSpeechStopFilter;
+import org.apache.lucene.analysis.gosen.PartOfSpeechSet;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
@@ -39,10 +40,14 @@ import org.apache.lucene.analysis.util.TokenFilterFactory;
  *             tags="stopTags.txt"/&gt;
  *   &lt;/analyzer&gt;
  * &lt;/fieldType&gt;</pre>
+ * <p>
+ * A tag ending with <code>*</code> matches every tag beginning with the text
+ * before it (see {@link PartOfSpeechSet}). The tags are compiled over the
+ * part-of-speech IDs of the dictionary of the first token filtered.
  */
 public class GosenPartOfSpeechStopFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
   private final String stopTagFiles;
-  private Set<String> stopTags;
+  private PartOfSpeechSet stopTags;
 
   public GosenPartOfSpeechStopFilterFactory(Map<String, String> args) {
     super(args);
@@ -60,11 +65,12 @@ public class GosenPartOfSpeechStopFilterFactory extends TokenFilterFactory imple
   public void inform(ResourceLoader loader) {
     try {
       CharArraySet cas = getWordSet(loader, stopTagFiles, false);
-      stopTags = new HashSet<String>();
+      Set<String> tags = new HashSet<String>();
       for (Object element : cas) {
         char chars[] = (char[]) element;
-        stopTags.add(new String(chars));
+        tags.add(new String(chars));
       }
+      stopTags = new PartOfSpeechSet(tags);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Map;
 
+import net.java.sen.SenFactory;
 import net.java.sen.filter.stream.CompositeTokenFilter;
 
 import org.apache.lucene.analysis.gosen.GosenTokenizer;
@@ -39,18 +40,48 @@ import org.apache.lucene.analysis.util.ResourceLoaderAware;
  *     &lt;tokenizer class="solr.GosenTokenizerFactory"
  *       compositePOS="compositePOS.txt"
  *       dictionaryDir="/opt/dictionary"
- *       tokenizeUnknownKatakana="false / true" /&gt;
+ *       tokenizeUnknownKatakana="false / true"
+ *       nBest="1"
+ *       parallelThreshold="0"
+ *       sentenceCacheEntries="0"
+ *       sentenceCacheMaxBytes="33554432"
+ *       sentenceCacheMaxLength="256" /&gt;
  *   &lt;/analyzer&gt;
  * &lt;/fieldType&gt;</pre>
+ * <p>
+ * <code>nBest</code> greater than 1 emits the union of that many most likely
+ * segmentations of each sentence as a token graph, for use at query time.
+ * <p>
+ * <code>parallelThreshold</code> greater than 0 analyses the sentences of
+ * texts of at least that many characters concurrently, on the common
+ * ForkJoinPool; it cannot be combined with <code>nBest</code>.
+ * <p>
+ * <code>sentenceCacheEntries</code> greater than 0 caches the tokens of up to
+ * that many sentences of at most <code>sentenceCacheMaxLength</code>
+ * characters, taking up to about <code>sentenceCacheMaxBytes</code>, so that
+ * recurring sentences are analysed once. The cache is shared by every
+ * tokenizer of the dictionary with the same cache settings, through
+ * {@link SenFactory#getSentenceCache(int, long, int)}.
  */
 public class GosenTokenizerFactory extends TokenizerFactory implements ResourceLoaderAware {
   
+  /** Default estimated size of the sentence cache */
+  public static final long DEFAULT_SENTENCE_CACHE_MAX_BYTES = 32L << 20;
+
+  /** Default length of the longest sentence cached */
+  public static final int DEFAULT_SENTENCE_CACHE_MAX_LENGTH = 256;
+
   private CompositeTokenFilter compositeTokenFilter;
   private String dictionaryDir;
 
   private final String compositePosFile;
   private final String dirVal;
   private final boolean tokenizeUnknownKatakana;
+  private final int nBest;
+  private final int parallelThreshold;
+  private final int sentenceCacheEntries;
+  private final long sentenceCacheMaxBytes;
+  private final int sentenceCacheMaxLength;
 
   /**
    * Create a new GosenTokenizerFactory
@@ -62,6 +93,27 @@ public class GosenTokenizerFactory extends TokenizerFactory implements ResourceL
     compositePosFile = get(args, "compositePOS");
     dirVal = get(args, "dictionaryDir");
     tokenizeUnknownKatakana = getBoolean(args, "tokenizeUnknownKatakana", false);
+    nBest = getInt(args, "nBest", GosenTokenizer.DEFAULT_NBEST);
+    if (nBest < 1) {
+      throw new IllegalArgumentException("nBest must be at least 1: " + nBest);
+    }
+    parallelThreshold = getInt(args, "parallelThreshold", GosenTokenizer.DEFAULT_PARALLEL_THRESHOLD);
+    if (parallelThreshold < 0) {
+      throw new IllegalArgumentException("parallelThreshold must not be negative: " + parallelThreshold);
+    }
+    if (parallelThreshold > 0 && nBest > 1) {
+      throw new IllegalArgumentException("parallelThreshold cannot be used with nBest: " + nBest);
+    }
+    sentenceCacheEntries = getInt(args, "sentenceCacheEntries", 0);
+    String maxBytes = get(args, "sentenceCacheMaxBytes");
+    sentenceCacheMaxBytes = (maxBytes != null) ? Long.parseLong(maxBytes) : DEFAULT_SENTENCE_CACHE_MAX_BYTES;
+    sentenceCacheMaxLength = getInt(args, "sentenceCacheMaxLength", DEFAULT_SENTENCE_CACHE_MAX_LENGTH);
+    if (sentenceCacheEntries < 0) {
+      throw new IllegalArgumentException("sentenceCacheEntries must not be negative: " + sentenceCacheEntries);
+    }
+    if (sentenceCacheEntries > 0 && sentenceCacheMaxBytes < 1) {
+      throw new IllegalArgumentException("sentenceCacheMaxBytes must be at least 1: " + sentenceCacheMaxBytes);
+    }
 
     if (!args.isEmpty()){
       throw new IllegalArgumentException("Unknown parameters: " + args);
@@ -98,6 +150,16 @@ public class GosenTokenizerFactory extends TokenizerFactory implements ResourceL
 
   @Override
   public GosenTokenizer create(AttributeFactory factory) {
-    return new GosenTokenizer(factory, compositeTokenFilter, dictionaryDir, tokenizeUnknownKatakana);
+    GosenTokenizer tokenizer;
+    if (parallelThreshold > 0) {
+      tokenizer = new GosenTokenizer(factory, compositeTokenFilter, dictionaryDir, tokenizeUnknownKatakana, parallelThreshold, null);
+    } else {
+      tokenizer = new GosenTokenizer(factory, compositeTokenFilter, dictionaryDir, tokenizeUnknownKatakana, nBest);
+    }
+    if (sentenceCacheEntries > 0) {
+      tokenizer.setSentenceCache(SenFactory.getInstance(dictionaryDir)
+          .getSentenceCache(sentenceCacheEntries, sentenceCacheMaxBytes, sentenceCacheMaxLength));
+    }
+    return tokenizer;
   }
 }
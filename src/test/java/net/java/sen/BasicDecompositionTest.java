@@ -21,7 +21,15 @@ package net.java.sen;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import net.java.sen.dictionary.Morpheme;
 import net.java.sen.dictionary.Token;
@@ -53,6 +61,56 @@ public class BasicDecompositionTest extends LuceneTestCase {
     compareTokens (testTokens, tokens);
   }
   
+  /**
+   * Tests decomposition of a window onto a larger buffer, which should be
+   * identical to decomposition of the window's text alone
+   *
+   * @throws IOException if there is some error in StringTagger.analyze()
+   */
+  @Test
+  public void testWindowDecomposition() throws IOException {
+    String testString = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。";
+    char[] buffer = ("前置き" + testString + "あとがき").toCharArray();
+    
+    StringTagger tagger = getStringTagger();
+    List<Token> expected = tagger.analyze(testString, new ArrayList<Token>());
+    Token[] expectedTokens = expected.toArray(new Token[expected.size()]);
+    
+    List<Token> tokens = tagger.analyze(buffer, 3, testString.length(), new ArrayList<Token>());
+    for (Token token : tokens) {
+      assertSame(buffer, token.getSurfaceBuffer());
+      assertEquals(3 + token.getStart(), token.getSurfaceOffset());
+      assertEquals(token.getLength(), token.getSurfaceLength());
+    }
+    compareTokens (expectedTokens, tokens);
+    
+    List<List<Token>> paths = tagger.analyzeNBest(buffer, 3, testString.length(), 1);
+    compareTokens (expectedTokens, paths.get(0));
+  }
+  
+  /**
+   * Tests that Tokens decomposed from a whole array keep their surfaces when
+   * the caller reuses the array
+   *
+   * @throws IOException if there is some error in StringTagger.analyze()
+   */
+  @Test
+  public void testArrayDecompositionCopiesSurfaces() throws IOException {
+    String testString = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。";
+    char[] buffer = testString.toCharArray();
+    
+    StringTagger tagger = getStringTagger();
+    List<Token> expected = tagger.analyze(testString, new ArrayList<Token>());
+    Token[] expectedTokens = expected.toArray(new Token[expected.size()]);
+    
+    List<Token> tokens = tagger.analyze(buffer, new ArrayList<Token>());
+    Arrays.fill(buffer, 'x');
+    for (Token token : tokens) {
+      assertNull(token.getSurfaceBuffer());
+    }
+    compareTokens (expectedTokens, tokens);
+  }
+  
   /**
    * Tests string decomposition
    * 
@@ -263,6 +321,134 @@ public class BasicDecompositionTest extends LuceneTestCase {
     assertSame(instance, instance2);
   }
 
+  /**
+   * Tests that Tokenizers share their Dictionary, and that it may be searched
+   * by several threads at once
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSharedDictionary() throws Exception {
+    assertSame(SenFactory.getTokenizer(IPADIC_DIR, false).getDictionary(),
+        SenFactory.getTokenizer(IPADIC_DIR, false).getDictionary());
+
+    final String[] sentences = {
+        "これは本ではない",
+        "東京都庁に行きました。",
+        "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。",
+        "アメリカ低所得者医療援助制度が今日では、その予算の約３分の１を老人に費やしている。"
+    };
+    final List<String> expected = new ArrayList<String>();
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+    for (String sentence : sentences) {
+      expected.add(tagger.analyze(sentence).toString());
+    }
+
+    final List<String> failures = new ArrayList<String>();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+            for (int j = 0; j < 200; j++) {
+              int k = j % sentences.length;
+              String result = tagger.analyze(sentences[k]).toString();
+              if (!expected.get(k).equals(result)) {
+                synchronized (failures) {
+                  failures.add(result);
+                }
+              }
+            }
+          } catch (IOException e) {
+            synchronized (failures) {
+              failures.add(e.toString());
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(Collections.<String>emptyList(), failures);
+  }
+
+  /**
+   * Tests that a batch analysed in parallel comes back in input order, with
+   * the same results as a single StringTagger
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAnalyzeAll() throws Exception {
+    String[] sentences = {
+        "これは本ではない",
+        "東京都庁に行きました。",
+        "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。",
+        "",
+        "アメリカ低所得者医療援助制度が今日では、その予算の約３分の１を老人に費やしている。"
+    };
+    List<StringBuilder> texts = new ArrayList<StringBuilder>();
+    List<String> expected = new ArrayList<String>();
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+    for (int i = 0; i < 100; i++) {
+      String sentence = sentences[i % sentences.length];
+      texts.add(new StringBuilder(sentence));
+      expected.add(tagger.analyze(sentence).toString());
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      List<List<Token>> results = SenFactory.getInstance(IPADIC_DIR).analyzeAll(texts, pool);
+      assertEquals(expected.size(), results.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i), results.get(i).toString());
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(0, SenFactory.getInstance(IPADIC_DIR).analyzeAll(new ArrayList<String>(), pool).size());
+  }
+
+  /**
+   * Test analyzeAll called from a task on the executor it is given, which
+   * has no thread free to run the other workers
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAnalyzeAllOnOwnExecutor() throws Exception {
+    final List<String> texts = new ArrayList<String>();
+    List<String> expected = new ArrayList<String>();
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+    for (int i = 0; i < 20; i++) {
+      String text = "東京都庁に行きました。" + i;
+      texts.add(text);
+      expected.add(tagger.analyze(text).toString());
+    }
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<List<Token>>> future = executor.submit(new Callable<List<List<Token>>>() {
+        public List<List<Token>> call() throws Exception {
+          return SenFactory.getInstance(IPADIC_DIR).analyzeAll(texts, false, executor, 4);
+        }
+      });
+      List<List<Token>> results = future.get(30, TimeUnit.SECONDS);
+      assertEquals(expected.size(), results.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i), results.get(i).toString());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   /**
    * Test the tokenizer that is able to recognize a Latin-1 accented character as a proper Latin character,
    * which will not handle as a separator.
@@ -0,0 +1,209 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.java.sen.dictionary.CharacterDefinition;
+import net.java.sen.dictionary.Token;
+import net.java.sen.trie.Alphabet;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for CharacterDefinition
+ */
+public class CharacterDefinitionTest extends LuceneTestCase {
+  
+  private static final List<String> FILENAMES = Arrays.asList(
+      "connectionCost.sen", "partOfSpeech.sen", "posIndex.sen", "token.sen", "trie.sen", "header.sen", Alphabet.FILENAME);
+  
+  private static final String CHAR_DEF =
+      "# classes\n"
+      + "DEFAULT      0 1 0\n"
+      + "SPACE        0 1 0\n"
+      + "KANJI        0 0 2\n"
+      + "HIRAGANA     0 1 0\n"
+      + "KATAKANA     1 1 0\n"
+      + "ALPHA        1 0 1\n"
+      + "KANJINUMERIC 1 1 0\n"
+      + "\n"
+      + "0x0020 SPACE\n"
+      + "0x3041..0x309F HIRAGANA\n"
+      + "0x30A1..0x30FF KATAKANA\n"
+      + "0x0041..0x005A ALPHA\n"
+      + "0x0061..0x007A ALPHA  # lower case\n"
+      + "0x4E00..0x9FA5 KANJI\n"
+      + "0x4E00 KANJINUMERIC KANJI\n"
+      + "0x1F600 KANJI\n";
+  
+  /**
+   * Tests that the default definition has the built in classes
+   */
+  @Test
+  public void testDefault() {
+    CharacterDefinition definition = CharacterDefinition.getDefault();
+    assertEquals("HIRAGANA", definition.getClassName(definition.getCharClass('あ')));
+    assertEquals("KATAKANA", definition.getClassName(definition.getCharClass('ア')));
+    assertEquals("KATAKANA", definition.getClassName(definition.getCharClass('ｱ')));
+    assertEquals("KANJI", definition.getClassName(definition.getCharClass('漢')));
+    assertEquals("SPACE", definition.getClassName(definition.getCharClass('\t')));
+    assertEquals(CharacterDefinition.DEFAULT_CLASS, definition.getClassName(definition.getCharClass('・')));
+    assertEquals(definition.getCharClass('a'), definition.getCharClass('Z'));
+    assertEquals(definition.getCharClass('a'), definition.getCharClass('é'));
+    assertFalse(definition.getCharClass('a') == definition.getCharClass('1'));
+    
+    int kanji = definition.getCharClass("KANJI");
+    assertFalse(definition.isInvoke(kanji));
+    assertFalse(definition.isGroup(kanji));
+    assertEquals(1, definition.getLength(kanji));
+    int katakana = definition.getCharClass("KATAKANA");
+    assertTrue(definition.isInvoke(katakana));
+    assertTrue(definition.isGroup(katakana));
+  }
+  
+  /**
+   * Tests parsing a char.def
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testParse() throws IOException {
+    CharacterDefinition definition = CharacterDefinition.parse(new StringReader(CHAR_DEF));
+    assertEquals(7, definition.getClassCount());
+    assertEquals("ALPHA", definition.getClassName(definition.getCharClass('q')));
+    assertEquals("KANJI", definition.getClassName(definition.getCharClass('漢')));
+    assertEquals("KANJINUMERIC", definition.getClassName(definition.getCharClass('一')));
+    assertEquals(CharacterDefinition.DEFAULT_CLASS, definition.getClassName(definition.getCharClass('1')));
+    
+    int kanji = definition.getCharClass("KANJI");
+    assertTrue(definition.isCompatible(kanji, '一'));
+    assertTrue(definition.isCompatible(kanji, '漢'));
+    assertFalse(definition.isCompatible(definition.getCharClass("KANJINUMERIC"), '漢'));
+    assertFalse(definition.isInvoke(kanji));
+    assertFalse(definition.isGroup(kanji));
+    assertEquals(2, definition.getLength(kanji));
+  }
+  
+  /**
+   * Tests that a char.def without a DEFAULT class is rejected
+   */
+  @Test
+  public void testMissingDefault() {
+    try {
+      CharacterDefinition.parse(new StringReader("KANJI 0 0 2\n0x4E00..0x9FA5 KANJI\n"));
+      fail();
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage().contains("DEFAULT"));
+    }
+  }
+  
+  /**
+   * Tests that a compiled definition reads back identically
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testReadWrite() throws IOException {
+    for (CharacterDefinition definition : Arrays.asList(CharacterDefinition.getDefault(), CharacterDefinition.parse(new StringReader(CHAR_DEF)))) {
+      CharacterDefinition read = CharacterDefinition.read(ByteBuffer.wrap(toBytes(definition)));
+      assertEquals(definition.getClassCount(), read.getClassCount());
+      for (int i = 0; i < definition.getClassCount(); i++) {
+        assertEquals(definition.getClassName(i), read.getClassName(i));
+        assertEquals(definition.isInvoke(i), read.isInvoke(i));
+        assertEquals(definition.isGroup(i), read.isGroup(i));
+        assertEquals(definition.getLength(i), read.getLength(i));
+      }
+      for (int c = 0; c <= Character.MAX_VALUE; c++) {
+        int charClass = definition.getCharClass((char) c);
+        assertEquals(charClass, read.getCharClass((char) c));
+        for (int i = 0; i < definition.getClassCount(); i++) {
+          assertEquals(definition.isCompatible(i, (char) c), read.isCompatible(i, (char) c));
+        }
+      }
+    }
+  }
+  
+  /**
+   * Tests that a dictionary compiled with the built in classes analyses
+   * identically to one without a character definition
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testDefaultDictionary() throws IOException {
+    File dir = copyDictionary(CharacterDefinition.getDefault());
+    
+    String testString = "本来は、貧困層の女性や子供にｶﾀｶﾅ・ｶﾅとXYZ123を提供するためにセンダイムシクイが創設された。";
+    List<Token> expected = getStringTagger().analyze(testString, new ArrayList<Token>());
+    List<Token> actual = SenFactory.getStringTagger(dir.getAbsolutePath(), false).analyze(testString, new ArrayList<Token>());
+    
+    compareTokens(expected.toArray(new Token[expected.size()]), actual);
+  }
+  
+  /**
+   * Tests that the rules of a char.def change the unknown morphemes found
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCustomDictionary() throws IOException {
+    File dir = copyDictionary(CharacterDefinition.parse(new StringReader(CHAR_DEF)));
+    
+    // Grouped by default, single characters by the ALPHA rules
+    List<Token> tokens = getStringTagger().analyze("xyz", new ArrayList<Token>());
+    assertEquals(1, tokens.size());
+    assertEquals("xyz", tokens.get(0).getSurface());
+    
+    tokens = SenFactory.getStringTagger(dir.getAbsolutePath(), false).analyze("xyz", new ArrayList<Token>());
+    assertEquals(3, tokens.size());
+    for (Token token : tokens) {
+      assertEquals(1, token.getLength());
+    }
+  }
+  
+  private static byte[] toBytes(CharacterDefinition definition) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    definition.write(out);
+    out.close();
+    return bytes.toByteArray();
+  }
+  
+  private File copyDictionary(CharacterDefinition definition) throws IOException {
+    File dir = createTempDir("chardef").toFile();
+    for (String filename : FILENAMES) {
+      Files.copy(new File(IPADIC_DIR, filename).toPath(), new File(dir, filename).toPath());
+    }
+    FileOutputStream out = new FileOutputStream(new File(dir, CharacterDefinition.FILENAME));
+    out.write(toBytes(definition));
+    out.close();
+    return dir;
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.SearchState;
+import net.java.sen.dictionary.Token;
+import net.java.sen.trie.Alphabet;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for the connection cost matrix
+ */
+public class ConnectionCostTest extends LuceneTestCase {
+  
+  private static final List<String> FILENAMES = Arrays.asList(
+      "partOfSpeech.sen", "posIndex.sen", "token.sen", "trie.sen", Alphabet.FILENAME);
+  
+  /**
+   * Tests that a bigram matrix analyses identically to the same costs held
+   * in a trigram matrix
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testBigram() throws IOException {
+    // Take the costs for the first index of the first extent of ipadic
+    RandomAccessFile file = new RandomAccessFile(new File(IPADIC_DIR, "connectionCost.sen"), "r");
+    ShortBuffer costs = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()).asShortBuffer();
+    file.close();
+    int size1 = costs.get(0);
+    int size2 = costs.get(1);
+    int size3 = costs.get(2);
+    short[] slice = new short[size2 * size3];
+    costs.position(3);
+    costs.get(slice);
+    
+    File trigramDir = copyDictionary("trigram", slice, size1, size2, size3);
+    File bigramDir = copyDictionary("bigram", slice, 1, size2, size3);
+    
+    Dictionary trigramDictionary = SenFactory.getTokenizer(trigramDir.getAbsolutePath(), false).getDictionary();
+    Dictionary bigramDictionary = SenFactory.getTokenizer(bigramDir.getAbsolutePath(), false).getDictionary();
+    assertFalse(trigramDictionary.isBigram());
+    assertTrue(bigramDictionary.isBigram());
+    
+    // The copies must find the same words, or the comparison below would
+    // only be between lattices of unknown words
+    Dictionary ipadicDictionary = SenFactory.getInstance(IPADIC_DIR).getDictionary();
+    String words = "本来は、貧困層の女性や子供に医療保護を提供する";
+    assertSameLookups(ipadicDictionary, trigramDictionary, words);
+    assertSameLookups(ipadicDictionary, bigramDictionary, words);
+    
+    StringTagger trigramTagger = SenFactory.getStringTagger(trigramDir.getAbsolutePath(), false);
+    StringTagger bigramTagger = SenFactory.getStringTagger(bigramDir.getAbsolutePath(), false);
+    for (String testString : new String[] {
+        "本来は、貧困層の女性や子供に医療保護を提供するために創設された機関である。",
+        "すもももももももものうち",
+        "東京都港区でワイヤレスイヤホンの接続エラーが発生しました"
+    }) {
+      List<Token> expected = trigramTagger.analyze(testString, new ArrayList<Token>());
+      List<Token> actual = bigramTagger.analyze(testString, new ArrayList<Token>());
+      compareTokens(expected.toArray(new Token[expected.size()]), actual);
+    }
+  }
+  
+  /**
+   * Asserts that two dictionaries find the same token records at every
+   * position of a text
+   */
+  private static void assertSameLookups(Dictionary expected, Dictionary actual, String text) {
+    char[] chars = text.toCharArray();
+    SearchState expectedState = expected.newSearchState();
+    SearchState actualState = actual.newSearchState();
+    for (int i = 0; i < chars.length; i++) {
+      int[] expectedTokens = expected.commonPrefixTokens(chars, i, chars.length, expectedState);
+      int[] actualTokens = actual.commonPrefixTokens(chars, i, chars.length, actualState);
+      for (int j = 0; ; j++) {
+        assertEquals(expectedTokens[j], actualTokens[j]);
+        if (expectedTokens[j] == -1) {
+          break;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Copies the ipadic dictionary, with a connection cost matrix repeating
+   * the given costs for every index of its first extent
+   */
+  private File copyDictionary(String name, short[] slice, int size1, int size2, int size3) throws IOException {
+    File dir = createTempDir(name).toFile();
+    for (String filename : FILENAMES) {
+      Files.copy(new File(IPADIC_DIR, filename).toPath(), new File(dir, filename).toPath());
+    }
+    
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(dir, "connectionCost.sen")));
+    out.writeShort(size1);
+    out.writeShort(size2);
+    out.writeShort(size3);
+    for (int i = 0; i < size1; i++) {
+      for (short cost : slice) {
+        out.writeShort(cost);
+      }
+    }
+    out.close();
+    
+    // The header gives the size of each file, followed by that of the trie
+    // alphabet
+    byte[] header = Files.readAllBytes(new File(IPADIC_DIR, "header.sen").toPath());
+    out = new DataOutputStream(new FileOutputStream(new File(dir, "header.sen")));
+    for (String filename : Arrays.asList("connectionCost.sen", "partOfSpeech.sen", "token.sen", "trie.sen")) {
+      out.writeInt((int) new File(dir, filename).length());
+    }
+    out.write(header, 4 * 4, header.length - 4 * 4);
+    out.close();
+    return dir;
+  }
+}
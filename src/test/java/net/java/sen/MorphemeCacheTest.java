@@ -0,0 +1,99 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.MorphemeCache;
+import net.java.sen.dictionary.Token;
+import net.java.sen.tokenizers.ja.JapaneseTokenizer;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for the cache of decoded morphemes
+ */
+public class MorphemeCacheTest extends LuceneTestCase {
+  
+  /**
+   * Tests that morphemes taken from the cache equal those decoded afresh, and
+   * that repeated morphemes share their data
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCache() throws IOException {
+    Dictionary dictionary = SenFactory.getInstance(IPADIC_DIR, 4096).getDictionary();
+    MorphemeCache cache = dictionary.getMorphemeCache();
+    assertNotNull(cache);
+    assertEquals(4096, cache.getCapacity());
+    assertNull(SenFactory.getTokenizer(IPADIC_DIR, false).getDictionary().getMorphemeCache());
+    
+    StringTagger cachedTagger = new StringTagger(new JapaneseTokenizer(dictionary, SenFactory.unknownPOS, false));
+    StringTagger tagger = getStringTagger();
+    String text = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。";
+    
+    List<Token> first = cachedTagger.analyze(text);
+    compareTokens(tagger.analyze(text).toArray(new Token[0]), first);
+    long misses = cache.getMisses();
+    assertTrue(misses > 0);
+    
+    List<Token> second = cachedTagger.analyze(text);
+    compareTokens(first.toArray(new Token[0]), second);
+    assertEquals(misses, cache.getMisses());
+    assertTrue(cache.getHits() > 0);
+    for (int i = 0; i < first.size(); i++) {
+      if (!first.get(i).getMorpheme().getPartOfSpeech().equals(SenFactory.unknownPOS)) {
+        assertSame(first.get(i).getMorpheme().getBasicForm(), second.get(i).getMorpheme().getBasicForm());
+        assertNotSame(first.get(i).getMorpheme().getReadings(), second.get(i).getMorpheme().getReadings());
+        assertEquals(first.get(i).getMorpheme().getReadings(), second.get(i).getMorpheme().getReadings());
+      }
+    }
+    
+    // Each Morpheme's lists are its own, as without a cache
+    second.get(0).getMorpheme().getReadings().add("ホン");
+    second.get(0).getMorpheme().getPronunciations().clear();
+    List<Token> third = cachedTagger.analyze(text);
+    compareTokens(first.toArray(new Token[0]), third);
+  }
+  
+  /**
+   * Tests that the cache size can be given as a system property
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCacheSizeProperty() throws IOException {
+    Dictionary dictionary;
+    String previous = System.setProperty(SenFactory.MORPHEME_CACHE_SIZE_PROPERTY, "1024");
+    try {
+      dictionary = new SenFactory(IPADIC_DIR).getDictionary();
+    } finally {
+      if (previous == null) {
+        System.clearProperty(SenFactory.MORPHEME_CACHE_SIZE_PROPERTY);
+      } else {
+        System.setProperty(SenFactory.MORPHEME_CACHE_SIZE_PROPERTY, previous);
+      }
+    }
+    assertEquals(1024, dictionary.getMorphemeCache().getCapacity());
+  }
+}
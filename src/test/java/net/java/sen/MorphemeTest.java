@@ -0,0 +1,93 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Token;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for the lazy loading of Morphemes
+ */
+public class MorphemeTest extends LuceneTestCase {
+  
+  private static final String TEXT = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。";
+  
+  /**
+   * Tests that the parts of a Morpheme load alike whatever order they are
+   * requested in
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testLoadOrder() throws IOException {
+    StringTagger tagger = getStringTagger();
+    List<Token> expected = tagger.analyze(TEXT);
+    for (Token token : expected) {
+      token.getMorpheme().toString();
+    }
+    
+    List<Token> readingsFirst = tagger.analyze(TEXT);
+    for (Token token : readingsFirst) {
+      token.getMorpheme().getReadings();
+    }
+    compareTokens(expected.toArray(new Token[0]), readingsFirst);
+    
+    List<Token> basicFormFirst = tagger.analyze(TEXT);
+    for (Token token : basicFormFirst) {
+      token.getMorpheme().getBasicForm();
+      token.getMorpheme().getConjugationalForm();
+    }
+    compareTokens(expected.toArray(new Token[0]), basicFormFirst);
+    
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getMorpheme().toString(), basicFormFirst.get(i).getMorpheme().toString());
+    }
+  }
+  
+  /**
+   * Tests the part-of-speech and conjugation IDs
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testIds() throws IOException {
+    Dictionary dictionary = SenFactory.getTokenizer(IPADIC_DIR, false).getDictionary();
+    for (Token token : getStringTagger().analyze(TEXT)) {
+      Morpheme morpheme = token.getMorpheme();
+      if (morpheme.getPartOfSpeech().equals(SenFactory.unknownPOS)) {
+        assertEquals(-1, morpheme.getPartOfSpeechId());
+        continue;
+      }
+      int id = morpheme.getPartOfSpeechId();
+      assertTrue(id >= 0 && id < dictionary.getPartOfSpeechCount());
+      assertSame(dictionary.getPartOfSpeech(id), morpheme.getPartOfSpeech());
+      assertSame(dictionary.getConjugationalType(morpheme.getConjugationalTypeId()), morpheme.getConjugationalType());
+      assertSame(dictionary.getConjugationalForm(morpheme.getConjugationalFormId()), morpheme.getConjugationalForm());
+    }
+    
+    assertEquals(-1, new Morpheme().getPartOfSpeechId());
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Sentence;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Viterbi;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for the n-best search of Viterbi
+ */
+public class NBestTest extends LuceneTestCase {
+  
+  /**
+   * Returns the surfaces of a list of Tokens joined by slashes
+   *
+   * @param tokens The Tokens
+   * @return The joined surfaces
+   */
+  private static String surfaces(List<Token> tokens) {
+    StringBuilder builder = new StringBuilder();
+    for (Token token : tokens) {
+      if (builder.length() > 0) {
+        builder.append('/');
+      }
+      builder.append(token.getSurface());
+    }
+    return builder.toString();
+  }
+  
+  /**
+   * Tests that the first path is the best path
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testFirstPathIsBest() throws IOException {
+    String[] testStrings = {
+        "すもももももももものうち",
+        "麻薬の密売は根こそぎ絶やさなければならない",
+        "魔女狩大将マシュー・ホプキンス。"
+    };
+    
+    Viterbi viterbi = getViterbi();
+    for (String testString : testStrings) {
+      List<Token> expectedTokens = viterbi.getBestTokens(new Sentence(testString), new ArrayList<Token>());
+      List<List<Token>> paths = viterbi.getNBestTokens(new Sentence(testString), 5);
+      
+      assertEquals(5, paths.size());
+      compareTokens(expectedTokens.toArray(new Token[0]), paths.get(0));
+    }
+  }
+  
+  /**
+   * Tests the alternative segmentations of a compound
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testAlternativePaths() throws IOException {
+    List<List<Token>> paths = getViterbi().getNBestTokens(new Sentence("関西国際空港"), 3);
+    
+    assertEquals(3, paths.size());
+    assertEquals("関西国際空港", surfaces(paths.get(0)));
+    assertEquals("関西/国際/空港", surfaces(paths.get(1)));
+    assertEquals("関西/国/際/空港", surfaces(paths.get(2)));
+    
+    // Token costs are cumulative along their own path
+    List<Token> path = paths.get(1);
+    for (int i = 1; i < path.size(); i++) {
+      assertTrue(path.get(i).getCost() > path.get(i - 1).getCost());
+    }
+  }
+  
+  /**
+   * Tests that the returned paths are distinct, and that no more paths are
+   * returned than exist
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testDistinctPaths() throws IOException {
+    Viterbi viterbi = getViterbi();
+    
+    List<List<Token>> paths = viterbi.getNBestTokens(new Sentence("すもももももももものうち"), 20);
+    assertEquals(20, paths.size());
+    for (int i = 0; i < paths.size(); i++) {
+      for (int j = i + 1; j < paths.size(); j++) {
+        assertFalse("Paths " + i + " and " + j + " are equal", paths.get(i).equals(paths.get(j)));
+      }
+    }
+    
+    assertEquals(0, viterbi.getNBestTokens(new Sentence("本"), 0).size());
+    assertEquals(1, viterbi.getNBestTokens(new Sentence(""), 5).size());
+    assertEquals(0, viterbi.getNBestTokens(new Sentence(""), 5).get(0).size());
+  }
+}
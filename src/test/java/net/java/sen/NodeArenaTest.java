@@ -0,0 +1,131 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.CToken;
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.Node;
+import net.java.sen.dictionary.NodeArena;
+import net.java.sen.dictionary.Sentence;
+import net.java.sen.dictionary.SentenceIterator;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Tokenizer;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for NodeArena and the reuse of the Viterbi lattice
+ */
+public class NodeArenaTest extends LuceneTestCase {
+  
+  /**
+   * Tests that Nodes are recycled, cleared, and the arena grows as needed
+   */
+  @Test
+  public void testReuse() {
+    NodeArena arena = new NodeArena(2);
+    Node[] nodes = new Node[5];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = arena.newNode();
+      nodes[i].cost = i + 1;
+      nodes[i].tokenIndex = i;
+      nodes[i].prev = nodes[0];
+    }
+    assertEquals(5, arena.size());
+    
+    arena.reset();
+    assertEquals(0, arena.size());
+    for (int i = 0; i < nodes.length; i++) {
+      Node node = arena.newNode();
+      assertSame(nodes[i], node);
+      assertEquals(0, node.cost);
+      assertEquals(-1, node.tokenIndex);
+      assertNull(node.prev);
+    }
+  }
+  
+  /**
+   * Tests that analysing a long sentence does not affect analysis of later,
+   * shorter sentences
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testLatticeReuse() throws IOException {
+    String longString = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、" +
+        "アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている。";
+    String shortString = "これは本ではない";
+    
+    StringTagger tagger = getStringTagger();
+    List<Token> expectedShort = tagger.analyze(shortString, new ArrayList<Token>());
+    List<Token> expectedLong = tagger.analyze(longString, new ArrayList<Token>());
+    
+    for (int i = 0; i < 3; i++) {
+      List<Token> actualLong = tagger.analyze(longString, new ArrayList<Token>());
+      compareTokens(expectedLong.toArray(new Token[0]), actualLong);
+      List<Token> actualShort = tagger.analyze(shortString, new ArrayList<Token>());
+      compareTokens(expectedShort.toArray(new Token[0]), actualShort);
+    }
+  }
+  
+  /**
+   * Tests that looked up Nodes carry their token record instead of a
+   * Morpheme, with the same attributes as the copied out CTokens
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testTokenRecords() throws IOException {
+    Tokenizer tokenizer = SenFactory.getTokenizer(IPADIC_DIR, false);
+    Dictionary dictionary = tokenizer.getDictionary();
+    Sentence sentence = new Sentence("東京都庁");
+    
+    SentenceIterator iterator = sentence.iterator();
+    iterator.nextOrigin();
+    List<Node> nodes = new ArrayList<Node>();
+    for (Node node = tokenizer.lookup(iterator, sentence.getCharacters(), new NodeArena()); node != null; node = node.rnext) {
+      if (node.tokenIndex >= 0) {
+        assertNull(node.morpheme);
+        nodes.add(0, node);
+      }
+    }
+    
+    iterator.rewindToOrigin();
+    CToken[] ctokens = dictionary.commonPrefixSearch(iterator, dictionary.newSearchState());
+    int i = 0;
+    for (; !ctokens[i].terminator; i++) {
+      Node node = nodes.get(i);
+      assertEquals(ctokens[i].rcAttr2, node.rcAttr2);
+      assertEquals(ctokens[i].rcAttr1, node.rcAttr1);
+      assertEquals(ctokens[i].lcAttr, node.lcAttr);
+      assertEquals(ctokens[i].length, node.length);
+      assertEquals(ctokens[i].cost, node.dictionaryCost);
+      assertEquals(ctokens[i].partOfSpeechIndex, dictionary.getPartOfSpeechIndex(node.tokenIndex));
+      assertNotNull(tokenizer.getMorpheme(node));
+      assertSame(node.morpheme, tokenizer.getMorpheme(node));
+    }
+    assertTrue(i > 1);
+    assertEquals(i, nodes.size());
+  }
+}
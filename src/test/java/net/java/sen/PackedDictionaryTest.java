@@ -0,0 +1,170 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import net.java.sen.dictionary.CharacterDefinition;
+import net.java.sen.dictionary.PackedDictionary;
+import net.java.sen.dictionary.Token;
+import net.java.sen.trie.Alphabet;
+import net.java.sen.util.CRC32C;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for PackedDictionary
+ */
+public class PackedDictionaryTest extends LuceneTestCase {
+  
+  private static final List<String> FILENAMES = Arrays.asList(
+      "connectionCost.sen", "partOfSpeech.sen", "posIndex.sen", "token.sen", "trie.sen", "header.sen",
+      CharacterDefinition.FILENAME, Alphabet.FILENAME);
+  
+  /**
+   * Tests the checksum against the standard CRC-32C check value
+   */
+  @Test
+  public void testCRC32C() {
+    CRC32C crc = new CRC32C();
+    byte[] data = "123456789".getBytes(StandardCharsets.US_ASCII);
+    crc.update(data, 0, data.length);
+    assertEquals(0xE3069283L, crc.getValue());
+    
+    crc.reset();
+    crc.update(ByteBuffer.wrap(data));
+    assertEquals(0xE3069283L, crc.getValue());
+  }
+  
+  /**
+   * Tests that mapped and streamed sections are aligned and match the packed files
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testSections() throws IOException {
+    File dir = createTempDir("packed").toFile();
+    byte[][] contents = new byte[][] { new byte[0], new byte[] { 1 }, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 } };
+    List<String> names = Arrays.asList("a.sen", "b.sen", "c.sen");
+    for (int i = 0; i < names.size(); i++) {
+      RandomAccessFile file = new RandomAccessFile(new File(dir, names.get(i)), "rw");
+      file.write(contents[i]);
+      file.close();
+    }
+    File packed = new File(dir, PackedDictionary.FILENAME);
+    PackedDictionary.write(packed, dir, names);
+    PackedDictionary.verify(packed);
+    
+    Map<String, ByteBuffer> mapped = PackedDictionary.map(packed);
+    FileInputStream in = new FileInputStream(packed);
+    Map<String, ByteBuffer> streamed = PackedDictionary.read(in);
+    in.close();
+    
+    for (Map<String, ByteBuffer> sections : Arrays.asList(mapped, streamed)) {
+      assertEquals(names, new ArrayList<String>(sections.keySet()));
+      for (int i = 0; i < names.size(); i++) {
+        ByteBuffer section = sections.get(names.get(i));
+        assertEquals(ByteBuffer.wrap(contents[i]), section);
+      }
+    }
+  }
+  
+  /**
+   * Tests that a corrupted section is detected
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testCorruptSection() throws IOException {
+    File dir = createTempDir("packed").toFile();
+    RandomAccessFile file = new RandomAccessFile(new File(dir, "a.sen"), "rw");
+    file.write(new byte[] { 1, 2, 3 });
+    file.close();
+    File packed = new File(dir, PackedDictionary.FILENAME);
+    PackedDictionary.write(packed, dir, Arrays.asList("a.sen"));
+    
+    file = new RandomAccessFile(packed, "rw");
+    file.seek(file.length() - 8);
+    file.write(42);
+    file.close();
+    
+    try {
+      PackedDictionary.verify(packed);
+      fail();
+    } catch (RuntimeException expected) {
+      assertTrue(expected.getMessage().contains("corrupt"));
+    }
+  }
+  
+  /**
+   * Tests that a packed dictionary analyses identically to the loose files
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testPackedDictionary() throws IOException {
+    File dir = createTempDir("packed").toFile();
+    PackedDictionary.write(new File(dir, PackedDictionary.FILENAME), new File(IPADIC_DIR), FILENAMES);
+    
+    String testString = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。";
+    List<Token> expected = getStringTagger().analyze(testString, new ArrayList<Token>());
+    List<Token> actual = SenFactory.getStringTagger(dir.getAbsolutePath(), false).analyze(testString, new ArrayList<Token>());
+    
+    compareTokens(expected.toArray(new Token[expected.size()]), actual);
+  }
+  
+  /**
+   * Tests that a dictionary whose Trie is coded through an alphabet fails
+   * to load without it, whether packed or loose
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testMissingAlphabet() throws IOException {
+    List<String> filenames = new ArrayList<String>(FILENAMES);
+    filenames.remove(Alphabet.FILENAME);
+    
+    File packedDir = createTempDir("packed").toFile();
+    PackedDictionary.write(new File(packedDir, PackedDictionary.FILENAME), new File(IPADIC_DIR), filenames);
+    File looseDir = createTempDir("loose").toFile();
+    for (String filename : filenames) {
+      Files.copy(new File(IPADIC_DIR, filename).toPath(), new File(looseDir, filename).toPath());
+    }
+    
+    for (File dir : Arrays.asList(packedDir, looseDir)) {
+      try {
+        SenFactory.getStringTagger(dir.getAbsolutePath(), false);
+        fail();
+      } catch (RuntimeException expected) {
+        assertTrue(expected.getMessage().contains(Alphabet.FILENAME));
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Token;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for the cache of analysed sentences
+ */
+public class SentenceCacheTest extends LuceneTestCase {
+  
+  /**
+   * Tests that a cached sentence gives the tokens it was analysed into,
+   * wherever it is found
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testGetAndPut() throws Exception {
+    SentenceCache cache = new SentenceCache(1024, 1 << 20, 64);
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+    char[] text = "これは本ではない。東京都庁に行きました。".toCharArray();
+    List<Token> expected = new ArrayList<Token>(tagger.analyze(text, 9, 11, new ArrayList<Token>()));
+    
+    List<Token> tokens = new ArrayList<Token>();
+    assertFalse(cache.get("a", text, 9, 11, tokens));
+    cache.put("a", text, 9, 11, expected);
+    assertEquals(1, cache.getEntryCount());
+    assertTrue(cache.getSizeInBytes() > 0);
+    
+    char[] other = "東京都庁に行きました。".toCharArray();
+    assertTrue(cache.get("a", other, 0, other.length, tokens));
+    assertEquals(expected.size(), tokens.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Token token = tokens.get(i);
+      assertEquals(expected.get(i).getSurface(), token.getSurface());
+      assertEquals(expected.get(i).getStart(), token.getStart());
+      assertEquals(expected.get(i).getLength(), token.getLength());
+      assertEquals(expected.get(i).getCost(), token.getCost());
+      assertEquals(expected.get(i).getMorpheme(), token.getMorpheme());
+    }
+    
+    // another configuration, or other text, misses
+    assertFalse(cache.get("b", other, 0, other.length, tokens));
+    assertFalse(cache.get("a", text, 0, 9, tokens));
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+    assertEquals(0.25, cache.getHitRate(), 0.0);
+  }
+  
+  /**
+   * Tests that altering the Morphemes of cached or returned tokens does not
+   * change the tokens of later hits
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testImmutable() throws Exception {
+    SentenceCache cache = new SentenceCache(1024, 1 << 20, 64);
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+    char[] text = "東京都庁に行きました。".toCharArray();
+    List<Token> analysed = tagger.analyze(text, new ArrayList<Token>());
+    String expected = describe(tagger.analyze(text, new ArrayList<Token>()));
+    cache.put("a", text, 0, text.length, analysed);
+    analysed.get(0).getMorpheme().setAdditionalInformation("altered");
+    analysed.get(0).getMorpheme().getReadings().add("altered");
+    
+    List<Token> tokens = new ArrayList<Token>();
+    assertTrue(cache.get("a", text, 0, text.length, tokens));
+    assertEquals(expected, describe(tokens));
+    assertNull(tokens.get(0).getMorpheme().getAdditionalInformation());
+    tokens.get(0).getMorpheme().setAdditionalInformation("altered");
+    tokens.get(0).getMorpheme().getReadings().clear();
+    
+    assertTrue(cache.get("a", text, 0, text.length, tokens));
+    assertEquals(expected, describe(tokens));
+    assertNull(tokens.get(0).getMorpheme().getAdditionalInformation());
+  }
+  
+  private static String describe(List<Token> tokens) {
+    StringBuilder sb = new StringBuilder();
+    for (Token token : tokens) {
+      sb.append(token.getSurface()).append('/').append(token.getMorpheme()).append('/')
+          .append(token.getMorpheme().getReadings()).append('/')
+          .append(token.getMorpheme().getAdditionalInformation()).append('\n');
+    }
+    return sb.toString();
+  }
+  
+  /**
+   * Tests that long sentences are not cached, and that the cache keeps to
+   * its maximum number of entries
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testBounds() throws Exception {
+    SentenceCache cache = new SentenceCache(16, 1 << 20, 8);
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+    char[] text = "東京都庁に行きました。".toCharArray();
+    cache.put("a", text, 0, text.length, tagger.analyze(text, new ArrayList<Token>()));
+    assertEquals(0, cache.getEntryCount());
+    assertFalse(cache.get("a", text, 0, text.length, new ArrayList<Token>()));
+    assertEquals(0, cache.getMisses());
+    
+    for (int i = 0; i < 200; i++) {
+      char[] sentence = ("本" + i).toCharArray();
+      cache.put("a", sentence, 0, sentence.length, tagger.analyze(sentence, new ArrayList<Token>()));
+    }
+    assertTrue(cache.getEntryCount() <= 16);
+    assertEquals(200 - cache.getEntryCount(), cache.getEvictionCount());
+    
+    SentenceCache small = new SentenceCache(1024, 16 * 1000, 64);
+    for (int i = 0; i < 200; i++) {
+      char[] sentence = ("これは本ではない" + i).toCharArray();
+      small.put("a", sentence, 0, sentence.length, tagger.analyze(sentence, new ArrayList<Token>()));
+    }
+    assertTrue(small.getSizeInBytes() <= 16 * 1000);
+    assertTrue(small.getEvictionCount() > 0);
+    
+    // fewer than 16 entries are still kept to
+    SentenceCache few = new SentenceCache(4, 1 << 20, 64);
+    for (int i = 0; i < 200; i++) {
+      char[] sentence = ("本" + i).toCharArray();
+      few.put("a", sentence, 0, sentence.length, tagger.analyze(sentence, new ArrayList<Token>()));
+      assertTrue(few.getEntryCount() <= 4);
+    }
+    assertTrue(few.getEntryCount() > 0);
+    assertEquals(200 - few.getEntryCount(), few.getEvictionCount());
+    
+    // a sentence of the maximum length fits however small the share of bytes
+    // would be among 16 segments
+    char[] longest = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。".toCharArray();
+    SentenceCache tight = new SentenceCache(1024, 96 + 68 * longest.length, longest.length);
+    tight.put("a", longest, 0, longest.length, tagger.analyze(longest, new ArrayList<Token>()));
+    assertEquals(1, tight.getEntryCount());
+  }
+}
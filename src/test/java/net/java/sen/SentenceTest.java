@@ -24,6 +24,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import net.java.sen.dictionary.CharacterClasses;
+import net.java.sen.dictionary.CharacterDefinition;
 import net.java.sen.dictionary.Morpheme;
 import net.java.sen.dictionary.Reading;
 import net.java.sen.dictionary.Sentence;
@@ -121,6 +123,74 @@ public class SentenceTest extends LuceneTestCase {
       
     }
     assertFalse ("Unexpected span at end", iterator.hasNextOrigin());
+    
+    sentenceSeekTestFixture (sentence, expectedSpans);
+    sentenceCharacterClassesTestFixture (sentence, expectedSpans);
+  }
+  
+  /**
+   * Test fixture for precomputed character classes. The run at every origin
+   * should be the leading characters of its span compatible with the class
+   * of the first, and the readable characters should be the whole span
+   *
+   * @param sentence The sentence to test against
+   * @param expectedSpans The expected substrings
+   */
+  private void sentenceCharacterClassesTestFixture (Sentence sentence, TestSpan[] expectedSpans) {
+    CharacterDefinition definition = CharacterDefinition.getDefault();
+    CharacterClasses classes = new CharacterClasses();
+    sentence.computeCharacterClasses (definition, classes);
+    
+    for (int i = 0; i < expectedSpans.length; i++) {
+      String subString = expectedSpans[i].subString;
+      int origin = expectedSpans[i].origin;
+      int charClass = definition.getCharClass (subString.charAt(0));
+      int run = 1;
+      while (run < subString.length() && definition.isCompatible (charClass, subString.charAt(run))) {
+        run++;
+      }
+      
+      SentenceIterator iterator = sentence.iteratorAt (origin);
+      assertSame ("Classes not available at span " + i, classes, iterator.characterClasses());
+      assertEquals ("Unexpected class at span " + i, charClass, classes.getCharClass (origin));
+      assertEquals ("Unexpected run end at span " + i, origin + run, classes.getRunEnd (origin));
+      assertEquals ("Unexpected read end at span " + i, origin + subString.length(), classes.getReadEnd (origin));
+    }
+    
+    assertNull (sentence.unconstrainedIterator(0).characterClasses());
+  }
+  
+  /**
+   * Test fixture for Sentence iterators positioned directly at an origin.
+   * Every origin reached by seeking should behave identically to the same
+   * origin reached by iteration
+   *
+   * @param sentence The sentence to test against
+   * @param expectedSpans The expected substrings
+   */
+  private void sentenceSeekTestFixture (Sentence sentence, TestSpan[] expectedSpans) {
+    for (int i = 0; i < expectedSpans.length; i++) {
+      String subString = expectedSpans[i].subString;
+      
+      SentenceIterator iterator = sentence.iteratorAt (expectedSpans[i].origin);
+      
+      assertNotNull ("Failed to seek to span " + i, iterator);
+      assertEquals ("Unexpected origin:", expectedSpans[i].origin, iterator.origin());
+      assertEquals ("Unexpected skip count:", expectedSpans[i].skipped, iterator.skippedCharCount());
+      
+      for (int j = 0; j < subString.length(); j++) {
+        assertTrue ("Expected more characters at span " + i + " (\"" + subString + "\")", iterator.hasNext());
+        assertEquals ("Unexpected character at span " + i +  " (\"" + subString + "\"):", subString.charAt(j), iterator.next());
+      }
+      assertFalse ("More characters than expected at span " + i, iterator.hasNext());
+      
+      for (int j = i + 1; j < expectedSpans.length; j++) {
+        assertTrue ("Expected more spans after span " + i, iterator.hasNextOrigin());
+        assertEquals ("Unexpected origin after seek:", expectedSpans[j].origin, iterator.nextOrigin());
+        assertEquals ("Unexpected skip count after seek:", expectedSpans[j].skipped, iterator.skippedCharCount());
+      }
+      assertFalse ("Unexpected span at end", iterator.hasNextOrigin());
+    }
   }
   
   /**
@@ -205,6 +275,34 @@ public class SentenceTest extends LuceneTestCase {
     sentenceUnconstrainedTestFixture (sentence, expectedUnconstrainedSpans);
   }
   
+  /**
+   * Test hasNext() / next() on a sentence that is a window onto a larger
+   * buffer, with ignored range
+   */
+  @Test
+  public void testWindowIteration() {
+    String testString = "XXabcdeYY";
+    Sentence sentence = new Sentence (testString.toCharArray(), 2, 5);
+    sentence.setBreakingIgnoreSpan (2, (short)3);
+    
+    TestSpan[] expectedSpans = {
+        new TestSpan (0, 0, "ab", null),
+        new TestSpan (1, 0, "b", null)
+    };
+    
+    TestSpan[] expectedUnconstrainedSpans = {
+        new TestSpan (0, 0, "ab", null),
+        new TestSpan (1, 0, "b", null),
+        new TestSpan (2, 0, "", null),
+        new TestSpan (3, 0, "", null),
+        new TestSpan (4, 0, "", null)
+    };
+    
+    sentenceTestFixture (sentence, 5, expectedSpans);
+    sentenceUnconstrainedTestFixture (sentence, expectedUnconstrainedSpans);
+    assertEquals ("abcde", new String (sentence.getCharacters()));
+  }
+  
   /**
    * Test hasNext() / next() with ignored range
    */
@@ -749,6 +847,34 @@ public class SentenceTest extends LuceneTestCase {
     sentenceUnconstrainedTestFixture (sentence, expectedUnconstrainedSpans);
   }
   
+  /**
+   * Test seeking to positions that are not origins
+   */
+  @Test
+  public void testSeekToNonOrigin() {
+    String testString = "ab  cde";
+    Sentence sentence = new Sentence (testString.toCharArray());
+    
+    assertNotNull (sentence.iteratorAt (4));
+    assertNull (sentence.iteratorAt (2));
+    assertNull (sentence.iteratorAt (-1));
+    assertNull (sentence.iteratorAt (testString.length()));
+    
+    SentenceIterator iterator = sentence.iteratorAt (1);
+    assertFalse (iterator.seekOrigin (3));
+    assertEquals (1, iterator.origin());
+    assertEquals ('b', iterator.next());
+    
+    // Changing the sentence's constraints must change its origins
+    sentence.setReadingConstraint (new Reading (4, 2, "シー"));
+    assertNull (sentence.iteratorAt (5));
+    assertNotNull (sentence.iteratorAt (6));
+    sentence.removeReadingConstraint (4);
+    assertNotNull (sentence.iteratorAt (5));
+    sentence.setBreakingIgnoreSpan (5, (short) 1);
+    assertNull (sentence.iteratorAt (5));
+  }
+  
   /**
    * Test reading constraint
    *
@@ -826,4 +952,31 @@ public class SentenceTest extends LuceneTestCase {
     
     compareTokens (testTokens, tokens);
   }
+  
+  /**
+   * Test that precomputed character classes are discarded when the sentence
+   * changes or the buffers are reused
+   */
+  @Test
+  public void testCharacterClassesInvalidated() {
+    CharacterDefinition definition = CharacterDefinition.getDefault();
+    CharacterClasses classes = new CharacterClasses();
+    Sentence sentence = new Sentence ("アイウabcエオ");
+    sentence.computeCharacterClasses (definition, classes);
+    assertEquals (3, classes.getRunEnd (0));
+    assertEquals (3, classes.getRunEnd (2));
+    assertEquals (6, classes.getRunEnd (3));
+    assertEquals (8, classes.getRunEnd (6));
+    
+    sentence.setBreakingIgnoreSpan (1, (short) 1);
+    assertNull (sentence.iterator().characterClasses());
+    sentence.computeCharacterClasses (definition, classes);
+    assertEquals (1, classes.getRunEnd (0));
+    assertEquals (3, classes.getRunEnd (2));
+    
+    Sentence other = new Sentence ("カキク");
+    other.computeCharacterClasses (definition, classes);
+    assertNull (sentence.iterator().characterClasses());
+    assertSame (classes, other.iterator().characterClasses());
+  }
 }
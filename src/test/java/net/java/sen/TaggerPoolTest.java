@@ -0,0 +1,165 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.java.sen.filter.stream.CompositeTokenFilter;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for the pool of taggers
+ */
+public class TaggerPoolTest extends LuceneTestCase {
+  
+  /**
+   * Tests that a released tagger is leased again, without its filters
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testLease() throws Exception {
+    TaggerPool pool = new TaggerPool(IPADIC_DIR, false, 2, 0, TimeUnit.SECONDS);
+    assertEquals(0, pool.getSize());
+    
+    TaggerPool.Lease lease = pool.acquire();
+    StringTagger tagger = lease.getTagger();
+    tagger.addFilter(new CompositeTokenFilter());
+    assertEquals("[これ, は, 本, で, は, ない]", tagger.analyze("これは本ではない").toString());
+    assertEquals(1, pool.getSize());
+    assertEquals(1, pool.getLeasedCount());
+    lease.close();
+    lease.close();
+    assertEquals(0, pool.getLeasedCount());
+    assertEquals(1, pool.getIdleCount());
+    try {
+      lease.getTagger();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    
+    try (TaggerPool.Lease lease2 = pool.acquire()) {
+      assertSame(tagger, lease2.getTagger());
+    }
+    assertEquals(1, pool.getSize());
+    assertEquals(2, pool.getLeaseCount());
+    assertEquals(0, pool.getWaitCount());
+  }
+  
+  /**
+   * Tests that no more than the maximum number of taggers are leased
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMaxSize() throws Exception {
+    TaggerPool pool = new TaggerPool(IPADIC_DIR, false, 2, 0, TimeUnit.SECONDS);
+    TaggerPool.Lease lease1 = pool.acquire();
+    TaggerPool.Lease lease2 = pool.acquire();
+    assertNull(pool.acquire(10, TimeUnit.MILLISECONDS));
+    assertEquals(1, pool.getWaitCount());
+    assertTrue(pool.getWaitTime(TimeUnit.MILLISECONDS) >= 10);
+    
+    StringTagger tagger = lease1.getTagger();
+    lease1.close();
+    TaggerPool.Lease lease3 = pool.acquire(10, TimeUnit.MILLISECONDS);
+    assertSame(tagger, lease3.getTagger());
+    assertEquals(2, pool.getSize());
+    assertTrue(pool.getUtilization() > 0);
+    assertTrue(pool.getUtilization() <= 1);
+    lease2.close();
+    lease3.close();
+  }
+  
+  /**
+   * Tests that taggers idle for longer than the idle timeout are dropped
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testIdleTimeout() throws Exception {
+    TaggerPool pool = new TaggerPool(IPADIC_DIR, false, 2, 1, TimeUnit.MILLISECONDS);
+    TaggerPool.Lease lease = pool.acquire();
+    StringTagger tagger = lease.getTagger();
+    lease.close();
+    Thread.sleep(20);
+    
+    lease = pool.acquire();
+    assertNotSame(tagger, lease.getTagger());
+    assertEquals(1, pool.getEvictionCount());
+    assertEquals(1, pool.getSize());
+    lease.close();
+  }
+  
+  /**
+   * Tests that many threads sharing a small pool get correct results
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testThreads() throws Exception {
+    final TaggerPool pool = new TaggerPool(IPADIC_DIR, false, 2, 0, TimeUnit.SECONDS);
+    final String expected = SenFactory.getStringTagger(IPADIC_DIR, false).analyze("東京都庁に行きました。").toString();
+    final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+    final AtomicInteger maxLeased = new AtomicInteger();
+    
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int j = 0; j < 50; j++) {
+              try (TaggerPool.Lease lease = pool.acquire()) {
+                int leased = pool.getLeasedCount();
+                if (leased > maxLeased.get()) {
+                  maxLeased.set(leased);
+                }
+                String result = lease.getTagger().analyze("東京都庁に行きました。").toString();
+                if (!expected.equals(result)) {
+                  failures.add(result);
+                }
+              }
+            }
+          } catch (IOException e) {
+            failures.add(e.toString());
+          } catch (InterruptedException e) {
+            failures.add(e.toString());
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    
+    assertEquals(Collections.<String>emptyList(), failures);
+    assertTrue(maxLeased.get() <= 2);
+    assertTrue(pool.getSize() <= 2);
+    assertEquals(400, pool.getLeaseCount());
+    assertEquals(0, pool.getLeasedCount());
+  }
+}
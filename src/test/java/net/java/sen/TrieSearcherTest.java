@@ -19,17 +19,24 @@
 
 package net.java.sen;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.NoSuchElementException;
 
+import net.java.sen.trie.Alphabet;
 import net.java.sen.trie.CharIterator;
+import net.java.sen.trie.FSTIndex;
+import net.java.sen.trie.Trie;
 import net.java.sen.trie.TrieBuilder;
 import net.java.sen.trie.TrieSearcher;
 
+import org.apache.lucene.store.ByteBuffersDataOutput;
 import org.apache.lucene.util.LuceneTestCase;
 import org.junit.Test;
 
@@ -109,4 +116,260 @@ public class TrieSearcherTest extends LuceneTestCase {
       assertEquals (values[i + 6], results[i]);
     }
   }
+  
+  /**
+   * Tests that searches of character arrays, from the Trie data in its
+   * buffer or on the heap, find the same keys as searches from an iterator
+   *
+   * @throws Exception 
+   */
+  @Test
+  public void testCharArray() throws Exception {
+    String[] keys = new String[] {
+        "a",
+        "ab",
+        "abc",
+        "b",
+        "bca",
+        "c",
+        "cab",
+        "cabc"
+    };
+    
+    int[] values = new int[keys.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (i + 1) * 100 + 1;
+    }
+    
+    TrieBuilder builder = new TrieBuilder(keys, values, keys.length);
+    File tempFile = File.createTempFile("tst", null);
+    builder.build (tempFile.getAbsolutePath());
+    
+    RandomAccessFile trieFile = new RandomAccessFile(tempFile, "r");
+    MappedByteBuffer trieBuffer = trieFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, trieFile.length());
+    trieFile.close();
+    IntBuffer intBuffer = trieBuffer.asIntBuffer();
+    int[] heapData = new int[intBuffer.limit()];
+    intBuffer.duplicate().get(heapData);
+    Trie trie = new Trie(intBuffer);
+    Trie heapTrie = new Trie(intBuffer, true);
+    assertFalse (trie.isOnHeap());
+    assertTrue (heapTrie.isOnHeap());
+    
+    int[] expected = new int[256];
+    int[] results = new int[256];
+    for (int n = 0; n < 100; n++) {
+      final char[] text = new char[random().nextInt(10)];
+      for (int i = 0; i < text.length; i++) {
+        text[i] = "abcd\u3042".charAt(random().nextInt(5));
+      }
+      
+      for (int from = 0; from <= text.length; from++) {
+        for (final int limit : new int[] { from, (from + text.length + 1) / 2, text.length }) {
+          final int start = from;
+          CharIterator iterator = new CharIterator() {
+            int i = start;
+            
+            public boolean hasNext() {
+              return this.i < limit;
+            }
+            
+            public char next() throws NoSuchElementException {
+              return text[this.i++];
+            }
+          };
+          
+          int count = TrieSearcher.commonPrefixSearch(intBuffer, iterator, expected);
+          String message = new String(text) + " [" + from + ", " + limit + ")";
+          
+          assertResults (message, expected, count, results, TrieSearcher.commonPrefixSearch(intBuffer, text, from, limit, results));
+          assertResults (message, expected, count, results, TrieSearcher.commonPrefixSearch(heapData, text, from, limit, results));
+          assertResults (message, expected, count, results, trie.commonPrefixSearch(text, from, limit, results));
+          assertResults (message, expected, count, results, heapTrie.commonPrefixSearch(text, from, limit, results));
+        }
+      }
+    }
+  }
+  
+  /**
+   * Tests that a Trie built with an alphabet finds the same keys as one built
+   * without
+   *
+   * @throws Exception 
+   */
+  @Test
+  public void testAlphabet() throws Exception {
+    String[] keys = new String[] {
+        "a",
+        "ab",
+        "abc",
+        "b",
+        "bca",
+        "c",
+        "cab",
+        "cabc",
+        "cc",
+        "\u3042",
+        "\u3042\u3044"
+    };
+    
+    int[] values = new int[keys.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (i + 1) * 100 + 1;
+    }
+    
+    Alphabet alphabet = Alphabet.build(keys, keys.length);
+    assertEquals (5, alphabet.size());
+    assertEquals (1, alphabet.getCode('c'));
+    assertEquals (2, alphabet.getCode('a'));
+    assertEquals (3, alphabet.getCode('b'));
+    assertEquals (4, alphabet.getCode('\u3042'));
+    assertEquals (5, alphabet.getCode('\u3044'));
+    assertEquals (0, alphabet.getCode('d'));
+    
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    alphabet.write(out);
+    out.close();
+    Alphabet readAlphabet = Alphabet.read(ByteBuffer.wrap(bytes.toByteArray()));
+    for (char c : "abcd\u3042\u3044".toCharArray()) {
+      assertEquals (alphabet.getCode(c), readAlphabet.getCode(c));
+    }
+    
+    File plainFile = File.createTempFile("tst", null);
+    new TrieBuilder(keys, values, keys.length).build (plainFile.getAbsolutePath());
+    File mappedFile = File.createTempFile("tst", null);
+    new TrieBuilder(keys, values, keys.length, readAlphabet).build (mappedFile.getAbsolutePath());
+    
+    RandomAccessFile trieFile = new RandomAccessFile(plainFile, "r");
+    IntBuffer plainBuffer = trieFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, trieFile.length()).asIntBuffer();
+    trieFile.close();
+    trieFile = new RandomAccessFile(mappedFile, "r");
+    IntBuffer mappedBuffer = trieFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, trieFile.length()).asIntBuffer();
+    trieFile.close();
+    
+    Trie mappedTrie = new Trie(mappedBuffer, readAlphabet, false);
+    Trie heapTrie = new Trie(mappedBuffer, readAlphabet, true);
+    assertSame (readAlphabet, mappedTrie.getAlphabet());
+    
+    int[] expected = new int[256];
+    int[] results = new int[256];
+    for (int n = 0; n < 100; n++) {
+      final char[] text = new char[random().nextInt(10)];
+      for (int i = 0; i < text.length; i++) {
+        text[i] = "abcd\u3042\u3044".charAt(random().nextInt(6));
+      }
+      
+      for (int from = 0; from <= text.length; from++) {
+        final int start = from;
+        CharIterator iterator = new CharIterator() {
+          int i = start;
+          
+          public boolean hasNext() {
+            return this.i < text.length;
+          }
+          
+          public char next() throws NoSuchElementException {
+            return text[this.i++];
+          }
+        };
+        
+        int count = TrieSearcher.commonPrefixSearch(plainBuffer, text, from, text.length, expected);
+        String message = new String(text) + " [" + from + "]";
+        
+        assertResults (message, expected, count, results, mappedTrie.commonPrefixSearch(iterator, results));
+        assertResults (message, expected, count, results, mappedTrie.commonPrefixSearch(text, from, text.length, results));
+        assertResults (message, expected, count, results, heapTrie.commonPrefixSearch(text, from, text.length, results));
+      }
+    }
+  }
+  
+  /**
+   * Tests that an FST index finds the same keys as a Trie
+   *
+   * @throws Exception 
+   */
+  @Test
+  public void testFSTIndex() throws Exception {
+    String[] keys = new String[] {
+        "a",
+        "ab",
+        "abc",
+        "b",
+        "bca",
+        "c",
+        "cab",
+        "cabc",
+        "\u3042",
+        "\u3042\u3044"
+    };
+    
+    int[] values = new int[keys.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (i + 1) * 100 + 1;
+    }
+    
+    File tempFile = File.createTempFile("tst", null);
+    new TrieBuilder(keys, values, keys.length).build (tempFile.getAbsolutePath());
+    RandomAccessFile trieFile = new RandomAccessFile(tempFile, "r");
+    IntBuffer trieBuffer = trieFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, trieFile.length()).asIntBuffer();
+    trieFile.close();
+    Trie trie = new Trie(trieBuffer);
+    
+    ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+    FSTIndex.build(keys, values, keys.length, out);
+    FSTIndex fstIndex = new FSTIndex(ByteBuffer.wrap(out.toArrayCopy()));
+    FSTIndex sharedIndex = new FSTIndex(fstIndex);
+    assertSame (fstIndex.getFST(), sharedIndex.getFST());
+    
+    int[] expected = new int[256];
+    int[] results = new int[256];
+    for (int n = 0; n < 100; n++) {
+      final char[] text = new char[random().nextInt(10)];
+      for (int i = 0; i < text.length; i++) {
+        text[i] = "abcd\u3042\u3044".charAt(random().nextInt(6));
+      }
+      
+      for (int from = 0; from <= text.length; from++) {
+        final int start = from;
+        CharIterator iterator = new CharIterator() {
+          int i = start;
+          
+          public boolean hasNext() {
+            return this.i < text.length;
+          }
+          
+          public char next() throws NoSuchElementException {
+            return text[this.i++];
+          }
+        };
+        
+        int count = trie.commonPrefixSearch(text, from, text.length, expected);
+        String message = new String(text) + " [" + from + "]";
+        
+        assertResults (message, expected, count, results, fstIndex.commonPrefixSearch(iterator, results));
+        assertResults (message, expected, count, results, fstIndex.commonPrefixSearch(text, from, text.length, results));
+        
+        int limit = (from + text.length + 1) / 2;
+        count = trie.commonPrefixSearch(text, from, limit, expected);
+        assertResults (message, expected, count, results, sharedIndex.commonPrefixSearch(text, from, limit, results));
+      }
+    }
+  }
+  
+  /**
+   * Compares the results of two searches
+   * 
+   * @param message The message to fail with
+   * @param expected The expected results
+   * @param expectedCount The expected number of results
+   * @param results The results
+   * @param count The number of results
+   */
+  private void assertResults (String message, int[] expected, int expectedCount, int[] results, int count) {
+    assertEquals (message, expectedCount, count);
+    for (int i = 0; i < count; i++) {
+      assertEquals (message, expected[i], results[i]);
+    }
+  }
 }
@@ -0,0 +1,181 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.java.sen.dictionary.CToken;
+import net.java.sen.dictionary.CharacterDefinition;
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.Token;
+import net.java.sen.tokenizers.ja.JapaneseTokenizer;
+import net.java.sen.trie.CharIterator;
+import net.java.sen.trie.PrefixIndex;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests Viterbi with a small dictionary whose connection costs depend on the
+ * second right context attribute (rcAttr2) of a token, so that the most
+ * likely path can only be found by looking up the tokens that follow it
+ */
+public class TrigramConnectionTest extends LuceneTestCase {
+  
+  /**
+   * The keys of the dictionary, and the index results of each: the index of
+   * its first token record (after BOS, EOS and unknown) shifted left by 8,
+   * and the number of its records
+   */
+  private static final String[] KEYS = { "a", "b", "c", "cd", "d" };
+  private static final int[] KEY_RESULTS = { 0 << 8 | 2, 2 << 8 | 1, 3 << 8 | 1, 4 << 8 | 1, 5 << 8 | 1 };
+  
+  /**
+   * A PrefixIndex of a few keys
+   */
+  private static final class MapIndex implements PrefixIndex {
+    private final Map<String, Integer> results = new HashMap<String, Integer>();
+    
+    MapIndex() {
+      for (int i = 0; i < KEYS.length; i++) {
+        results.put(KEYS[i], KEY_RESULTS[i]);
+      }
+    }
+    
+    public int commonPrefixSearch(CharIterator iterator, int[] found) {
+      StringBuilder key = new StringBuilder();
+      int n = 0;
+      while (key.length() < 2 && iterator.hasNext()) {
+        key.append(iterator.next());
+        Integer result = results.get(key.toString());
+        if (result != null) {
+          found[n++] = result;
+        }
+      }
+      return n;
+    }
+    
+    public int commonPrefixSearch(char[] text, int from, int limit, int[] found) {
+      int n = 0;
+      for (int end = from + 1; end <= Math.min(limit, from + 2); end++) {
+        Integer result = results.get(new String(text, from, end - from));
+        if (result != null) {
+          found[n++] = result;
+        }
+      }
+      return n;
+    }
+    
+    public PrefixIndex newSearcher() {
+      return this;
+    }
+  }
+  
+  /**
+   * Creates the dictionary. "a" has two records, differing in rcAttr2 and
+   * cost. After a token whose predecessor has rcAttr2 1, "c" connects
+   * cheaply; otherwise "cd" is cheaper. The best path through "abcd" is
+   * therefore the more costly "a" (rcAttr2 1), "b", "c", "d", which is only
+   * found if the "b" following that "a" is kept as its own node
+   * 
+   * @return The dictionary
+   */
+  private static Dictionary createDictionary() {
+    // rcAttr2 0..1, rcAttr1 0, lcAttr 0..2 (0: others, 1: "c", 2: "cd")
+    short[] costs = {
+        2, 1, 3,
+        0, 100, 50,
+        0, 0, 50
+    };
+    
+    // rcAttr2, rcAttr1, lcAttr, length, cost
+    short[][] records = {
+        { 0, 0, 0, 0, 0 },  // BOS
+        { 0, 0, 0, 0, 0 },  // EOS
+        { 0, 0, 0, 1, 0 },  // unknown
+        { 1, 0, 0, 1, 10 }, // a
+        { 0, 0, 0, 1, 0 },  // a
+        { 0, 0, 0, 1, 0 },  // b
+        { 0, 0, 1, 1, 0 },  // c
+        { 0, 0, 2, 2, 0 },  // cd
+        { 0, 0, 0, 1, 0 }   // d
+    };
+    ByteBuffer tokens = ByteBuffer.allocate((int) (records.length * CToken.SIZE));
+    for (int i = 0; i < records.length; i++) {
+      for (short value : records[i]) {
+        tokens.putShort(value);
+      }
+      tokens.putInt(0);
+    }
+    tokens.flip();
+    
+    return new Dictionary(ShortBuffer.wrap(costs), ByteBuffer.allocate(0), tokens, new MapIndex(),
+        new String[0], new String[0], new String[0], CharacterDefinition.getDefault());
+  }
+  
+  private static String[] surfaces(List<Token> tokens) {
+    String[] surfaces = new String[tokens.size()];
+    for (int i = 0; i < tokens.size(); i++) {
+      surfaces[i] = tokens.get(i).getSurface();
+    }
+    return surfaces;
+  }
+  
+  /**
+   * Tests that the tokens following a token with rcAttr2 are found, also
+   * when characters before that token have been skipped
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSkippedCharacters() throws Exception {
+    StringTagger tagger = new StringTagger(new JapaneseTokenizer(createDictionary(), "unknown", false));
+    assertArrayEquals(new String[] { "a", "b", "c", "d" }, surfaces(tagger.analyze("abcd", new ArrayList<Token>())));
+    assertArrayEquals(new String[] { "a", "b", "c", "d" }, surfaces(tagger.analyze(" abcd", new ArrayList<Token>())));
+    assertArrayEquals(new String[] { "cd", "a", "b", "c", "d" }, surfaces(tagger.analyze("cd  abcd", new ArrayList<Token>())));
+    
+    // the tokens are not looked up ahead where the token is followed by
+    // skipped characters
+    assertArrayEquals(new String[] { "a", "b", "cd" }, surfaces(tagger.analyze("a bcd", new ArrayList<Token>())));
+  }
+  
+  /**
+   * Tests a long unpunctuated input in which every other token has rcAttr2
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testLongInput() throws Exception {
+    StringTagger tagger = new StringTagger(new JapaneseTokenizer(createDictionary(), "unknown", false));
+    int units = 20000;
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < units; i++) {
+      text.append((i % 2 == 0) ? "abcd" : " abcd");
+    }
+    
+    List<Token> tokens = tagger.analyze(text.toString(), new ArrayList<Token>());
+    assertEquals(4 * units, tokens.size());
+    String[] expected = { "a", "b", "c", "d" };
+    for (int i = 0; i < tokens.size(); i++) {
+      assertEquals("token " + i, expected[i % 4], tokens.get(i).getSurface());
+    }
+  }
+}
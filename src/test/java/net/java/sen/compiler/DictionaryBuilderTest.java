@@ -0,0 +1,113 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen.compiler;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for the compilation of dictionaries
+ */
+public class DictionaryBuilderTest extends LuceneTestCase {
+  
+  /**
+   * Tests that a matrix with duplicate rows and columns in each extent is
+   * compacted to one index per distinct row or column, giving the same cost
+   * for every original triple of IDs, and that ID 0 of the first extent is
+   * never merged
+   */
+  @Test
+  public void testMergeEquivalentIds() {
+    // the class of each ID of each extent; IDs of the same class have
+    // identical costs
+    int[][] classes = {
+        { 0, 0, 0 },
+        { 0, 1, 2, 1 },
+        { 0, 1, 2, 2, 0 }
+    };
+    int[] sizes = { classes[0].length, classes[1].length, classes[2].length };
+    int base = random().nextInt(1000);
+    short[] matrix = new short[sizes[0] * sizes[1] * sizes[2]];
+    for (int i1 = 0; i1 < sizes[0]; i1++) {
+      for (int i2 = 0; i2 < sizes[1]; i2++) {
+        for (int i3 = 0; i3 < sizes[2]; i3++) {
+          matrix[sizes[2] * (sizes[1] * i1 + i2) + i3] =
+              (short) (base + 9 * classes[0][i1] + 3 * classes[1][i2] + classes[2][i3]);
+        }
+      }
+    }
+    
+    int[] compactedSizes = sizes.clone();
+    int[][] idMaps = new int[3][];
+    for (int axis = 0; axis < 3; axis++) {
+      idMaps[axis] = DictionaryBuilder.mergeEquivalentIds(matrix, sizes, axis);
+    }
+    short[] compacted = DictionaryBuilder.compactMatrix(matrix, compactedSizes, idMaps);
+    
+    // ID 0 of the first extent keeps its own ID, though IDs 1 and 2 are merged
+    assertArrayEquals(new int[] { 0, 1, 1 }, idMaps[0]);
+    assertArrayEquals(new int[] { 0, 1, 2, 1 }, idMaps[1]);
+    assertArrayEquals(new int[] { 0, 1, 2, 2, 0 }, idMaps[2]);
+    assertArrayEquals(new int[] { 2, 3, 3 }, compactedSizes);
+    assertEquals(2 * 3 * 3, compacted.length);
+    
+    for (int i1 = 0; i1 < sizes[0]; i1++) {
+      for (int i2 = 0; i2 < sizes[1]; i2++) {
+        for (int i3 = 0; i3 < sizes[2]; i3++) {
+          int original = sizes[2] * (sizes[1] * i1 + i2) + i3;
+          int merged = compactedSizes[2] * (compactedSizes[1] * idMaps[0][i1] + idMaps[1][i2]) + idMaps[2][i3];
+          assertEquals("(" + i1 + "," + i2 + "," + i3 + ")", matrix[original], compacted[merged]);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Tests that the ID maps are written as the number of IDs of each extent
+   * followed by their merged IDs
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testWriteIdMaps() throws IOException {
+    int[][] idMaps = {
+        { 0, 1, 1 },
+        { 0, 1, 2, 1 },
+        { 0, 1, 2, 2, 0 }
+    };
+    File file = new File(createTempDir("idmap").toFile(), "connectionIdMap.sen");
+    DictionaryBuilder.writeIdMaps(file.getPath(), idMaps);
+    
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      for (int[] idMap : idMaps) {
+        int[] read = new int[in.readInt()];
+        for (int i = 0; i < read.length; i++) {
+          read[i] = in.readShort();
+        }
+        assertArrayEquals(idMap, read);
+      }
+      assertEquals(-1, in.read());
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.TaggerPool;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+import org.restlet.Component;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for the HTTP analysis server
+ */
+public class AnalysisServerTest extends LuceneTestCase {
+
+  /** The running server */
+  private Component component;
+
+  /** The base URL of the server */
+  private String base;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    AnalysisService service = new AnalysisService(new TaggerPool(IPADIC_DIR, false, 1, 0, TimeUnit.SECONDS));
+    component = AnalysisServer.start(service, "127.0.0.1", 0);
+    base = "http://127.0.0.1:" + component.getServers().get(0).getActualPort();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    component.stop();
+    super.tearDown();
+  }
+
+  /**
+   * Tests analysing a single text, in UTF-8 or another given character set
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAnalyze() throws Exception {
+    Reply reply = request("POST", "/analyze", "これは本ではない", "text/plain");
+    assertEquals(200, reply.status);
+    assertTrue(reply.contentType, reply.contentType.startsWith("application/json"));
+    assertTrue(reply.body, reply.body.startsWith("{\"tokens\":[{\"surface\":\"これ\",\"start\":0,"));
+
+    Reply shiftJis = request("POST", "/analyze", "これは本ではない", "text/plain; charset=Shift_JIS");
+    assertEquals(200, shiftJis.status);
+    assertEquals(reply.body, shiftJis.body);
+  }
+
+  /**
+   * Tests that a batch is answered with one result line for each line
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testBatch() throws Exception {
+    Reply reply = request("POST", "/analyze/batch",
+        "{\"id\":1,\"text\":\"これは本ではない\"}\n{\"id\":2,\"text\":\"東京\"}\n", "application/x-ndjson");
+    assertEquals(200, reply.status);
+    assertTrue(reply.contentType, reply.contentType.startsWith("application/x-ndjson"));
+    String[] lines = reply.body.split("\n", -1);
+    assertEquals(3, lines.length);
+    assertTrue(lines[0], lines[0].startsWith("{\"id\":1,\"tokens\":[{\"surface\":\"これ\","));
+    assertTrue(lines[1], lines[1].startsWith("{\"id\":2,\"tokens\":[{\"surface\":\"東京\","));
+    assertEquals("", lines[2]);
+  }
+
+  /**
+   * Tests the statistics, which count the texts analysed
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStats() throws Exception {
+    request("POST", "/analyze", "東京", "text/plain");
+    Reply reply = request("GET", "/stats", null, null);
+    assertEquals(200, reply.status);
+    assertTrue(reply.contentType, reply.contentType.startsWith("application/json"));
+    assertTrue(reply.body, reply.body.startsWith("{\"documents\":1,"));
+  }
+
+  /**
+   * Tests that the wrong method is refused, and that only the exact paths
+   * are served
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRouting() throws Exception {
+    Reply reply = request("GET", "/analyze", null, null);
+    assertEquals(405, reply.status);
+    assertTrue(reply.allow, reply.allow != null && reply.allow.contains("POST"));
+    assertEquals(405, request("POST", "/stats", "", "text/plain").status);
+    assertEquals(404, request("POST", "/analyze/other", "東京", "text/plain").status);
+    assertEquals(404, request("GET", "/stats/other", null, null).status);
+  }
+
+  /**
+   * The reply to a request
+   */
+  private static final class Reply {
+    int status;
+    String contentType;
+    String allow;
+    String body;
+  }
+
+  /**
+   * Makes a request to the server
+   *
+   * @param method The request method
+   * @param path The path
+   * @param body The request body, or <code>null</code>
+   * @param contentType The content type of the body; the body is encoded in
+   *        its character set, or UTF-8
+   * @return The reply
+   * @throws IOException
+   */
+  private Reply request(String method, String path, String body, String contentType) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+    try {
+      connection.setRequestMethod(method);
+      if (body != null) {
+        int charsetIndex = contentType.indexOf("charset=");
+        Charset charset = Charset.forName((charsetIndex >= 0) ? contentType.substring(charsetIndex + 8) : "UTF-8");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", contentType);
+        OutputStream out = connection.getOutputStream();
+        try {
+          out.write(body.getBytes(charset));
+        } finally {
+          out.close();
+        }
+      }
+
+      Reply reply = new Reply();
+      reply.status = connection.getResponseCode();
+      reply.contentType = connection.getContentType();
+      reply.allow = connection.getHeaderField("Allow");
+      InputStream in = (reply.status < 400) ? connection.getInputStream() : connection.getErrorStream();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      if (in != null) {
+        try {
+          byte[] buffer = new byte[4096];
+          for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            bytes.write(buffer, 0, n);
+          }
+        } finally {
+          in.close();
+        }
+      }
+      reply.body = new String(bytes.toByteArray(), "UTF-8");
+      return reply;
+    } finally {
+      connection.disconnect();
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+package net.java.sen.server;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.TaggerPool;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+import static net.java.sen.SenTestUtil.*;
+
+/**
+ * Tests for the JSON analysis service
+ */
+public class AnalysisServiceTest extends LuceneTestCase {
+  
+  /**
+   * Tests the result of analysing a single text
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAnalyze() throws Exception {
+    AnalysisService service = new AnalysisService(new TaggerPool(IPADIC_DIR, false, 1, 0, TimeUnit.SECONDS));
+    String result = service.analyze("東京へ\"行く\"");
+    assertTrue(result, result.startsWith("{\"tokens\":[{\"surface\":\"東京\",\"start\":0,\"length\":2,\"cost\":"));
+    assertTrue(result, result.contains("\"partOfSpeech\":\"名詞-固有名詞-地域-一般\",\"basicForm\":\"*\","
+        + "\"conjugationalType\":\"*\",\"conjugationalForm\":\"*\",\"readings\":[\"トウキョウ\"],\"pronunciations\":[\"トーキョー\"]}"));
+    assertTrue(result, result.contains("{\"surface\":\"\\\"\",\"start\":3,"));
+    assertTrue(result, result.contains("{\"surface\":\"行く\",\"start\":4,"));
+    assertTrue(result, result.endsWith("]}"));
+    
+    assertEquals("{\"tokens\":[]}", service.analyze(""));
+  }
+  
+  /**
+   * Tests that each line of a batch gives one line of results, in order,
+   * with errors for invalid lines
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testBatch() throws Exception {
+    AnalysisService service = new AnalysisService(new TaggerPool(IPADIC_DIR, false, 1, 0, TimeUnit.SECONDS));
+    String input = "{\"id\": 1, \"text\": \"これは本ではない\"}\n"
+        + "\n"
+        + "{\"text\":\"東京\\u90fd\",\"id\":\"b\"}\n"
+        + "{\"id\":3,\"text\":1}\n"
+        + "not json\n"
+        + "{\"text\":\"\"}";
+    StringWriter output = new StringWriter();
+    service.analyzeBatch(new StringReader(input), output);
+    
+    String[] lines = output.toString().split("\n", -1);
+    assertEquals(6, lines.length);
+    assertTrue(lines[0], lines[0].startsWith("{\"id\":1,\"tokens\":[{\"surface\":\"これ\","));
+    assertTrue(lines[1], lines[1].startsWith("{\"id\":\"b\",\"tokens\":[{\"surface\":\"東京\","));
+    assertTrue(lines[1], lines[1].contains("{\"surface\":\"都\","));
+    assertEquals("{\"id\":3,\"error\":\"Expected a string: 1\"}", lines[2]);
+    assertTrue(lines[3], lines[3].startsWith("{\"id\":null,\"error\":"));
+    assertEquals("{\"tokens\":[]}", lines[4]);
+    assertEquals("", lines[5]);
+    
+    String stats = service.getStats();
+    assertTrue(stats, stats.startsWith("{\"documents\":3,\"characters\":11,\"tokens\":8,\"errors\":2,"));
+    assertTrue(stats, stats.contains("\"pool\":{\"maxSize\":1,\"size\":1,\"leased\":0,\"leases\":3,"));
+  }
+}
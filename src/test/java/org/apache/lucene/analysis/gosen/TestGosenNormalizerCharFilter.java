@@ -3,6 +3,8 @@
  */
 package org.apache.lucene.analysis.gosen;
 
+import com.ibm.icu.text.Normalizer2;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.BaseTokenStreamTestCase;
 import org.apache.lucene.analysis.MockTokenizer;
 import org.apache.lucene.analysis.Tokenizer;
@@ -112,4 +114,59 @@ public class TestGosenNormalizerCharFilter extends BaseTokenStreamTestCase {
   public void testTrickyNormalization() throws Exception {
     checkToken("´", " ́");  // \u00B4 => \u0301
   }
+
+  // Offsets of normalized tokens point back into the original input
+  @Test
+  public void testOffsets() throws IOException {
+    Reader reader = new GosenNormalizerCharFilter(new StringReader("ﾆﾎﾝｺﾞ ＡＢＣ か\u3099き ℃"));
+    Tokenizer tokenizer = new MockTokenizer(MockTokenizer.WHITESPACE, false);
+    tokenizer.setReader(reader);
+    assertTokenStreamContents(tokenizer,
+        new String[]{"ニホンゴ", "ABC", "がき", "°C"},
+        new int[]{0, 6, 10, 14},
+        new int[]{5, 9, 13, 15},
+        15);
+  }
+
+  // Input longer than a chunk is normalized identically to the whole input,
+  // however it is read
+  @Test
+  public void testLongInput() throws IOException {
+    StringBuilder input = new StringBuilder();
+    StringBuilder replaced = new StringBuilder();
+    String[] pieces = {"ｶﾞ", "か\u3099", "か\u309B", "ＡＢＣ", "e\u0301", "漢字", "\uD842\uDFB7", " "};
+    while (input.length() < 5000) {
+      String piece = pieces[random().nextInt(pieces.length)];
+      input.append(piece);
+      replaced.append(piece.replace('\u309B', '\u3099'));
+    }
+    String expected = Normalizer2.getNFKCInstance().normalize(replaced);
+
+    Reader reader = new GosenNormalizerCharFilter(new StringReader(input.toString()));
+    StringBuilder actual = new StringBuilder();
+    char[] buf = new char[1 + random().nextInt(1024)];
+    for (int n = reader.read(buf, 0, buf.length); n != -1; n = reader.read(buf, 0, buf.length)) {
+      actual.append(buf, 0, n);
+    }
+    assertEquals(expected, actual.toString());
+  }
+
+  // Offsets stay consistent on random input
+  @Test
+  public void testRandomStrings() throws IOException {
+    Analyzer analyzer = new Analyzer() {
+      @Override
+      protected TokenStreamComponents createComponents(String fieldName) {
+        return new TokenStreamComponents(new MockTokenizer(MockTokenizer.WHITESPACE, false));
+      }
+
+      @Override
+      protected Reader initReader(String fieldName, Reader reader) {
+        return new GosenNormalizerCharFilter(reader);
+      }
+    };
+    checkRandomData(random(), analyzer, 200 * RANDOM_MULTIPLIER);
+    checkRandomData(random(), analyzer, 10 * RANDOM_MULTIPLIER, 8192);
+    analyzer.close();
+  }
 }
@@ -18,17 +18,29 @@
 package org.apache.lucene.analysis.gosen;
 
 import net.java.sen.SenTestUtil;
+import net.java.sen.SentenceCache;
 import net.java.sen.util.IOUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.BaseTokenStreamTestCase;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.gosen.tokenAttributes.CostAttribute;
+import org.apache.lucene.analysis.gosen.tokenAttributes.SentenceStartAttribute;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestUtil;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link GosenTokenizer}
@@ -51,6 +63,14 @@ public class TestGosenTokenizer extends BaseTokenStreamTestCase {
     }
   };
 
+  private Analyzer nBestAnalyzer = new Analyzer() {
+    @Override
+    protected TokenStreamComponents createComponents(String field) {
+      Tokenizer tokenizer = new GosenTokenizer(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY, null, SenTestUtil.IPADIC_DIR, false, 2);
+      return new TokenStreamComponents(tokenizer, tokenizer);
+    }
+  };
+
   //=================================================================================================================
 
   /**
@@ -197,6 +217,112 @@ public class TestGosenTokenizer extends BaseTokenStreamTestCase {
     );
   }
 
+  /**
+   * Tests that a large text analysed in parallel gives the same tokens,
+   * offsets and sentence starts as analysing its sentences in turn. Line
+   * breaks follow sentence ends, as a line break at the end of a 4k chunk is
+   * always a sentence break
+   */
+  @Test
+  public void testParallel() throws IOException {
+    String sentences[] = {
+        "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。",
+        "これは本ではない。\n",
+        "東京都庁に行きました。",
+        "アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている。"
+    };
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 150000) {
+      sb.append(sentences[random().nextInt(sentences.length)]);
+    }
+    String input = sb.toString();
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Tokenizer parallel = new GosenTokenizer(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY, null, SenTestUtil.IPADIC_DIR, false, 1000, pool);
+      Tokenizer sequential = new GosenTokenizer(null, SenTestUtil.IPADIC_DIR, false);
+      for (int i = 0; i < 2; i++) {
+        assertEquals(describe(sequential, input), describe(parallel, input));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Tests that a text analysed in parallel on an executor which never runs
+   * its tasks is analysed by the tokenizer's own thread
+   */
+  @Test
+  public void testParallelStalledExecutor() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 20000) {
+      sb.append("東京都庁に行きました。これは本ではない。\n");
+    }
+    String input = sb.toString();
+
+    ThreadPoolExecutor stalled = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>()) {
+      @Override
+      public void execute(Runnable command) {
+        // never run
+      }
+    };
+    try {
+      Tokenizer parallel = new GosenTokenizer(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY, null, SenTestUtil.IPADIC_DIR, false, 1000, stalled);
+      Tokenizer sequential = new GosenTokenizer(null, SenTestUtil.IPADIC_DIR, false);
+      assertEquals(describe(sequential, input), describe(parallel, input));
+    } finally {
+      stalled.shutdown();
+    }
+  }
+
+  /**
+   * Tests that sentences taken from the sentence cache give the same tokens,
+   * offsets, sentence starts and costs as analysing them again
+   */
+  @Test
+  public void testSentenceCache() throws IOException {
+    String input = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。これは本ではない。"
+        + "東京都庁に行きました。これは本ではない。本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。";
+    SentenceCache cache = new SentenceCache(1024, 1 << 20, 256);
+    GosenTokenizer cached = new GosenTokenizer(null, SenTestUtil.IPADIC_DIR, false);
+    cached.setSentenceCache(cache);
+    Tokenizer uncached = new GosenTokenizer(null, SenTestUtil.IPADIC_DIR, false);
+    for (int i = 0; i < 2; i++) {
+      assertEquals(describe(uncached, input), describe(cached, input));
+    }
+    assertEquals(3, cache.getEntryCount());
+    assertEquals(7, cache.getHits());
+    assertEquals(3, cache.getMisses());
+
+    // a tokenizer of another configuration does not share the entries
+    GosenTokenizer katakana = new GosenTokenizer(null, SenTestUtil.IPADIC_DIR, true);
+    katakana.setSentenceCache(cache);
+    describe(katakana, input);
+    assertEquals(6, cache.getEntryCount());
+  }
+
+  private static List<String> describe(Tokenizer tokenizer, String input) throws IOException {
+    List<String> tokens = new ArrayList<String>();
+    CharTermAttribute termAtt = tokenizer.getAttribute(CharTermAttribute.class);
+    OffsetAttribute offsetAtt = tokenizer.getAttribute(OffsetAttribute.class);
+    SentenceStartAttribute sentenceAtt = tokenizer.getAttribute(SentenceStartAttribute.class);
+    CostAttribute costAtt = tokenizer.getAttribute(CostAttribute.class);
+    tokenizer.setReader(new StringReader(input));
+    try {
+      tokenizer.reset();
+      while (tokenizer.incrementToken()) {
+        tokens.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset() + "/"
+            + sentenceAtt.getSentenceStart() + "/" + costAtt.getCost());
+      }
+      tokenizer.end();
+      tokens.add("end/" + offsetAtt.endOffset());
+    } finally {
+      tokenizer.close();
+    }
+    return tokens;
+  }
+
   //=================================================================================================================
 
   /**
@@ -254,4 +380,41 @@ public class TestGosenTokenizer extends BaseTokenStreamTestCase {
     );
   }
 
+  //=================================================================================================================
+
+  /**
+   * N-best mode
+   */
+
+  /** Tests that the two most likely segmentations are emitted as a token graph */
+  @Test
+  public void testNBestGraph() throws IOException {
+    assertAnalyzesTo(nBestAnalyzer, "関西国際空港",
+            new String[] { "関西国際空港", "関西", "国際", "空港" },
+            new int[] { 0, 0, 2, 4 },
+            new int[] { 6, 2, 4, 6 },
+            null,
+            new int[] { 1, 0, 1, 1 },
+            new int[] { 3, 1, 1, 1 }
+    );
+  }
+
+  /** Tests that tokens common to both segmentations are emitted once, and that sentences follow each other */
+  @Test
+  public void testNBestTwoSentences() throws IOException {
+    assertAnalyzesTo(nBestAnalyzer, "関西国際空港。東京 都",
+            new String[] { "関西国際空港", "関西", "国際", "空港", "。", "東京", "都", "都" },
+            new int[] { 0, 0, 2, 4, 6, 7, 10, 10 },
+            new int[] { 6, 2, 4, 6, 7, 9, 11, 11 },
+            null,
+            new int[] { 1, 0, 1, 1, 1, 1, 1, 0 },
+            new int[] { 3, 1, 1, 1, 1, 1, 1, 1 }
+    );
+  }
+
+  /** blast some random strings through the n-best graph */
+  @Test
+  public void testNBestReliability() throws IOException {
+    checkRandomData(random(), nBestAnalyzer, 1000);
+  }
 }
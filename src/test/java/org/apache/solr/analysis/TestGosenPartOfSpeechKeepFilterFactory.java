@@ -71,6 +71,27 @@ public class TestGosenPartOfSpeechKeepFilterFactory extends BaseTokenStreamTestC
     );
   }
 
+  @Test
+  public void testPrefixPattern() throws IOException {
+    String tags = "名詞*\n";
+
+    GosenTokenizerFactory tokenizerFactory = new GosenTokenizerFactory(new HashMap<String,String>(){{
+      put("dictionaryDir", SenTestUtil.IPADIC_DIR);
+    }});
+    tokenizerFactory.inform(new StringMockResourceLoader(""));
+    Tokenizer tokenizer = tokenizerFactory.create();
+    tokenizer.setReader(new StringReader("私は制限スピードを超える。"));
+    Map<String,String> args = new HashMap<String,String>();
+    args.put("luceneMatchVersion", Version.LATEST.toString());
+    args.put("tags", "tags.txt");
+    GosenPartOfSpeechKeepFilterFactory factory = new GosenPartOfSpeechKeepFilterFactory(args);
+    factory.inform(new StringMockResourceLoader(tags));
+    TokenStream ts = factory.create(tokenizer);
+    assertTokenStreamContents(ts,
+        new String[] { "私", "制限", "スピード" }
+    );
+  }
+
   @Test
   public void testRequireArguments() throws Exception{
     try{
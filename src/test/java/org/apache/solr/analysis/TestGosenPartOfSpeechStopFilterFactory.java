@@ -72,6 +72,27 @@ public class TestGosenPartOfSpeechStopFilterFactory extends BaseTokenStreamTestC
     );
   }
 
+  @Test
+  public void testPrefixPattern() throws IOException {
+    String tags = "助詞-*\n";
+
+    GosenTokenizerFactory tokenizerFactory = new GosenTokenizerFactory(new HashMap<String,String>(){{
+      put("dictionaryDir", SenTestUtil.IPADIC_DIR);
+    }});
+    tokenizerFactory.inform(new StringMockResourceLoader(""));
+    Tokenizer tokenizer = tokenizerFactory.create();
+    tokenizer.setReader(new StringReader("私は制限スピードを超える。"));
+    Map<String,String> args = new HashMap<String,String>();
+    args.put("luceneMatchVersion", Version.LATEST.toString());
+    args.put("tags", "tags.txt");
+    GosenPartOfSpeechStopFilterFactory factory = new GosenPartOfSpeechStopFilterFactory(args);
+    factory.inform(new StringMockResourceLoader(tags));
+    TokenStream ts = factory.create(tokenizer);
+    assertTokenStreamContents(ts,
+        new String[] { "私", "制限", "スピード", "超える", "。" }
+    );
+  }
+
   @Test
   public void testRequireArguments() throws Exception{
     try{
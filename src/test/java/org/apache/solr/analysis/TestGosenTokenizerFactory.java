@@ -18,10 +18,16 @@
 package org.apache.solr.analysis;
 
 import java.io.File;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.util.Map;
 import java.util.HashMap;
 
+import net.java.sen.SenFactory;
+import net.java.sen.SentenceCache;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.util.LuceneTestCase;
 import org.junit.Test;
@@ -93,4 +99,51 @@ public class TestGosenTokenizerFactory extends LuceneTestCase {
       assertTrue(expected.getMessage().contains("Unknown parameters"));
     }
   }
+
+  @Test
+  public void testInvalidNBest() throws Exception{
+    try{
+      new GosenTokenizerFactory(new HashMap<String, String>() {{
+        put("nBest", "0");
+      }});
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("nBest"));
+    }
+  }
+
+  @Test
+  public void testInvalidParallelThreshold() throws Exception{
+    try{
+      new GosenTokenizerFactory(new HashMap<String, String>() {{
+        put("parallelThreshold", "1000");
+        put("nBest", "2");
+      }});
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertTrue(expected.getMessage().contains("parallelThreshold"));
+    }
+  }
+
+  @Test
+  public void testSentenceCache() throws Exception {
+    GosenTokenizerFactory factory = new GosenTokenizerFactory(new HashMap<String, String>() {{
+      put("sentenceCacheEntries", "1000");
+      put("sentenceCacheMaxLength", "100");
+    }});
+    factory.inform(new StringMockResourceLoader(""));
+    SentenceCache cache = SenFactory.getInstance(null).getSentenceCache(1000,
+        GosenTokenizerFactory.DEFAULT_SENTENCE_CACHE_MAX_BYTES, 100);
+    long hits = cache.getHits();
+    for (int i = 0; i < 2; i++) {
+      Tokenizer tokenizer = factory.create(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY);
+      tokenizer.setReader(new StringReader("これは本ではない。これは本ではない。"));
+      tokenizer.reset();
+      while (tokenizer.incrementToken()) {
+      }
+      tokenizer.end();
+      tokenizer.close();
+    }
+    assertEquals(hits + 3, cache.getHits());
+  }
 }